@@ -0,0 +1,38 @@
+package com.icio.sportakuz.config;
+
+import com.icio.sportakuz.service.booking.BookingBatchWriter;
+import com.icio.sportakuz.service.booking.BookingExecutor;
+import com.icio.sportakuz.service.booking.ShardedBookingExecutor;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * Wybór sposobu wykonywania rezerwacji (właściwości systemowe JVM, np. -Dsportakuz.booking.mode=sharded):
+ * <ul>
+ *     <li>{@code sportakuz.booking.mode} – direct (domyślnie) albo sharded,</li>
+ *     <li>{@code sportakuz.booking.shards} – liczba shardów (domyślnie liczba procesorów),</li>
+ *     <li>{@code sportakuz.booking.batchSize} – maksymalna liczba rezerwacji w jednej transakcji sharda.</li>
+ * </ul>
+ * Bean {@code directBookingExecutor} jest zawsze dostępny – executor shardowany używa go jako awaryjnego.
+ */
+@Configuration
+public class BookingConfig {
+
+    /** Przy zamykaniu kontekstu wywoływane jest (wywnioskowane) close() executora shardowanego. */
+    @Bean
+    @Primary
+    public BookingExecutor bookingExecutor(@Value("${sportakuz.booking.mode:direct}") String mode,
+                                           @Value("${sportakuz.booking.shards:0}") int shards,
+                                           @Value("${sportakuz.booking.batchSize:64}") int batchSize,
+                                           @Qualifier("directBookingExecutor") BookingExecutor direct,
+                                           BookingBatchWriter batchWriter) {
+        if (!"sharded".equalsIgnoreCase(mode)) {
+            return direct;
+        }
+        int shardCount = shards > 0 ? shards : Runtime.getRuntime().availableProcessors();
+        return new ShardedBookingExecutor(shardCount, batchSize, batchWriter, direct);
+    }
+}
@@ -17,8 +17,8 @@ import java.util.HashMap;
 
 /**
  * Konfiguracja  JPA + Hibernate dla aplikacji.
- * Źródło danych pobierane przez JNDI (serwer aplikacyjny), migracje schematu wykonuje Flyway,
- * a walidacja poprawności mapowania odbywa się przez hbm2ddl.validate.
+ * Źródło danych pobierane przez JNDI (serwer aplikacyjny), schemat aktualizuje hbm2ddl (update),
+ * a zmiany, których hbm2ddl nie obsługuje (indeksy częściowe, ograniczenia), wykonuje {@link SchemaMigrator}.
  */
 @Configuration
 @EnableTransactionManagement
@@ -0,0 +1,117 @@
+package com.icio.sportakuz.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.StatementCallback;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLWarning;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Migracje schematu, których hbm2ddl (update) nie potrafi wykonać: indeksy częściowe, ograniczenia, poprawki danych.
+ * Pliki {@code db/migration/V<n>__<opis>.sql} wykonywane są po starcie kontekstu (tabele istnieją już dzięki hbm2ddl)
+ * w kolejności numerów, każdy w osobnej transakcji; wykonane wersje zapisywane są w tabeli schema_migrations.
+ * Blokada doradcza (advisory lock) chroni przed równoległym wykonaniem przez drugi kontekst / drugą instancję.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class SchemaMigrator implements ApplicationListener<ContextRefreshedEvent> {
+
+    private static final Logger log = LoggerFactory.getLogger(SchemaMigrator.class);
+
+    private static final String LOCATION = "classpath:db/migration/V*__*.sql";
+    private static final Pattern VERSION = Pattern.compile("V(\\d+)__(.+)\\.sql");
+    /** Klucz blokady doradczej migracji. */
+    private static final long LOCK_KEY = 0x5350_4f52_5441_4bL;
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+
+    public SchemaMigrator(DataSource dataSource, PlatformTransactionManager transactionManager) {
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.tx = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        migrate();
+    }
+
+    /** Wykonuje wszystkie jeszcze niewykonane migracje. */
+    public void migrate() {
+        jdbc.execute("""
+                create table if not exists schema_migrations (
+                    version integer primary key,
+                    description varchar(200) not null,
+                    applied_at timestamptz not null default now())
+                """);
+        Resource[] scripts;
+        try {
+            scripts = new PathMatchingResourcePatternResolver().getResources(LOCATION);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Arrays.sort(scripts, Comparator.comparingInt(r -> version(r).version()));
+        for (Resource script : scripts) {
+            Migration m = version(script);
+            tx.executeWithoutResult(status -> {
+                jdbc.queryForObject("select pg_advisory_xact_lock(?)::text", String.class, LOCK_KEY);
+                Integer applied = jdbc.queryForObject("select count(*) from schema_migrations where version = ?", Integer.class, m.version());
+                if (applied != null && applied > 0) {
+                    return;
+                }
+                jdbc.execute((StatementCallback<Void>) statement -> {
+                    statement.execute(read(script));
+                    logWarnings(m, statement.getWarnings());
+                    return null;
+                });
+                jdbc.update("insert into schema_migrations (version, description) values (?, ?)", m.version(), m.description());
+                log.info("[MIGRATION] Wykonano V{} – {}", m.version(), m.description());
+            });
+        }
+    }
+
+    /** Ostrzeżenia zgłoszone przez skrypt (RAISE WARNING) – np. dane do poprawienia ręcznie; komunikaty NOTICE pomijane. */
+    private static void logWarnings(Migration m, SQLWarning warning) {
+        for (SQLWarning w = warning; w != null; w = w.getNextWarning()) {
+            if (!"00000".equals(w.getSQLState())) {
+                log.warn("[MIGRATION] V{}: {}", m.version(), w.getMessage());
+            }
+        }
+    }
+
+    private static Migration version(Resource script) {
+        Matcher matcher = VERSION.matcher(String.valueOf(script.getFilename()));
+        if (!matcher.matches()) {
+            throw new IllegalStateException("Niepoprawna nazwa pliku migracji: " + script.getFilename());
+        }
+        return new Migration(Integer.parseInt(matcher.group(1)), matcher.group(2).replace('_', ' '));
+    }
+
+    private static String read(Resource script) {
+        try {
+            return script.getContentAsString(StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private record Migration(int version, String description) {}
+}
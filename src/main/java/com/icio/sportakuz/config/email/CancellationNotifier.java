@@ -0,0 +1,130 @@
+package com.icio.sportakuz.config.email;
+
+import com.icio.sportakuz.entity.Activity;
+import com.icio.sportakuz.repo.ActivityRepository;
+import com.icio.sportakuz.repo.OutboxEventType;
+import com.icio.sportakuz.service.outbox.ChangeEvent;
+import com.icio.sportakuz.service.outbox.OutboxConsumer;
+import jakarta.mail.SendFailedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailParseException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Powiadomienia o odwołaniu zajęć: trwały konsument outboxu, który dla partii zdarzeń BOOKING_CANCELLED_BY_ACTIVITY
+ * wysyła wszystkie e-maile jednym wywołaniem (jedno połączenie SMTP).
+ * Wiadomości, których nie da się dostarczyć (błędny lub odrzucony adres), są logowane i pomijane – nie blokują partii.
+ * Pozostałe nieudane wiadomości są ponawiane pojedynczo, a jeśli to się nie uda – wyjątek trafia do relay,
+ * który ponowi partię (gdy nie wysłano nic, np. brak połączenia, od razu).
+ */
+@Component
+public class CancellationNotifier implements OutboxConsumer {
+
+	private static final Logger log = LoggerFactory.getLogger(CancellationNotifier.class);
+
+	private final JavaMailSender mailSender;
+	private final ActivityRepository activityRepository;
+
+	public CancellationNotifier(JavaMailSender mailSender, ActivityRepository activityRepository) {
+		this.mailSender = mailSender;
+		this.activityRepository = activityRepository;
+	}
+
+	@Override
+	public String name() {
+		return "cancellation-mail";
+	}
+
+	@Override
+	public void accept(List<ChangeEvent> events) {
+		List<ChangeEvent> cancelled = events.stream()
+				.filter(e -> e.type() == OutboxEventType.BOOKING_CANCELLED_BY_ACTIVITY)
+				.filter(e -> e.userName() != null && !e.userName().isBlank())
+				.toList();
+		if (cancelled.isEmpty()) {
+			return;
+		}
+
+		// Nazwy zajęć jednym zapytaniem – usunięte zajęcia już nie istnieją, wtedy ogólna nazwa
+		Set<Long> activityIds = cancelled.stream().map(ChangeEvent::activityId).collect(Collectors.toSet());
+		Map<Long, String> names = new HashMap<>();
+		for (Activity activity : activityRepository.findAllById(activityIds)) {
+			if (activity.getType() != null) {
+				names.put(activity.getId(), activity.getType().getActivityName());
+			}
+		}
+
+		List<SimpleMailMessage> messages = cancelled.stream().map(e -> {
+			SimpleMailMessage message = new SimpleMailMessage();
+			message.setTo(e.userName().trim().toLowerCase());
+			message.setSubject("SPORTAKUZ - Class cancelled");
+			message.setText("Hello,\n\nUnfortunately " + names.getOrDefault(e.activityId(), "your class")
+					+ (e.detail() != null ? " scheduled for " + e.detail() + " CET" : "")
+					+ " has been cancelled. Your reservation was cancelled automatically.\n\nRegards");
+			return message;
+		}).toList();
+		sendAll(messages);
+	}
+
+	private void sendAll(List<SimpleMailMessage> messages) {
+		try {
+			mailSender.send(messages.toArray(SimpleMailMessage[]::new));
+		} catch (MailParseException e) {
+			sendEach(messages); // błędny adres psuje całą partię jeszcze przed połączeniem
+		} catch (MailSendException e) {
+			Map<Object, Exception> failed = e.getFailedMessages();
+			if (failed.size() == messages.size() && failed.values().stream().noneMatch(CancellationNotifier::permanent)) {
+				throw e; // nic nie wysłano – relay ponowi partię
+			}
+			List<SimpleMailMessage> retry = new ArrayList<>();
+			failed.forEach((message, cause) -> {
+				if (permanent(cause)) {
+					log.warn("[MAIL] Pominięto powiadomienie o odwołaniu zajęć: {}", cause.getMessage());
+				} else {
+					retry.add((SimpleMailMessage) message);
+				}
+			});
+			sendEach(retry);
+		}
+	}
+
+	/** Wysyła wiadomości pojedynczo; trwałe błędy loguje, pierwszy przejściowy rzuca dalej (po próbie wysłania reszty). */
+	private void sendEach(List<SimpleMailMessage> messages) {
+		MailException transientFailure = null;
+		for (SimpleMailMessage message : messages) {
+			try {
+				mailSender.send(message);
+			} catch (MailException e) {
+				if (permanent(e)) {
+					log.warn("[MAIL] Pominięto powiadomienie o odwołaniu zajęć do {}: {}",
+							String.join(",", message.getTo()), e.getMessage());
+				} else if (transientFailure == null) {
+					transientFailure = e;
+				}
+			}
+		}
+		if (transientFailure != null) {
+			throw transientFailure;
+		}
+	}
+
+	/** Błąd, którego ponowienie nic nie zmieni: niepoprawny adres albo adresat odrzucony przez serwer. */
+	private static boolean permanent(Exception e) {
+		if (e instanceof MailSendException send && !send.getFailedMessages().isEmpty()) {
+			return send.getFailedMessages().values().stream().allMatch(CancellationNotifier::permanent);
+		}
+		return e instanceof MailParseException || e instanceof SendFailedException;
+	}
+}
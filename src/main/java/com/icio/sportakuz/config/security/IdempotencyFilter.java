@@ -0,0 +1,114 @@
+package com.icio.sportakuz.config.security;
+
+import com.icio.sportakuz.service.booking.IdempotencyStore;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Obsługa nagłówka Idempotency-Key dla POST /api/bookings/**.
+ * Powtórzone żądanie (ten sam użytkownik, ścieżka i klucz) dostaje zapamiętaną odpowiedź,
+ * zanim zostanie otwarta transakcja czy wykonane jakiekolwiek zapytanie do bazy.
+ * Odpowiedzi 5xx nie są zapamiętywane – takie żądanie można ponowić.
+ */
+@Component
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "Idempotency-Key";
+    private static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 255;
+    /** Jak długo powtórzenie czeka na zakończenie pierwszego żądania. */
+    private static final long IN_FLIGHT_WAIT_SECONDS = 10;
+
+    private final IdempotencyStore store;
+
+    public IdempotencyFilter(IdempotencyStore store) {
+        this.store = store;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod())
+                || !request.getServletPath().startsWith("/api/bookings/")
+                || request.getHeader(HEADER) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        String idempotencyKey = request.getHeader(HEADER).trim();
+        Principal principal = request.getUserPrincipal();
+        if (idempotencyKey.isEmpty() || idempotencyKey.length() > MAX_KEY_LENGTH || principal == null) {
+            writeError(response, HttpServletResponse.SC_BAD_REQUEST, "Niepoprawny nagłówek " + HEADER);
+            return;
+        }
+        String key = principal.getName() + ":" + request.getServletPath() + ":" + idempotencyKey;
+
+        IdempotencyStore.Claim claim;
+        while (true) {
+            claim = store.begin(key);
+            if (claim.owner()) {
+                break; // przejęliśmy klucz – wykonujemy żądanie
+            }
+            IdempotencyStore.StoredResponse stored;
+            try {
+                stored = claim.response().get(IN_FLIGHT_WAIT_SECONDS, TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                writeError(response, HttpServletResponse.SC_CONFLICT, "Żądanie z tym kluczem jest w trakcie realizacji");
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ServletException(e);
+            } catch (ExecutionException e) {
+                throw new ServletException(e);
+            }
+            if (stored != null) {
+                replay(response, stored);
+                return;
+            }
+            // pierwsze żądanie zakończyło się błędem serwera – próbujemy przejąć klucz ponownie
+        }
+
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        boolean completed = false;
+        try {
+            filterChain.doFilter(request, wrapper);
+            if (wrapper.getStatus() < 500) {
+                store.complete(claim, new IdempotencyStore.StoredResponse(
+                        wrapper.getStatus(), wrapper.getContentType(), wrapper.getContentAsByteArray()));
+                completed = true;
+            }
+        } finally {
+            if (!completed) {
+                store.abandon(claim);
+            }
+            wrapper.copyBodyToResponse();
+        }
+    }
+
+    private void replay(HttpServletResponse response, IdempotencyStore.StoredResponse stored) throws IOException {
+        response.setStatus(stored.status());
+        if (stored.contentType() != null) {
+            response.setContentType(stored.contentType());
+        }
+        response.setHeader(REPLAYED_HEADER, "true");
+        response.getOutputStream().write(stored.body());
+    }
+
+    private void writeError(HttpServletResponse response, int status, String message) throws IOException {
+        response.setStatus(status);
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.getOutputStream().write(("{\"error\":\"" + message + "\"}").getBytes(StandardCharsets.UTF_8));
+    }
+}
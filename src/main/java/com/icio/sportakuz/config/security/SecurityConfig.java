@@ -12,6 +12,7 @@ import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.AuthorizationFilter;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 @Configuration
@@ -20,15 +21,18 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
 public class SecurityConfig {
 
     private final RecaptchaFilter recaptchaFilter;
+    private final IdempotencyFilter idempotencyFilter;
     private final CustomUserDetailsService customUserDetailsService;
     private final AuthenticationSuccessHandler successHandler;
 
     public SecurityConfig(CustomUserDetailsService customUserDetailsService,
                           AuthenticationSuccessHandler successHandler,
-                          RecaptchaFilter recaptchaFilter) {
+                          RecaptchaFilter recaptchaFilter,
+                          IdempotencyFilter idempotencyFilter) {
         this.customUserDetailsService = customUserDetailsService;
         this.successHandler = successHandler;
         this.recaptchaFilter = recaptchaFilter;
+        this.idempotencyFilter = idempotencyFilter;
     }
 
     @Bean
@@ -36,8 +40,8 @@ public class SecurityConfig {
         http
                 .csrf(csrf -> csrf.disable())
                 .authorizeHttpRequests(auth -> auth
-                        .requestMatchers("/login", "/register", "/css/**", "/js/**", "/images/**", "/", "/top-picks").permitAll()
-                        .requestMatchers("/panel/admin/**").hasRole("ADMIN")
+                        .requestMatchers("/login", "/register", "/css/**", "/js/**", "/images/**", "/", "/top-picks", "/ics/**").permitAll()
+                        .requestMatchers("/panel/admin/**", "/api/bookings/shards").hasRole("ADMIN")
                         .requestMatchers("/panel/instructor/**").hasAnyRole("INSTRUCTOR", "ADMIN")
                         .requestMatchers("/panel/user/**").authenticated()
                         .anyRequest().authenticated()
@@ -56,6 +60,8 @@ public class SecurityConfig {
                         .permitAll()
                 );
         http.addFilterBefore(recaptchaFilter, UsernamePasswordAuthenticationFilter.class);
+        // po autoryzacji – klucze idempotencji są przypisane do zalogowanego użytkownika
+        http.addFilterAfter(idempotencyFilter, AuthorizationFilter.class);
 
         return http.build();
     }
@@ -4,10 +4,18 @@ import com.icio.sportakuz.entity.*;
 import com.icio.sportakuz.repo.*;
 import com.icio.sportakuz.dto.ActivitySeriesForm;
 import com.icio.sportakuz.repo.ClassStatus;
+import com.icio.sportakuz.service.booking.ActivityBookingCanceller;
+import com.icio.sportakuz.service.booking.BookingArchiver;
+import com.icio.sportakuz.service.booking.SeatLedger;
+import com.icio.sportakuz.service.booking.WaitlistPromoter;
+import com.icio.sportakuz.service.outbox.OutboxPublisher;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Controller;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
@@ -20,6 +28,9 @@ import java.util.List;
 
 /**
  * Kontroler CRUD serii zajęć (ActivitySeries) + generowanie wystąpień (Activity).
+ * Zmiany wystąpień zapisują zdarzenia do outboxu w tej samej transakcji.
+ * Kolizje wystąpień z innymi zajęciami w sali / u instruktora odrzuca baza (ograniczenia z migracji V6)
+ * – cała operacja na serii jest wtedy wycofywana.
  */
 @Controller
 @RequestMapping("/activity-series")
@@ -31,17 +42,32 @@ public class ActivitySeriesController {
     private final ActivityTypeRepository activityTypeRepository;
     private final RoomRepository roomRepository;
     private final UserRepository userRepository;
+    private final SeatLedger seatLedger;
+    private final BookingArchiver bookingArchiver;
+    private final OutboxPublisher outbox;
+    private final ActivityBookingCanceller bookingCanceller;
+    private final WaitlistPromoter waitlistPromoter;
 
     public ActivitySeriesController(ActivitySeriesRepository activitySeriesRepository,
                                     ActivityRepository activityRepository,
                                     ActivityTypeRepository activityTypeRepository,
                                     RoomRepository roomRepository,
-                                    UserRepository userRepository) {
+                                    UserRepository userRepository,
+                                    SeatLedger seatLedger,
+                                    BookingArchiver bookingArchiver,
+                                    OutboxPublisher outbox,
+                                    ActivityBookingCanceller bookingCanceller,
+                                    WaitlistPromoter waitlistPromoter) {
         this.activitySeriesRepository = activitySeriesRepository;
         this.activityRepository = activityRepository;
         this.activityTypeRepository = activityTypeRepository;
         this.roomRepository = roomRepository;
         this.userRepository = userRepository;
+        this.seatLedger = seatLedger;
+        this.bookingArchiver = bookingArchiver;
+        this.outbox = outbox;
+        this.bookingCanceller = bookingCanceller;
+        this.waitlistPromoter = waitlistPromoter;
     }
 
     /** Lista serii */
@@ -67,17 +93,20 @@ public class ActivitySeriesController {
     /** Formularz nowej serii */
     @GetMapping("/new")
     public String newForm(Model model){
-        ActivitySeriesForm f = new ActivitySeriesForm();
-        // Domyślne wartości
-        f.setDurationMinutes(60);
-        f.setActive(true);
+        if(!model.containsAttribute("form")){ // po kolizji wystąpień formularz wraca we flash
+            ActivitySeriesForm f = new ActivitySeriesForm();
+            // Domyślne wartości
+            f.setDurationMinutes(60);
+            f.setActive(true);
 
-        model.addAttribute("form", f);
+            model.addAttribute("form", f);
+        }
         addLookups(model);
         return "activities/new_recurring";
     }
 
     /** Tworzenie nowej serii */
+    @Transactional
     @PostMapping
     public String create(@Valid @ModelAttribute("form") ActivitySeriesForm form,
                          BindingResult binding,
@@ -93,7 +122,20 @@ public class ActivitySeriesController {
         mapToEntity(form, s);
 
         activitySeriesRepository.save(s);
-        generateOccurrencesForSeries(s);
+        try {
+            generateOccurrencesForSeries(s);
+        } catch (DataIntegrityViolationException e) {
+            // transakcja w bazie jest przerwana – formularz wraca z błędem pola przez przekierowanie
+            ActivityOverlap overlap = ActivityOverlap.of(e).orElseThrow(() -> e);
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            switch (overlap) {
+                case ROOM -> binding.rejectValue("roomId", "conflict.room", "Sala zajęta w terminie jednego z wystąpień serii");
+                case INSTRUCTOR -> binding.rejectValue("instructorId", "conflict.instructor", "Instruktor prowadzi inne zajęcia w terminie jednego z wystąpień serii");
+            }
+            ra.addFlashAttribute("form", form);
+            ra.addFlashAttribute(BindingResult.MODEL_KEY_PREFIX + "form", binding);
+            return "redirect:/activity-series/new";
+        }
 
         ra.addFlashAttribute("success", "Seria utworzona i wygenerowano pierwsze zajęcia.");
         return "redirect:/activity-series";
@@ -114,6 +156,7 @@ public class ActivitySeriesController {
     }
 
     /** Aktualizacja serii - KLUCZOWA LOGIKA */
+    @Transactional
     @PostMapping("/{id}")
     public String update(@PathVariable("id") Long id,
                          @Valid @ModelAttribute("form") ActivitySeriesForm form,
@@ -160,9 +203,15 @@ public class ActivitySeriesController {
                     if(oc.getStartTime().isBefore(now)) continue;
                     if(oc.getStatus() == ClassStatus.CANCELLED || oc.getStatus() == ClassStatus.FINISHED) continue;
 
+                    bookingCanceller.cancelAll(oc.getId()); // uczestnicy dostaną powiadomienie o odwołaniu
+
+                    bookingArchiver.archiveForDeletedActivity(oc.getId());
                     activityRepository.delete(oc);
+                    seatLedger.evict(oc.getId());
+                    outbox.publish(OutboxPublisher.Change.activity(OutboxEventType.ACTIVITY_DELETED, oc.getId(), null));
                     removed++;
                 }
+                activityRepository.flush(); // usunięcia przed nowymi wystąpieniami – inaczej kolidowałyby z usuwanymi
                 generateOccurrencesForSeries(s);
                 ra.addFlashAttribute("success", "Zmieniono wzorzec powtarzania. Przeliczono kalendarz (usunięto: " + removed + ").");
 
@@ -212,7 +261,10 @@ public class ActivitySeriesController {
                     oc.setCapacity(s.getCapacity());
                     oc.setNote(s.getNote());
 
-                    activityRepository.save(oc);
+                    activityRepository.saveAndFlush(oc); // kolizję zgłasza baza od razu, jeszcze w bloku try
+                    seatLedger.evict(oc.getId()); // pojemność mogła się zmienić
+                    waitlistPromoter.promote(oc.getId()); // większa pojemność – miejsca najpierw dla listy oczekujących
+                    outbox.publish(OutboxPublisher.Change.activity(OutboxEventType.ACTIVITY_UPDATED, oc.getId(), null));
                     updated++;
                 }
 
@@ -221,27 +273,55 @@ public class ActivitySeriesController {
                     if(oc.getStartTime().isAfter(s.getRecurrenceUntil()) && oc.getStartTime().isAfter(now)){
                         // Sprawdź czy id nadal istnieje (mogło być usunięte w pętli wyżej, choć w tym flow nie powinno)
                         if(activityRepository.existsById(oc.getId())){
+                            bookingCanceller.cancelAll(oc.getId());
+                            bookingArchiver.archiveForDeletedActivity(oc.getId());
                             activityRepository.delete(oc);
+                            seatLedger.evict(oc.getId());
+                            outbox.publish(OutboxPublisher.Change.activity(OutboxEventType.ACTIVITY_DELETED, oc.getId(), null));
                             removed++;
                         }
                     }
                 }
 
-                // Dotwórz, jeśli zakres się wydłużył
+                // Dotwórz, jeśli zakres się wydłużył (po usunięciach – zob. scenariusz A)
+                activityRepository.flush();
                 generateOccurrencesForSeries(s);
 
                 ra.addFlashAttribute("success", "Zaktualizowano serię (zmieniono: " + updated + ", usunięto: " + removed + ").");
             }
             return "redirect:/activity-series";
 
+        } catch (DataIntegrityViolationException ex){
+            ActivityOverlap overlap = ActivityOverlap.of(ex).orElse(null);
+            if (overlap == null) {
+                return updateFailed(id, ex, ra);
+            }
+            log.debug("[SERIES][{}] Kolizja wystąpień: {}", id, overlap.getConstraint());
+            return rejectOverlap(overlap, ra);
         } catch (Exception ex){
-            log.error("[SERIES][{}] Błąd edycji: {}", id, ex.getMessage(), ex);
-            ra.addFlashAttribute("error", "Błąd aktualizacji: " + ex.getMessage());
-            return "redirect:/activity-series";
+            return updateFailed(id, ex, ra);
         }
     }
 
+    private String updateFailed(Long id, Exception ex, RedirectAttributes ra){
+        TransactionAspectSupport.currentTransactionStatus().setRollbackOnly(); // bez częściowych zmian serii
+        log.error("[SERIES][{}] Błąd edycji: {}", id, ex.getMessage(), ex);
+        ra.addFlashAttribute("error", "Błąd aktualizacji: " + ex.getMessage());
+        return "redirect:/activity-series";
+    }
+
+    /** Kolizja wystąpienia serii zgłoszona przez bazę: wycofanie całej operacji i komunikat na liście serii. */
+    private static String rejectOverlap(ActivityOverlap overlap, RedirectAttributes ra){
+        TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+        ra.addFlashAttribute("error", switch (overlap) {
+            case ROOM -> "Wystąpienia serii kolidują z innymi zajęciami w tej sali – zmiany nie zostały zapisane.";
+            case INSTRUCTOR -> "Wystąpienia serii kolidują z innymi zajęciami instruktora – zmiany nie zostały zapisane.";
+        });
+        return "redirect:/activity-series";
+    }
+
     /** Usunięcie serii wraz z wystąpieniami w statusie PLANNED; pozostałe odłączane od serii */
+    @Transactional
     @PostMapping("/{id}/delete")
     public String delete(@PathVariable("id") Long id, RedirectAttributes ra){
         var s = activitySeriesRepository.findById(id).orElse(null);
@@ -257,12 +337,17 @@ public class ActivitySeriesController {
         for (var oc : occurrences) {
             if (oc.getStatus() == ClassStatus.PLANNED) {
                 // Usuń zaplanowane wystąpienia
+                bookingCanceller.cancelAll(oc.getId());
+                bookingArchiver.archiveForDeletedActivity(oc.getId());
                 activityRepository.delete(oc);
+                seatLedger.evict(oc.getId());
+                outbox.publish(OutboxPublisher.Change.activity(OutboxEventType.ACTIVITY_DELETED, oc.getId(), null));
                 deletedOccurrences++;
             } else {
                 // Pozostałe wystąpienia zostają w historii, ale bez powiązania z serią
                 oc.setSeries(null);
                 activityRepository.save(oc);
+                outbox.publish(OutboxPublisher.Change.activity(OutboxEventType.ACTIVITY_UPDATED, oc.getId(), null));
                 detachedOccurrences++;
             }
         }
@@ -278,23 +363,33 @@ public class ActivitySeriesController {
     }
 
     /** Toggle Active */
+    @Transactional
     @PostMapping("/{id}/active")
     public String toggleActive(@PathVariable("id") Long id, @RequestParam("active") boolean active, RedirectAttributes ra){
         var s = activitySeriesRepository.findById(id).orElse(null);
         if(s != null){
             s.setActive(active);
             activitySeriesRepository.save(s);
-            if(active) generateOccurrencesForSeries(s); // Jeśli włączamy, od razu generuj
+            try {
+                if(active) generateOccurrencesForSeries(s); // Jeśli włączamy, od razu generuj
+            } catch (DataIntegrityViolationException e) {
+                return rejectOverlap(ActivityOverlap.of(e).orElseThrow(() -> e), ra);
+            }
         }
         return "redirect:/activity-series";
     }
 
     /** Wymuszenie generowania */
+    @Transactional
     @PostMapping("/{id}/generate")
     public String manualGenerate(@PathVariable("id") Long id, RedirectAttributes ra){
         var s = activitySeriesRepository.findById(id).orElse(null);
         if(s != null){
-            generateOccurrencesForSeries(s);
+            try {
+                generateOccurrencesForSeries(s);
+            } catch (DataIntegrityViolationException e) {
+                return rejectOverlap(ActivityOverlap.of(e).orElseThrow(() -> e), ra);
+            }
             ra.addFlashAttribute("success", "Wymuszono generowanie wystąpień.");
         }
         return "redirect:/activity-series";
@@ -399,7 +494,8 @@ public class ActivitySeriesController {
                 oc.setStatus(ClassStatus.PLANNED);
                 oc.setNote(s.getNote());
 
-                activityRepository.save(oc);
+                activityRepository.saveAndFlush(oc); // kolizję z innymi zajęciami zgłasza baza od razu
+                outbox.publish(OutboxPublisher.Change.activity(OutboxEventType.ACTIVITY_CREATED, oc.getId(), null));
             }
             cursor = next(cursor, s.getRecurrencePattern());
         }
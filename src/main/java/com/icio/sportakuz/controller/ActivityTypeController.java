@@ -4,10 +4,13 @@ import com.icio.sportakuz.dto.ActivityTypeForm;
 import com.icio.sportakuz.entity.ActivityType;
 import com.icio.sportakuz.repo.DifficultyLevel;
 import com.icio.sportakuz.repo.ActivityTypeRepository;
+import com.icio.sportakuz.repo.OutboxEventType;
+import com.icio.sportakuz.service.outbox.OutboxPublisher;
 import jakarta.validation.Valid;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Controller;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
@@ -21,9 +24,11 @@ import java.util.Optional;
 public class ActivityTypeController {
 
     private final ActivityTypeRepository activityTypeRepository;
+    private final OutboxPublisher outbox;
 
-    public ActivityTypeController(ActivityTypeRepository activityTypeRepository) {
+    public ActivityTypeController(ActivityTypeRepository activityTypeRepository, OutboxPublisher outbox) {
         this.activityTypeRepository = activityTypeRepository;
+        this.outbox = outbox;
     }
 
     @GetMapping
@@ -98,6 +103,7 @@ public class ActivityTypeController {
 
     // POPRAWKA: Zmiana Long id na Integer id
     @PostMapping("/edit/{id}")
+    @Transactional
     public String processEditForm(@PathVariable("id") Integer id,
                                   @Valid @ModelAttribute("activityTypeForm") ActivityTypeForm form,
                                   BindingResult bindingResult,
@@ -132,6 +138,7 @@ public class ActivityTypeController {
         typeToUpdate.setDifficulty(form.getDifficulty());
 
         activityTypeRepository.save(typeToUpdate);
+        outbox.publish(OutboxPublisher.Change.reference(OutboxEventType.ACTIVITY_TYPE_UPDATED, id));
 
         redirectAttributes.addFlashAttribute("globalSuccessMessage", "Dane typu zajęć zostały pomyślnie zaktualizowane.");
         return "redirect:/activitytypes";
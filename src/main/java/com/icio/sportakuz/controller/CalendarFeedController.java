@@ -0,0 +1,52 @@
+package com.icio.sportakuz.controller;
+
+import com.icio.sportakuz.service.schedule.CalendarFeedService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Kanały iCalendar do subskrypcji w kalendarzach (bez logowania – dostęp daje token w adresie):
+ *  - /ics/member/{token}.ics – aktywne rezerwacje użytkownika,
+ *  - /ics/instructor/{token}.ics – zajęcia instruktora,
+ *  - /ics/room/{token}.ics – plan sali.
+ * Odpowiedź ma ETag i Last-Modified; gdy kanał się nie zmienił, 304 powstaje bez zapytania do bazy.
+ */
+@Controller
+@RequestMapping("/ics")
+public class CalendarFeedController {
+
+    private final CalendarFeedService feedService;
+
+    public CalendarFeedController(CalendarFeedService feedService) {
+        this.feedService = feedService;
+    }
+
+    /** GET /ics/{kind}/{token}.ics – kanał .ics zapisywany strumieniowo; 404 dla nieznanego tokenu. */
+    @GetMapping("/{kind:member|instructor|room}/{token}.ics")
+    public void feed(@PathVariable("kind") String kind,
+                     @PathVariable("token") String token,
+                     ServletWebRequest request,
+                     HttpServletResponse response) throws IOException {
+        CalendarFeedService.Feed feed = feedService.resolve(CalendarFeedService.Kind.valueOf(kind.toUpperCase(Locale.ROOT)), token);
+        if (feed == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+        if (request.checkNotModified(feed.etag(), feed.lastModified().toEpochMilli())) {
+            return;
+        }
+        response.setContentType("text/calendar");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"sportakuz-" + kind + ".ics\"");
+        feedService.write(feed, response.getWriter());
+    }
+}
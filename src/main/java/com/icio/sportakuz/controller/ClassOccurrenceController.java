@@ -7,9 +7,26 @@ import com.icio.sportakuz.entity.Room;
 import com.icio.sportakuz.entity.User;
 import com.icio.sportakuz.entity.UserRole;
 import com.icio.sportakuz.repo.*;
+import com.icio.sportakuz.service.booking.ActivityBookingCanceller;
+import com.icio.sportakuz.service.booking.BookingArchiver;
+import com.icio.sportakuz.service.booking.RushAdmissionQueue;
+import com.icio.sportakuz.service.booking.SeatLedger;
+import com.icio.sportakuz.service.booking.WaitlistPromoter;
+import com.icio.sportakuz.service.outbox.OutboxPublisher;
+import com.icio.sportakuz.service.schedule.ConflictIndexService;
+import com.icio.sportakuz.service.schedule.InstructorAvailabilityService;
+import com.icio.sportakuz.service.schedule.ScheduleIndexService;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.JpaSort;
 import org.springframework.stereotype.Controller;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
@@ -18,19 +35,18 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
-import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * Kontroler CRUD dla pojedynczych wystąpień zajęć (ClassOccurrence).
  * Odpowiada za:
- *  - listowanie wszystkich wystąpień (proste bez paginacji – do rozbudowy),
+ *  - listowanie wystąpień: bieżące i historia stronicowane, sortowane i filtrowane zapytaniami do bazy,
  *  - wyświetlenie formularza tworzenia / edycji,
  *  - walidację Bean Validation oraz kolizji (sala / instruktor) przed zapisem,
- *  - utworzenie, aktualizację oraz usuwanie wystąpień.
+ *  - utworzenie, aktualizację oraz usuwanie wystąpień (każda zmiana w jednej transakcji ze zdarzeniem w outboxie).
  * Konwersja pomiędzy formularzem a encją uwzględnia strefę czasu (Europe/Warsaw).
  */
 @Controller
@@ -38,124 +54,134 @@ import java.util.Map;
 @Slf4j
 public class ClassOccurrenceController {
 
+    /** Rozmiar strony listy bieżących wystąpień i historii. */
+    private static final int PAGE_SIZE = 15;
+    /** Kursor pierwszej strony historii – później niż jakiekolwiek wystąpienie. */
+    private static final OffsetDateTime HISTORY_START = OffsetDateTime.of(9999, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
     private final ActivityRepository activityRepository;
     private final ActivityTypeRepository activityTypeRepository;
     private final UserRepository userRepository;
     private final RoomRepository roomRepository;
     private final BookingRepository bookingRepository;
+    private final SeatLedger seatLedger;
+    private final RushAdmissionQueue rushQueue;
+    private final BookingArchiver bookingArchiver;
+    private final OutboxPublisher outbox;
+    private final ActivityBookingCanceller bookingCanceller;
+    private final ScheduleIndexService scheduleIndex;
+    private final InstructorAvailabilityService instructorAvailability;
+    private final ConflictIndexService conflictIndex;
+    private final WaitlistPromoter waitlistPromoter;
 
     public ClassOccurrenceController(ActivityRepository activityRepository,
                                      ActivityTypeRepository activityTypeRepository,
                                      UserRepository userRepository,
                                      RoomRepository roomRepository,
-                                     BookingRepository bookingRepository) {
+                                     BookingRepository bookingRepository,
+                                     SeatLedger seatLedger,
+                                     RushAdmissionQueue rushQueue,
+                                     BookingArchiver bookingArchiver,
+                                     OutboxPublisher outbox,
+                                     ActivityBookingCanceller bookingCanceller,
+                                     ScheduleIndexService scheduleIndex,
+                                     InstructorAvailabilityService instructorAvailability,
+                                     ConflictIndexService conflictIndex,
+                                     WaitlistPromoter waitlistPromoter) {
         this.activityRepository = activityRepository;
         this.activityTypeRepository = activityTypeRepository;
         this.userRepository = userRepository;
         this.roomRepository = roomRepository;
         this.bookingRepository = bookingRepository;
+        this.seatLedger = seatLedger;
+        this.rushQueue = rushQueue;
+        this.bookingArchiver = bookingArchiver;
+        this.outbox = outbox;
+        this.bookingCanceller = bookingCanceller;
+        this.scheduleIndex = scheduleIndex;
+        this.instructorAvailability = instructorAvailability;
+        this.conflictIndex = conflictIndex;
+        this.waitlistPromoter = waitlistPromoter;
     }
 
-    /** GET /activities – lista wystąpień (do rozbudowy np. o filtrowanie/paginację). */
+    /**
+     * GET /activities – lista wystąpień: bieżące stronicowane numerem strony, historia kursorem
+     * ({@code historyAfter} = ID ostatniej pokazanej pozycji). Podział wg statusu, sortowanie i okno strony
+     * wykonuje baza – czas odpowiedzi zależy od rozmiaru strony, nie od liczby wystąpień.
+     */
     @GetMapping
     public String list(Model model,
                        @RequestParam(value = "pattern", required = false) String pattern,
                        @RequestParam(value = "sort", required = false) String sort,
                        @RequestParam(value = "order", required = false) String order,
-                       @RequestParam(value = "page", required = false, defaultValue = "0") int page) {
-        final int PAGE_SIZE = 15;
+                       @RequestParam(value = "page", required = false, defaultValue = "0") int page,
+                       @RequestParam(value = "historyAfter", required = false) Long historyAfter) {
         String likePattern = (pattern == null || pattern.isBlank()) ? null : (pattern.trim().toLowerCase() + "%");
-        var all = (likePattern == null) ? activityRepository.findAllByOrderByStartTimeAsc() : activityRepository.searchOrderByStartTimeAsc(likePattern);
-        java.util.List<Activity> upcoming = new java.util.ArrayList<>();
-        java.util.List<Activity> history = new java.util.ArrayList<>();
-        for (var oc : all) {
-            if (oc.getStatus() == ClassStatus.CANCELLED || oc.getStatus() == ClassStatus.FINISHED) {
-                history.add(oc);
-            } else {
-                upcoming.add(oc);
-            }
-        }
-        // Historia – odwrotnie (najnowsze na górze) – sortujemy malejąco po starcie
-        history.sort(java.util.Comparator.comparing(Activity::getStartTime).reversed());
-
-        // Sortowanie głównej listy (upcoming) wg typu lub instruktora
-        if (sort != null && !sort.isBlank()) {
-            Comparator<Activity> cmp = null;
-            String sortType = sort.toLowerCase();
-            if ("type".equals(sortType)) {
-                cmp = Comparator.comparing(activity -> {
-                    var type = activity.getType();
-                    return type != null && type.getActivityName() != null ? type.getActivityName().toLowerCase() : "";
-                });
-            } else if ("instructor".equals(sortType)) {
-                cmp = Comparator.comparing(activity -> {
-                    var instructor = activity.getInstructor();
-                    String last = (instructor != null && instructor.getLastName() != null) ? instructor.getLastName().toLowerCase() : "";
-                    String first = (instructor != null && instructor.getFirstName() != null) ? instructor.getFirstName().toLowerCase() : "";
-                    return last + " " + first;
-                });
-            }
-            if (cmp != null) {
-                boolean desc = order != null && order.equalsIgnoreCase("desc");
-                upcoming.sort(desc ? cmp.reversed() : cmp);
-            }
+
+        Page<Activity> upcoming = activityRepository.findUpcomingPage(likePattern,
+                PageRequest.of(Math.max(page, 0), PAGE_SIZE, upcomingSort(sort, order)));
+        if (upcoming.getNumber() >= upcoming.getTotalPages() && upcoming.getTotalPages() > 0) {
+            // strona poza zakresem (np. po zawężeniu wyszukiwania) – ostatnia istniejąca
+            upcoming = activityRepository.findUpcomingPage(likePattern,
+                    PageRequest.of(upcoming.getTotalPages() - 1, PAGE_SIZE, upcomingSort(sort, order)));
         }
+        List<Activity> upcomingPage = upcoming.getContent();
 
-        // --- Proste stronicowanie listy "upcoming" ---
-        int totalUpcoming = upcoming.size();
-        int totalPages = (int) Math.ceil(totalUpcoming / (double) PAGE_SIZE);
-        if (page < 0) page = 0;
-        if (page >= totalPages && totalPages > 0) page = totalPages - 1;
-        int fromIndex = page * PAGE_SIZE;
-        int toIndex = Math.min(fromIndex + PAGE_SIZE, totalUpcoming);
-        java.util.List<Activity> upcomingPage = totalUpcoming == 0 ? java.util.Collections.emptyList() : upcoming.subList(fromIndex, toIndex);
-        // -----------------------------------------------------------
+        // Historia: od kursora, o jedną pozycję więcej – wiadomo wtedy, czy istnieje starsza strona
+        OffsetDateTime historyStart = historyAfter == null ? null
+                : activityRepository.findStartTimeById(historyAfter).orElse(null);
+        List<Activity> history = historyStart == null
+                ? activityRepository.findHistoryBefore(likePattern, HISTORY_START, Long.MAX_VALUE, Pageable.ofSize(PAGE_SIZE + 1))
+                : activityRepository.findHistoryBefore(likePattern, historyStart, historyAfter, Pageable.ofSize(PAGE_SIZE + 1));
+        Long historyNext = null;
+        if (history.size() > PAGE_SIZE) {
+            history = history.subList(0, PAGE_SIZE);
+            historyNext = history.get(PAGE_SIZE - 1).getId();
+        }
 
-        // Mapa dostępnych instruktorów – tylko dla upcoming
-        // Pobieramy tylko użytkowników z rolą INSTRUKTOR
+        // Dostępni instruktorzy dla wystąpień na stronie – jedno zapytanie o zajęte przedziały
         var allInstructors = userRepository.findByRole(UserRole.ROLE_INSTRUCTOR);
-        Map<Long, List<User>> availableMap = new HashMap<>();
-        Map<Long, Long> activeBookingsCount = new HashMap<>(); //  liczności rezerwacji
-        for (var oc : upcomingPage) {
-            java.util.List<User> avail = new java.util.ArrayList<>();
-            for (var instr : allInstructors) {
-                if (!instr.isActive()) continue;
-                if (oc.getInstructor() != null && instr.getId().equals(oc.getInstructor().getId())) {
-                    avail.add(instr); // obecny zawsze
-                    continue;
-                }
-                var overlapping = activityRepository
-                        .findOverlappingForInstructor(instr.getId(), oc.getStartTime(), oc.getEndTime())
-                        .stream()
-                        .filter(c -> c.getStatus() != ClassStatus.CANCELLED)
-                        .toList();
-                if (overlapping.isEmpty()) {
-                    avail.add(instr);
-                }
-            }
-            availableMap.put(oc.getId(), avail);
-            activeBookingsCount.put(oc.getId(), bookingRepository.countActiveByClassId(oc.getId())); // ile aktywnych rezerwacji
-        }
+        Map<Long, List<User>> availableMap = instructorAvailability.availableInstructors(upcomingPage, allInstructors);
         model.addAttribute("activities", upcomingPage); // główna lista = przyszłe (stronicowana)
-        model.addAttribute("historyActivities", history); // historia = anulowane / zakończone
+        model.addAttribute("occupancy", bookingRepository.occupancyOf(upcomingPage.stream().map(Activity::getId).toList()));
+        model.addAttribute("historyActivities", history); // historia = anulowane / zakończone (stronicowana kursorem)
+        model.addAttribute("historyNext", historyNext);
+        model.addAttribute("historyFirst", historyStart == null);
         model.addAttribute("allStatuses", ClassStatus.values());
         model.addAttribute("instructors", allInstructors);
         model.addAttribute("availableInstructors", availableMap);
-        model.addAttribute("activeBookings", activeBookingsCount);
         model.addAttribute("pattern", pattern);
         model.addAttribute("sort", sort);
         model.addAttribute("order", order);
-        model.addAttribute("page", page);
-        model.addAttribute("totalPages", totalPages);
+        model.addAttribute("page", upcoming.getNumber());
+        model.addAttribute("totalPages", upcoming.getTotalPages());
         return "activities/list";
     }
 
+    /**
+     * Kolejność listy bieżących wystąpień: wg typu lub nazwiska instruktora (bez rozróżniania wielkości liter)
+     * w kierunku {@code order}, a w ich obrębie – i domyślnie – wg czasu rozpoczęcia.
+     */
+    private static Sort upcomingSort(String sort, String order) {
+        Sort.Direction direction = "desc".equalsIgnoreCase(order) ? Sort.Direction.DESC : Sort.Direction.ASC;
+        Sort byStart = JpaSort.unsafe(Sort.Direction.ASC, "c.startTime", "c.id");
+        if ("type".equalsIgnoreCase(sort)) {
+            return JpaSort.unsafe(direction, "lower(t.activityName)").and(byStart);
+        }
+        if ("instructor".equalsIgnoreCase(sort)) {
+            return JpaSort.unsafe(direction, "lower(i.lastName)", "lower(i.firstName)").and(byStart);
+        }
+        return byStart;
+    }
+
     /** GET /activities/new – formularz tworzenia nowego wystąpienia z domyślnym czasem trwania. */
     @GetMapping("/new")
     public String createForm(Model model) {
-        ClassOccurrenceForm f = new ClassOccurrenceForm();
-        // Nie ustawiamy tutaj domyślnego czasu – zostanie wstawiony przez JS po wyborze typu.
-        model.addAttribute("form", f);
+        if (!model.containsAttribute("form")) { // po kolizji zgłoszonej przez bazę formularz wraca we flash
+            ClassOccurrenceForm f = new ClassOccurrenceForm();
+            // Nie ustawiamy tutaj domyślnego czasu – zostanie wstawiony przez JS po wyborze typu.
+            model.addAttribute("form", f);
+        }
         addLookups(model);
         return "activities/new";
     }
@@ -179,6 +205,8 @@ public class ClassOccurrenceController {
     /**
      * Waliduje kolizje sali/instruktora w podanym przedziale czasowym.
      * Jeśli editingId != null – ignoruje kolizję z własnym wystąpieniem podczas edycji.
+     * Sprawdza indeks w pamięci (bez zapytań do bazy) – wczesny komunikat w formularzu. O zapisie decydują ograniczenia
+     * w bazie (migracja V6): kolizję, której indeks jeszcze nie zna, odrzuca zapis – zob. {@link #rejectOverlap}.
      * Zajęcia z kolizją NIE są tworzone/aktualizowane – użytkownik dostaje błąd w formularzu.
      */
     private void validateConflicts(ClassOccurrenceForm form, BindingResult binding, Long editingId) {
@@ -190,37 +218,63 @@ public class ClassOccurrenceController {
         if (start == null || end == null) return; // brak kompletnych danych czasowych
 
         // Sprawdzenie kolizji sali – niezależnie od wybranego instruktora
-        if (form.getRoomId() != null) {
-            long roomCnt = activityRepository.countOverlappingInRoom(form.getRoomId(), start, end);
-            if (editingId != null && roomCnt > 0) {
-                roomCnt = activityRepository.findOverlappingInRoom(form.getRoomId(), start, end)
-                        .stream()
-                        .filter(c -> !c.getId().equals(editingId))
-                        .count();
-            }
-            if (roomCnt > 0) {
-                log.debug("[CONFLICT][ROOM] roomId={} start={} end={} count={}", form.getRoomId(), start, end, roomCnt);
-                binding.rejectValue("roomId", "conflict.room", "Sala zajęta w tym czasie");
-            }
+        if (form.getRoomId() != null && conflictIndex.roomBusy(form.getRoomId(), start, end, editingId)) {
+            log.debug("[CONFLICT][ROOM] roomId={} start={} end={}", form.getRoomId(), start, end);
+            rejectOverlap(binding, ActivityOverlap.ROOM);
         }
 
         // Sprawdzenie kolizji instruktora – tylko jeśli wybrany instruktor
-        if (form.getInstructorId() != null) {
-            long instrCnt = activityRepository.countOverlappingForInstructor(form.getInstructorId(), start, end);
-            if (editingId != null && instrCnt > 0) {
-                instrCnt = activityRepository.findOverlappingForInstructor(form.getInstructorId(), start, end)
-                        .stream()
-                        .filter(c -> !c.getId().equals(editingId))
-                        .count();
-            }
-            if (instrCnt > 0) {
-                log.debug("[CONFLICT][INSTR] instructorId={} start={} end={} count={}", form.getInstructorId(), start, end, instrCnt);
-                binding.rejectValue("instructorId", "conflict.instructor", "Instruktor prowadzi zajęcia w tym czasie");
-            }
+        if (form.getInstructorId() != null && conflictIndex.instructorBusy(form.getInstructorId(), start, end, editingId)) {
+            log.debug("[CONFLICT][INSTR] instructorId={} start={} end={}", form.getInstructorId(), start, end);
+            rejectOverlap(binding, ActivityOverlap.INSTRUCTOR);
         }
     }
 
+    /**
+     * GET /activities/conflicts – podpowiedź dla formularza (zmiana sali, instruktora lub czasu): czy według indeksu
+     * w pamięci sala lub instruktor są już zajęci. Bez zapytań do bazy – to samo sprawdzenie co {@link #validateConflicts}.
+     */
+    @GetMapping("/conflicts")
+    @ResponseBody
+    public ConflictHint conflicts(@ModelAttribute ClassOccurrenceForm form,
+                                  @RequestParam(value = "excludeId", required = false) Long excludeId) {
+        var start = computeStart(form);
+        var end = computeEnd(start, form.getDurationMinutes());
+        if (end == null) {
+            return new ConflictHint(false, false);
+        }
+        return new ConflictHint(
+                form.getRoomId() != null && conflictIndex.roomBusy(form.getRoomId(), start, end, excludeId),
+                form.getInstructorId() != null && conflictIndex.instructorBusy(form.getInstructorId(), start, end, excludeId));
+    }
+
+    public record ConflictHint(boolean room, boolean instructor) {}
+
+    private static void rejectOverlap(BindingResult binding, ActivityOverlap overlap) {
+        switch (overlap) {
+            case ROOM -> binding.rejectValue("roomId", "conflict.room", "Sala zajęta w tym czasie");
+            case INSTRUCTOR -> binding.rejectValue("instructorId", "conflict.instructor", "Instruktor prowadzi zajęcia w tym czasie");
+        }
+    }
+
+    /**
+     * Kolizja zgłoszona przez bazę (ograniczenia z migracji V6) – np. dwa równoległe zapisy, które oba przeszły
+     * {@link #validateConflicts}. Zmiany są wycofywane, a formularz wraca z tym samym błędem pola przez przekierowanie
+     * (transakcja w bazie jest już przerwana, więc nie da się doczytać list wyboru). Inne naruszenia więzów – bez zmian.
+     */
+    private static String rejectOverlap(DataIntegrityViolationException e, ClassOccurrenceForm form,
+                                        BindingResult binding, RedirectAttributes ra, String formUrl) {
+        ActivityOverlap overlap = ActivityOverlap.of(e).orElseThrow(() -> e);
+        TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+        log.debug("[CONFLICT][DB] {}", overlap.getConstraint());
+        rejectOverlap(binding, overlap);
+        ra.addFlashAttribute("form", form);
+        ra.addFlashAttribute(BindingResult.MODEL_KEY_PREFIX + "form", binding);
+        return "redirect:" + formUrl;
+    }
+
     /** POST /activities – tworzy nowe wystąpienie po walidacji formularza i kolizji. */
+    @Transactional
     @PostMapping
     public String create(@Valid @ModelAttribute("form") ClassOccurrenceForm form,
                          BindingResult binding,
@@ -279,13 +333,21 @@ public class ClassOccurrenceController {
         oc.setNote(form.getNote());
         oc.setTopPickRanking(form.getTopPickRanking());
 
-        activityRepository.save(oc);
+        try {
+            activityRepository.saveAndFlush(oc);
+        } catch (DataIntegrityViolationException e) {
+            return rejectOverlap(e, form, binding, ra, "/activities/new");
+        }
+        outbox.publish(OutboxPublisher.Change.activity(OutboxEventType.ACTIVITY_CREATED, oc.getId(), null));
+        scheduleIndex.refreshAfterCommit(oc.getId());
+        conflictIndex.refreshAfterCommit(oc.getId());
 
         ra.addFlashAttribute("success", "Zajęcia dodane.");
         return "redirect:/activities";
     }
 
     /** POST /activities/{id}/delete – usuwa wystąpienie jeśli brak aktywnych rezerwacji; inaczej blokuje. */
+    @Transactional
     @PostMapping("/{id}/delete")
     public String delete(@PathVariable("id") Long id, RedirectAttributes ra) {
         var oc = activityRepository.findById(id).orElse(null);
@@ -299,7 +361,13 @@ public class ClassOccurrenceController {
             ra.addFlashAttribute("error", "Nie można usunąć zajęć " + occurrenceLabel(oc) + ", istnieją aktywne rezerwacje (" + activeBookings + ").");
             return "redirect:/activities";
         }
+        bookingCanceller.cancelAll(id); // lista oczekujących – powiadomienie o odwołaniu
+        bookingArchiver.archiveForDeletedActivity(id); // anulowane rezerwacje trafiają do historii
         activityRepository.deleteById(id);
+        seatLedger.evict(id);
+        outbox.publish(OutboxPublisher.Change.activity(OutboxEventType.ACTIVITY_DELETED, id, null));
+        scheduleIndex.refreshAfterCommit(id);
+        conflictIndex.refreshAfterCommit(id);
         ra.addFlashAttribute("success", "Zajęcia " + occurrenceLabel(oc) + " usunięte.");
         return "redirect:/activities";
     }
@@ -312,14 +380,16 @@ public class ClassOccurrenceController {
             ra.addFlashAttribute("success", "Zajęcia nie znalezione (id=" + id + ").");
             return "redirect:/activities";
         }
-        ClassOccurrenceForm form = toForm(oc);
-        model.addAttribute("form", form);
+        if (!model.containsAttribute("form")) { // po kolizji zgłoszonej przez bazę formularz wraca we flash
+            model.addAttribute("form", toForm(oc));
+        }
         model.addAttribute("editId", id);
         addLookups(model);
         return "activities/edit";
     }
 
     /** POST /activities/{id} – aktualizacja istniejącego wystąpienia po walidacji. */
+    @Transactional
     @PostMapping("/{id}")
     public String update(@PathVariable("id") Long id,
                          @Valid @ModelAttribute("form") ClassOccurrenceForm form,
@@ -380,7 +450,16 @@ public class ClassOccurrenceController {
         oc.setCapacity(form.getCapacity());
         oc.setNote(form.getNote());
 
-        activityRepository.save(oc);
+        try {
+            activityRepository.saveAndFlush(oc);
+        } catch (DataIntegrityViolationException e) {
+            return rejectOverlap(e, form, binding, ra, "/activities/" + id + "/edit");
+        }
+        seatLedger.evict(id); // pojemność mogła się zmienić
+        waitlistPromoter.promote(id); // większa pojemność – miejsca najpierw dla listy oczekujących
+        outbox.publish(OutboxPublisher.Change.activity(OutboxEventType.ACTIVITY_UPDATED, id, null));
+        scheduleIndex.refreshAfterCommit(id);
+        conflictIndex.refreshAfterCommit(id);
         ra.addFlashAttribute("success", "Zajęcia " + occurrenceLabel(oc) + " zaktualizowane.");
         return "redirect:/activities";
     }
@@ -424,7 +503,11 @@ public class ClassOccurrenceController {
         };
     }
 
-    /** POST /activities/{id}/status – zmiana statusu pojedynczego wystąpienia zajęć. */
+    /**
+     * POST /activities/{id}/status – zmiana statusu pojedynczego wystąpienia zajęć.
+     * Odwołanie zajęć (CANCELLED) anuluje zbiorczo wszystkie ich rezerwacje.
+     */
+    @Transactional
     @PostMapping("/{id}/status")
     public String updateStatus(@PathVariable("id") Long id,
                                @RequestParam("status") ClassStatus newStatus,
@@ -441,11 +524,26 @@ public class ClassOccurrenceController {
         }
         oc.setStatus(newStatus);
         activityRepository.save(oc);
-        ra.addFlashAttribute("success", "Status zajęć " + occurrenceLabel(oc) + " zmieniony na " + newStatus.getLabel() + ".");
+        seatLedger.evict(id);
+        if (current != newStatus) {
+            outbox.publish(OutboxPublisher.Change.activity(OutboxEventType.ACTIVITY_STATUS_CHANGED, id, newStatus.name()));
+            scheduleIndex.refreshAfterCommit(id);
+            conflictIndex.refreshAfterCommit(id);
+        }
+        if (current == ClassStatus.PLANNED && newStatus == ClassStatus.OPEN) {
+            rushQueue.open(id); // otwarcie zapisów – pierwsze minuty obsługuje kolejka biletów
+        }
+        String cancelledInfo = "";
+        if (current != ClassStatus.CANCELLED && newStatus == ClassStatus.CANCELLED) {
+            int cancelled = bookingCanceller.cancelAll(id); // uczestnicy dostaną powiadomienie asynchronicznie
+            cancelledInfo = cancelled > 0 ? " Anulowano rezerwacje: " + cancelled + "." : "";
+        }
+        ra.addFlashAttribute("success", "Status zajęć " + occurrenceLabel(oc) + " zmieniony na " + newStatus.getLabel() + "." + cancelledInfo);
         return "redirect:/activities";
     }
 
     /** POST /activities/{id}/instructor – zmiana instruktora (zastępstwo) dla pojedynczego wystąpienia. */
+    @Transactional
     @PostMapping("/{id}/instructor")
     public String updateInstructor(@PathVariable("id") Long id,
                                    @RequestParam("instructorId") Long instructorId,
@@ -477,14 +575,18 @@ public class ClassOccurrenceController {
         if (oc.getSubstitutedFor() != null && oc.getSubstitutedFor().getId().equals(instructorId)) {
             oc.setInstructor(newInstr); // newInstr to oryginalny
             oc.setSubstitutedFor(null);
-            activityRepository.save(oc);
+            if (!saveInstructorChange(oc, ra)) {
+                return "redirect:/activities";
+            }
+            outbox.publish(OutboxPublisher.Change.activity(OutboxEventType.ACTIVITY_UPDATED, id, "INSTRUCTOR"));
+            scheduleIndex.refreshAfterCommit(id);
+            conflictIndex.refreshAfterCommit(id);
             ra.addFlashAttribute("success", "Powrót do instruktora pierwotnego: " + newInstr.getFirstName() + " " + newInstr.getLastName() + ".");
             return "redirect:/activities";
         }
-        // Walidacja kolizji czasowej dla nowego instruktora (ignorując bieżące wystąpienie i CANCELLED)
-        var conflicts = activityRepository.findOverlappingForInstructor(instructorId, oc.getStartTime(), oc.getEndTime())
-            .stream().filter(c -> !c.getId().equals(oc.getId()) && c.getStatus() != ClassStatus.CANCELLED).count();
-        if (conflicts > 0) {
+        // Walidacja kolizji czasowej dla nowego instruktora (ignorując bieżące wystąpienie i CANCELLED) – według indeksu,
+        // ostatecznie rozstrzyga ograniczenie w bazie przy zapisie
+        if (conflictIndex.instructorBusy(instructorId, oc.getStartTime(), oc.getEndTime(), oc.getId())) {
             ra.addFlashAttribute("error", "Instruktor ma kolizję w tym przedziale czasu.");
             return "redirect:/activities";
         }
@@ -493,11 +595,32 @@ public class ClassOccurrenceController {
             oc.setSubstitutedFor(oc.getInstructor());
         }
         oc.setInstructor(newInstr);
-        activityRepository.save(oc);
+        if (!saveInstructorChange(oc, ra)) {
+            return "redirect:/activities";
+        }
+        outbox.publish(OutboxPublisher.Change.activity(OutboxEventType.ACTIVITY_UPDATED, id, "INSTRUCTOR"));
+        scheduleIndex.refreshAfterCommit(id);
+        conflictIndex.refreshAfterCommit(id);
         ra.addFlashAttribute("success", "Instruktor zajęć " + occurrenceLabel(oc) + " zmieniony na: " + newInstr.getFirstName() + " " + newInstr.getLastName() + ".");
         return "redirect:/activities";
     }
 
+    /**
+     * Zapisuje zmianę instruktora od razu w bazie; kolizję instruktora zgłoszoną przez bazę (ograniczenie z migracji V6,
+     * np. równoległe zastępstwo) zamienia na ten sam komunikat co sprawdzenie przed zapisem i wycofuje zmiany.
+     */
+    private boolean saveInstructorChange(Activity oc, RedirectAttributes ra) {
+        try {
+            activityRepository.saveAndFlush(oc);
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            ActivityOverlap.of(e).orElseThrow(() -> e);
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            ra.addFlashAttribute("error", "Instruktor ma kolizję w tym przedziale czasu.");
+            return false;
+        }
+    }
+
     /** Pomocnicza etykieta wystąpienia: [YYYY-MM-DD] Typ HH:mm-HH:mm - Instruktor (Zastępstwo za: Stary Instruktor) */
     private String occurrenceLabel(Activity oc) {
         if (oc == null) return "[nieznane]";
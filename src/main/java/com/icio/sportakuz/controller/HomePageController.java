@@ -5,7 +5,7 @@ import com.icio.sportakuz.repo.ActivityRepository;
 import com.icio.sportakuz.repo.ActivityTypeRepository;
 import com.icio.sportakuz.repo.RoomRepository;
 import com.icio.sportakuz.repo.UserRepository;
-import org.springframework.data.domain.Pageable;
+import com.icio.sportakuz.service.schedule.ScheduleSnapshotService;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -14,7 +14,7 @@ import java.time.OffsetDateTime;
 
 /**
  * Kontroler strony głównej. Odpowiada za zebranie statystyk (liczby zajęć, typów, instruktorów, sal)
- * oraz listy najbliższych widocznych zajęć (upcoming). Dane trafiają do szablonu index.html.
+ * oraz listy najbliższych widocznych zajęć (upcoming, z migawki harmonogramu). Dane trafiają do szablonu index.html.
  * Udostępnia także prosty endpoint /hello do testu renderowania innego widoku.
  */
 @Controller
@@ -24,14 +24,17 @@ public class HomePageController {
     private final ActivityTypeRepository activityTypeRepository;
     private final RoomRepository roomRepository;
     private final UserRepository userRepository;
+    private final ScheduleSnapshotService scheduleSnapshot;
 
     public HomePageController(ActivityRepository activityRepository,
                               ActivityTypeRepository activityTypeRepository,
-                              RoomRepository roomRepository, UserRepository userRepository) {
+                              RoomRepository roomRepository, UserRepository userRepository,
+                              ScheduleSnapshotService scheduleSnapshot) {
         this.activityRepository = activityRepository;
         this.activityTypeRepository = activityTypeRepository;
         this.userRepository = userRepository;
         this.roomRepository = roomRepository;
+        this.scheduleSnapshot = scheduleSnapshot;
     }
 
     /** Strona główna – pobiera statystyki i najbliższe zajęcia (limit 4). */
@@ -43,7 +46,7 @@ public class HomePageController {
         long roomsTotal = roomRepository.count();
 
         OffsetDateTime now = OffsetDateTime.now();
-        var upcoming = activityRepository.findNextVisible(now, Pageable.ofSize(4));
+        var upcoming = scheduleSnapshot.upcoming(4, null);
         model.addAttribute("now", now);
         model.addAttribute("upcoming", upcoming);
 
@@ -1,12 +1,16 @@
 package com.icio.sportakuz.controller;
 
 import com.icio.sportakuz.entity.Room;
+import com.icio.sportakuz.repo.OutboxEventType;
 import com.icio.sportakuz.repo.RoomRepository;
 import com.icio.sportakuz.dto.RoomForm;
+import com.icio.sportakuz.service.outbox.OutboxPublisher;
+import com.icio.sportakuz.service.schedule.CalendarFeedService;
 import jakarta.validation.Valid;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Controller;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
@@ -20,9 +24,13 @@ import java.util.Optional;
 public class RoomController {
 
     private final RoomRepository roomRepository;
+    private final OutboxPublisher outbox;
+    private final CalendarFeedService feedService;
 
-    public RoomController(RoomRepository roomRepository) {
+    public RoomController(RoomRepository roomRepository, OutboxPublisher outbox, CalendarFeedService feedService) {
         this.roomRepository = roomRepository;
+        this.outbox = outbox;
+        this.feedService = feedService;
     }
 
     /**
@@ -32,6 +40,7 @@ public class RoomController {
     public String showRoomList(Model model) {
         List<Room> rooms = roomRepository.findAll(Sort.by("name"));
         model.addAttribute("rooms", rooms);
+        model.addAttribute("roomFeedTokens", feedService.roomTokens()); // adresy planów sal .ics
         model.addAttribute("pageTitle", "Sale i Pomieszczenia");
         return "rooms/list_rooms";
     }
@@ -114,6 +123,7 @@ public class RoomController {
      * Przetwarza dane z formularza edycji sali.
      */
     @PostMapping("/edit/{id}")
+    @Transactional
     public String processEditForm(@PathVariable("id") Long id,
                                   @Valid @ModelAttribute("roomForm") RoomForm form,
                                   BindingResult bindingResult,
@@ -148,6 +158,7 @@ public class RoomController {
 
         // 4. Zapis
         roomRepository.save(roomToUpdate);
+        outbox.publish(OutboxPublisher.Change.reference(OutboxEventType.ROOM_UPDATED, id));
 
         // 5. Przekierowanie
         redirectAttributes.addFlashAttribute("globalSuccessMessage", "Dane sali zostały pomyślnie zaktualizowane.");
@@ -183,4 +194,17 @@ public class RoomController {
         // 3. Powrót do listy
         return "redirect:/rooms";
     }
-}
\ No newline at end of file
+
+    /**
+     * Generuje adres planu sali (.ics) albo zastępuje dotychczasowy nowym – stary adres przestaje działać.
+     */
+    @PostMapping("/{id}/calendar-token")
+    public String regenerateCalendarToken(@PathVariable("id") Long id, RedirectAttributes redirectAttributes) {
+        if (feedService.regenerateRoomToken(id) == null) {
+            redirectAttributes.addFlashAttribute("globalErrorMessage", "Nie znaleziono sali o ID: " + id);
+        } else {
+            redirectAttributes.addFlashAttribute("globalSuccessMessage", "Wygenerowano nowy adres planu sali (.ics).");
+        }
+        return "redirect:/rooms";
+    }
+}
@@ -2,27 +2,36 @@ package com.icio.sportakuz.controller;
 
 import com.icio.sportakuz.entity.Activity;
 import com.icio.sportakuz.repo.ActivityRepository;
+import com.icio.sportakuz.service.schedule.ScheduleVersion;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.context.request.ServletWebRequest;
 
+import java.security.Principal;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
 import java.util.List;
+import java.util.Locale;
 
 @Controller
 @RequestMapping("/top-picks")
 public class TopPicksController {
 
     private final ActivityRepository activityRepository;
+    private final ScheduleVersion scheduleVersion;
 
-    public TopPicksController(ActivityRepository activityRepository) {
+    public TopPicksController(ActivityRepository activityRepository, ScheduleVersion scheduleVersion) {
         this.activityRepository = activityRepository;
+        this.scheduleVersion = scheduleVersion;
     }
 
     @GetMapping
-    public String showTopPicks(Model model) {
+    public String showTopPicks(Model model, Principal principal, Locale locale, ServletWebRequest request) {
+        if (scheduleVersion.checkNotModified(request, scheduleVersion.scheduleETag(ScheduleVersion.viewer(principal), locale))) {
+            return null;
+        }
         List<Activity> topPicks = activityRepository.findTopPicks(OffsetDateTime.now());
 
         model.addAttribute("topPicks", topPicks);
@@ -6,13 +6,26 @@ import com.icio.sportakuz.repo.BookingStatus;
 import com.icio.sportakuz.repo.BookingRepository;
 import com.icio.sportakuz.repo.ActivityRepository;
 import com.icio.sportakuz.repo.ClassStatus;
+import com.icio.sportakuz.repo.OutboxEventType;
+import com.icio.sportakuz.dto.booking.BookingHistoryDto;
+import com.icio.sportakuz.service.booking.BookingExecutor;
+import com.icio.sportakuz.service.booking.BookingHistoryService;
+import com.icio.sportakuz.service.booking.BookingResult;
+import com.icio.sportakuz.service.booking.RushAdmissionQueue;
+import com.icio.sportakuz.service.booking.SeatLedger;
+import com.icio.sportakuz.service.outbox.OutboxPublisher;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
 import java.security.Principal;
-import java.util.List;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.*;
 
 /**
  * REST API do tworzenia & usuwania rezerwacji.
@@ -23,55 +36,194 @@ public class BookingApiController {
 
     private final BookingRepository bookingRepository;
     private final ActivityRepository occurrenceRepository;
+    private final SeatLedger seatLedger;
+    private final BookingExecutor bookingExecutor;
+    private final RushAdmissionQueue rushQueue;
+    private final OutboxPublisher outbox;
+    private final BookingHistoryService historyService;
+    private final ZoneId zone = ZoneId.of("Europe/Warsaw");
+
+    /** Indeks częściowy: jedna "żywa" rezerwacja użytkownika na zajęcia (migracja V2). */
+    private static final String LIVE_BOOKING_INDEX = "uq_bookings_live_user";
+
+    /** Maksymalna liczba zajęć w jednym żądaniu /batch. */
+    private static final int MAX_BATCH_SIZE = 100;
 
     public BookingApiController(BookingRepository bookingRepository,
-                                ActivityRepository occurrenceRepository) {
+                                ActivityRepository occurrenceRepository,
+                                SeatLedger seatLedger,
+                                BookingExecutor bookingExecutor,
+                                RushAdmissionQueue rushQueue,
+                                OutboxPublisher outbox,
+                                BookingHistoryService historyService) {
         this.bookingRepository = bookingRepository;
         this.occurrenceRepository = occurrenceRepository;
+        this.seatLedger = seatLedger;
+        this.bookingExecutor = bookingExecutor;
+        this.rushQueue = rushQueue;
+        this.outbox = outbox;
+        this.historyService = historyService;
     }
 
     /**
      * Tworzy nową rezerwację w statusie REQUESTED dla podanego wystąpienia zajęć.
-     * Walidacje: istnieje klasa, nie jest CANCELLED, nie przekroczono pojemności, brak duplikatu userName.
+     * Walidacje: istnieje klasa, nie jest CANCELLED, brak duplikatu userName.
+     * Rezerwację wykonuje skonfigurowany {@link BookingExecutor} (bezpośrednio albo przez shard zajęć),
+     * a w trybie rush ({@link RushAdmissionQueue}) odpowiedź 202 zawiera jedynie bilet do sprawdzenia w /tickets/{id}.
+     * Gdy brak wolnych miejsc, rezerwacja trafia na listę oczekujących (WAITLISTED) – odpowiedź 202 zawiera pozycję w kolejce.
+     * Gdy shard nie odpowie w czasie: 503, jeśli żądanie wycofano z kolejki, albo 202 bez wyniku, jeśli było już zapisywane.
      */
-    @Transactional
     @PostMapping("/create")
     public ResponseEntity<?> create(@RequestBody CreateBookingRequest req, Principal principal) {
         if (req.classId() == null || principal.getName() == null || principal.getName().isBlank()) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new ErrorResponse("Brak wymaganych danych"));
         }
-        Activity occurrence = occurrenceRepository.findByIdForUpdate(req.classId());
-        if (occurrence == null) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ErrorResponse("Nie znaleziono zajęć"));
+        if (rushQueue.isRush(req.classId())) {
+            RushAdmissionQueue.Ticket ticket = rushQueue.issue(req.classId(), principal.getName());
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(new TicketResponse(ticket.id(), rushQueue.ahead(ticket)));
         }
-        if (occurrence.getStatus() == ClassStatus.CANCELLED) {
-            return ResponseEntity.status(HttpStatus.CONFLICT).body(new ErrorResponse("Zajęcia anulowane"));
+        return toResponse(bookingExecutor.create(req.classId(), principal.getName()));
+    }
+
+    /**
+     * Status biletu trybu rush: 202 z liczbą biletów przed nami, dopóki miejsce nie zostało przydzielone,
+     * a potem ta sama odpowiedź, jaką zwróciłoby /create.
+     */
+    @GetMapping("/tickets/{ticketId}")
+    public ResponseEntity<?> ticket(@PathVariable("ticketId") String ticketId, Principal principal) {
+        RushAdmissionQueue.Ticket ticket = rushQueue.ticket(ticketId);
+        if (ticket == null || !ticket.userName().equals(principal.getName())) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ErrorResponse("Nie znaleziono zgłoszenia"));
+        }
+        if (!ticket.isResolved()) {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(new TicketResponse(ticket.id(), rushQueue.ahead(ticket)));
         }
-        long reserved = bookingRepository.countActiveByClassId(occurrence.getId());
-        if (reserved >= occurrence.getCapacity()) {
-            return ResponseEntity.status(HttpStatus.CONFLICT).body(new ErrorResponse("Brak wolnych miejsc"));
+        if (ticket.result() == null) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new ErrorResponse("Nie udało się przydzielić miejsca, spróbuj ponownie"));
         }
-        // Sprawdź duplikat aktywnej rezerwacji użytkownika
-        boolean already = bookingRepository.existsByActivity_IdAndUserNameAndStatusIn(
-                occurrence.getId(), principal.getName(), List.of(BookingStatus.REQUESTED, BookingStatus.CONFIRMED, BookingStatus.PAID));
-        if (already) {
+        return toResponse(ticket.result());
+    }
+
+    /**
+     * Naruszenie indeksu unikalnego "żywych" rezerwacji (np. równoległe /batch i /create tego samego użytkownika)
+     * kończy się tą samą odpowiedzią 409 co wykryty duplikat; pozostałe naruszenia obsługuje domyślny mechanizm.
+     */
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ResponseEntity<ErrorResponse> handleIntegrityViolation(DataIntegrityViolationException e) {
+        String cause = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+        if (cause != null && cause.contains(LIVE_BOOKING_INDEX)) {
             return ResponseEntity.status(HttpStatus.CONFLICT).body(new ErrorResponse("Masz już aktywną rezerwację"));
         }
+        throw e;
+    }
 
-        Booking booking = new Booking();
-        booking.setActivity(occurrence);
-        booking.setUserName(principal.getName());
-        booking.setStatus(BookingStatus.REQUESTED);
-        bookingRepository.save(booking);
+    private ResponseEntity<?> toResponse(BookingResult result) {
+        return switch (result.outcome()) {
+            case BOOKED -> ResponseEntity.ok(new BookingResponse(result.bookingId(), result.spots()));
+            case WAITLISTED -> ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(new WaitlistResponse(result.bookingId(), result.position(), result.spots()));
+            case NOT_FOUND -> ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ErrorResponse("Nie znaleziono zajęć"));
+            case CANCELLED -> ResponseEntity.status(HttpStatus.CONFLICT).body(new ErrorResponse("Zajęcia anulowane"));
+            case DUPLICATE -> ResponseEntity.status(HttpStatus.CONFLICT).body(new ErrorResponse("Masz już aktywną rezerwację"));
+            case BUSY -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(new ErrorResponse("Zbyt wiele zgłoszeń, spróbuj ponownie"));
+            case UNKNOWN -> ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(new PendingResponse("Rezerwacja jest w trakcie zapisu – sprawdź listę swoich rezerwacji"));
+        };
+    }
 
-        long newReserved = bookingRepository.countActiveByClassId(occurrence.getId());
-        String spots = newReserved + "/" + occurrence.getCapacity();
-        return ResponseEntity.ok(new BookingResponse(booking.getId(), spots));
+    /**
+     * GET /api/bookings/history?after=...&size=... – strona historii rezerwacji zalogowanego użytkownika
+     * (zakończone zajęcia, od najnowszych). Pole next to kursor następnej strony (null na ostatniej stronie).
+     */
+    @GetMapping("/history")
+    public ResponseEntity<?> history(@RequestParam(name = "after", required = false) String after,
+                                     @RequestParam(name = "size", defaultValue = "" + BookingHistoryService.DEFAULT_PAGE_SIZE) int size,
+                                     Principal principal) {
+        try {
+            BookingHistoryService.Page page = historyService.page(principal.getName(), after, size);
+            return ResponseEntity.ok(new HistoryResponse(page.items(), page.next()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new ErrorResponse("Niepoprawny kursor"));
+        }
+    }
+
+    /** Stan shardów executora rezerwacji (głębokość kolejek, rozmiary partii) – pusta lista w trybie bezpośrednim. */
+    @GetMapping("/shards")
+    public List<BookingExecutor.ShardStats> shards() {
+        return bookingExecutor.shardStats();
     }
 
     /**
-     * Usuwa rezerwację na podstawie jej ID.
+     * Rezerwuje wiele wystąpień zajęć w jednej transakcji – podanych wprost (classIds)
+     * albo wszystkich wystąpień serii (seriesId) rozpoczynających się w dniach [from, to].
+     * Zajęcia blokowane są w kolejności ID, pojemność i duplikaty sprawdzane zbiorczo,
+     * a rezerwacje wstawiane jednym poleceniem. Odpowiedź zawiera wynik dla każdego wystąpienia.
      */
+    @Transactional
+    @PostMapping("/batch")
+    public ResponseEntity<?> batch(@RequestBody BatchBookingRequest req, Principal principal) {
+        if (principal.getName() == null || principal.getName().isBlank()) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new ErrorResponse("Brak wymaganych danych"));
+        }
+        List<Long> classIds;
+        if (req.classIds() != null && !req.classIds().isEmpty()) {
+            classIds = req.classIds().stream().filter(Objects::nonNull).distinct().sorted().toList();
+        } else if (req.seriesId() != null && req.from() != null && req.to() != null && !req.to().isBefore(req.from())) {
+            classIds = occurrenceRepository.findIdsBySeriesAndStartTimeBetween(req.seriesId(),
+                    req.from().atStartOfDay(zone).toOffsetDateTime(),
+                    req.to().plusDays(1).atStartOfDay(zone).toOffsetDateTime());
+        } else {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new ErrorResponse("Brak wymaganych danych"));
+        }
+        if (classIds.size() > MAX_BATCH_SIZE) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new ErrorResponse("Zbyt wiele zajęć w jednym żądaniu (max " + MAX_BATCH_SIZE + ")"));
+        }
+        if (classIds.isEmpty()) {
+            return ResponseEntity.ok(new BatchBookingResponse(List.of()));
+        }
+
+        Map<Long, Activity> locked = new HashMap<>();
+        for (Activity a : occurrenceRepository.findAllByIdInForUpdate(classIds)) {
+            locked.put(a.getId(), a);
+        }
+        Set<Long> alreadyBooked = new HashSet<>(bookingRepository.findBookedClassIds(principal.getName(), classIds, BookingStatus.LIVE));
+
+        List<BatchItemResult> results = new ArrayList<>();
+        List<Long> admitted = new ArrayList<>();
+        for (Long id : classIds) {
+            Activity a = locked.get(id);
+            if (a == null) {
+                results.add(BatchItemResult.failed(id, "Nie znaleziono zajęć"));
+            } else if (a.getStatus() == ClassStatus.CANCELLED) {
+                results.add(BatchItemResult.failed(id, "Zajęcia anulowane"));
+            } else if (alreadyBooked.contains(id)) {
+                results.add(BatchItemResult.failed(id, "Masz już aktywną rezerwację"));
+            } else if (a.getReservedCount() >= a.getCapacity()) {
+                results.add(BatchItemResult.failed(id, "Brak wolnych miejsc"));
+            } else {
+                admitted.add(id);
+                results.add(BatchItemResult.booked(id, (a.getReservedCount() + 1) + "/" + a.getCapacity()));
+            }
+        }
+        if (!admitted.isEmpty()) {
+            occurrenceRepository.reserveSeats(admitted);
+            List<OutboxPublisher.Change> changes = new ArrayList<>(admitted.size());
+            for (Object[] row : bookingRepository.insertRequested(principal.getName(), admitted)) {
+                changes.add(OutboxPublisher.Change.booking(OutboxEventType.BOOKING_CREATED,
+                        ((Number) row[1]).longValue(), ((Number) row[0]).longValue(), principal.getName(), null));
+            }
+            outbox.publishAll(changes);
+            seatLedger.evictAll(admitted); // liczniki w pamięci wczytają się ponownie po zatwierdzeniu
+        }
+        return ResponseEntity.ok(new BatchBookingResponse(results));
+    }
+
+    /**
+     * Anuluje rezerwację na podstawie jej ID (status CANCELLED + cancelledAt; wiersz trafia później do archiwum).
+     * Zwolnione miejsce w tej samej transakcji przechodzi na pierwszą osobę z listy oczekujących.
+     */
+    @Transactional
     @PostMapping("/cancel")
     public ResponseEntity<?> cancel(@RequestBody CancelBookingRequest req) {
         if (req.bookingId() == null) {
@@ -79,16 +231,23 @@ public class BookingApiController {
         }
 
         Booking booking = bookingRepository.findById(req.bookingId()).orElse(null);
-        if (booking == null) {
+        if (booking == null || !BookingStatus.LIVE.contains(booking.getStatus())) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ErrorResponse("Nie znaleziono rezerwacji do usunięcia"));
         }
-        bookingRepository.delete(booking);
+        occurrenceRepository.lockSeats(booking.getActivity().getId());
+        BookingStatus previous = softCancel(booking);
+        if (previous == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ErrorResponse("Nie znaleziono rezerwacji do usunięcia"));
+        }
+        releaseOrPromote(booking, previous);
         return ResponseEntity.ok(new CancelBookingResponse());
     }
 
     /**
-     * Usuwa rezerwację na podstawie ID klasy oraz nazwy użytkownika.
+     * Anuluje rezerwację (lub wpis na liście oczekujących) na podstawie ID klasy oraz nazwy użytkownika.
+     * Zwolnione miejsce w tej samej transakcji przechodzi na pierwszą osobę z listy oczekujących.
      */
+    @Transactional
     @PostMapping("/delete")
     public ResponseEntity<?> delete(@RequestBody DeleteBookingRequest req, Principal principal) {
         if (req.classId() == null || principal.getName() == null || principal.getName().isBlank()) {
@@ -101,21 +260,81 @@ public class BookingApiController {
 
         // Pobierz rezerwację użytkownika do usunięcia
         Booking booking = bookingRepository.findFirstByActivity_IdAndUserNameAndStatusIn(
-                occurrence.getId(), principal.getName(), List.of(BookingStatus.REQUESTED, BookingStatus.CONFIRMED, BookingStatus.PAID));
+                occurrence.getId(), principal.getName(), BookingStatus.LIVE);
         if (booking == null) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ErrorResponse("Nie znaleziono rezerwacji do usunięcia"));
         }
-        bookingRepository.delete(booking);
+        occurrenceRepository.lockSeats(occurrence.getId());
+        BookingStatus previous = softCancel(booking);
+        if (previous == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ErrorResponse("Nie znaleziono rezerwacji do usunięcia"));
+        }
+        SeatLedger.Seats seats = seatLedger.seats(occurrence.getId());
+        boolean released = releaseOrPromote(booking, previous);
 
-        long newReserved = bookingRepository.countActiveByClassId(occurrence.getId());
-        String spots = newReserved + "/" + occurrence.getCapacity();
+        // Miejsce wraca do puli dopiero po zatwierdzeniu transakcji – w odpowiedzi uwzględniamy je od razu
+        String spots = (released ? Math.max(seats.reserved() - 1, 0) : seats.reserved()) + "/" + seats.capacity();
         return ResponseEntity.ok(new BookingResponse(booking.getId(), spots));
     }
 
+    /**
+     * Oznacza rezerwację jako anulowaną. Wiersz zostaje w tabeli bookings (historia, statystyki);
+     * po zakończeniu zajęć przenosi go {@link com.icio.sportakuz.service.booking.BookingArchiver}.
+     * Zmiana idzie warunkowym UPDATE (status musi być nadal ten odczytany), więc z równoległych anulowań tej samej
+     * rezerwacji skutek ma tylko jedno. Jeśli status zmienił się w międzyczasie (np. awans z listy oczekujących),
+     * zostaje odczytany ponownie.
+     * @return status sprzed anulowania albo null, gdy rezerwacja nie jest już "żywa" (anulowało ją inne żądanie)
+     */
+    private BookingStatus softCancel(Booking booking) {
+        BookingStatus previous = booking.getStatus();
+        while (previous != null && BookingStatus.LIVE.contains(previous)) {
+            if (bookingRepository.cancelIfStatus(booking.getId(), previous.name()) == 1) {
+                outbox.publish(OutboxPublisher.Change.booking(OutboxEventType.BOOKING_CANCELLED,
+                        booking.getActivity().getId(), booking.getId(), booking.getUserName(), previous.name()));
+                return previous;
+            }
+            previous = bookingRepository.findStatusById(booking.getId());
+        }
+        return null;
+    }
+
+    /**
+     * Obsługuje miejsce po anulowanej rezerwacji: jeśli ktoś czeka na liście, dostaje je od razu (REQUESTED),
+     * w przeciwnym razie miejsce wraca do puli. Wiersz zajęć musi być już zablokowany ({@link ActivityRepository#lockSeats}).
+     * @param previous status anulowanej rezerwacji sprzed anulowania
+     * @return true, jeśli miejsce zostało zwolnione (a nie przekazane dalej)
+     */
+    private boolean releaseOrPromote(Booking cancelled, BookingStatus previous) {
+        if (!BookingStatus.ACTIVE.contains(previous)) {
+            return false; // wpis z listy oczekujących nie zajmował miejsca
+        }
+        Long classId = cancelled.getActivity().getId();
+        Booking head = bookingRepository.findWaitlistHeadForUpdate(classId);
+        if (head != null) {
+            head.setStatus(BookingStatus.REQUESTED);
+            outbox.publish(OutboxPublisher.Change.booking(OutboxEventType.BOOKING_PROMOTED,
+                    classId, head.getId(), head.getUserName(), null));
+            return false;
+        }
+        occurrenceRepository.releaseSeat(classId);
+        seatLedger.release(classId);
+        return true;
+    }
+
     public record CancelBookingRequest(Long bookingId) {}
     public record CancelBookingResponse() {}
     public record DeleteBookingRequest(Long classId, String userName) {}
     public record CreateBookingRequest(Long classId, String userName) {}
     public record BookingResponse(Long id, String spots) {}
+    public record WaitlistResponse(Long id, long position, String spots) {}
+    public record TicketResponse(String ticket, long ahead) {}
+    public record PendingResponse(String message) {}
     public record ErrorResponse(String error) {}
+    public record HistoryResponse(List<BookingHistoryDto> items, String next) {}
+    public record BatchBookingRequest(List<Long> classIds, Long seriesId, LocalDate from, LocalDate to) {}
+    public record BatchBookingResponse(List<BatchItemResult> items) {}
+    public record BatchItemResult(Long classId, boolean success, String spots, String error) {
+        static BatchItemResult booked(Long classId, String spots) { return new BatchItemResult(classId, true, spots, null); }
+        static BatchItemResult failed(Long classId, String error) { return new BatchItemResult(classId, false, null, error); }
+    }
 }
@@ -0,0 +1,214 @@
+package com.icio.sportakuz.controller.booking;
+
+import com.icio.sportakuz.dto.booking.CalendarClassDto;
+import com.icio.sportakuz.entity.ActivityType;
+import com.icio.sportakuz.entity.Room;
+import com.icio.sportakuz.entity.User;
+import com.icio.sportakuz.entity.UserRole;
+import com.icio.sportakuz.repo.ActivityTypeRepository;
+import com.icio.sportakuz.repo.DifficultyLevel;
+import com.icio.sportakuz.repo.RoomRepository;
+import com.icio.sportakuz.repo.UserRepository;
+import com.icio.sportakuz.service.schedule.CalendarService;
+import com.icio.sportakuz.service.schedule.ScheduleFilter;
+import com.icio.sportakuz.service.schedule.ScheduleIndexService;
+import com.icio.sportakuz.service.schedule.ScheduleSnapshot;
+import com.icio.sportakuz.service.schedule.ScheduleSnapshotService;
+import com.icio.sportakuz.service.schedule.SeatAvailabilityStream;
+import com.icio.sportakuz.service.schedule.ScheduleVersion;
+import jakarta.json.Json;
+import jakarta.json.stream.JsonGenerator;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * REST API kalendarza: zajęcia z okna dat (zwykle jednego tygodnia), pobierane przez calendar.js na żądanie
+ * z migawki harmonogramu ({@link ScheduleSnapshotService}), opcjonalnie zawężone filtrami z indeksu harmonogramu
+ * ({@link ScheduleIndexService}).
+ * Odpowiedź jest zapisywana strumieniowo (JSON-P {@link JsonGenerator}) prosto do odpowiedzi HTTP,
+ * bez budowania pośredniego drzewa JSON.
+ */
+@RestController
+@RequestMapping("/api/calendar")
+public class CalendarApiController {
+
+    /** Maksymalna długość okna w dniach (tydzień z zapasem na widoki miesięczne). */
+    private static final int MAX_WINDOW_DAYS = 42;
+
+    private final ScheduleSnapshotService scheduleSnapshot;
+    private final ScheduleVersion scheduleVersion;
+    private final SeatAvailabilityStream seatStream;
+    private final ScheduleIndexService scheduleIndex;
+    private final ActivityTypeRepository activityTypeRepository;
+    private final RoomRepository roomRepository;
+    private final UserRepository userRepository;
+
+    public CalendarApiController(ScheduleSnapshotService scheduleSnapshot,
+                                 ScheduleVersion scheduleVersion,
+                                 SeatAvailabilityStream seatStream,
+                                 ScheduleIndexService scheduleIndex,
+                                 ActivityTypeRepository activityTypeRepository,
+                                 RoomRepository roomRepository,
+                                 UserRepository userRepository) {
+        this.scheduleSnapshot = scheduleSnapshot;
+        this.scheduleVersion = scheduleVersion;
+        this.seatStream = seatStream;
+        this.scheduleIndex = scheduleIndex;
+        this.activityTypeRepository = activityTypeRepository;
+        this.roomRepository = roomRepository;
+        this.userRepository = userRepository;
+    }
+
+    /**
+     * GET /api/calendar?from=yyyy-MM-dd&to=yyyy-MM-dd – nieanulowane, niezakończone zajęcia
+     * zaczynające się w dniach [from, to) jako tablica obiektów {@link CalendarClassDto}.
+     * Opcjonalne filtry (parametry można powtarzać): type, room, instructor (ID), level ({@link DifficultyLevel})
+     * oraz q – początek nazwy typu lub imienia / nazwiska instruktora.
+     * Z ETagiem wersji migawki harmonogramu (poza jej horyzontem – wersji zmian w bazie); bez zmian odpowiedź to 304
+     * bez treści.
+     */
+    @GetMapping
+    public void window(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                       @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                       @RequestParam(value = "type", required = false) Set<Long> types,
+                       @RequestParam(value = "room", required = false) Set<Long> rooms,
+                       @RequestParam(value = "instructor", required = false) Set<Long> instructors,
+                       @RequestParam(value = "level", required = false) Set<DifficultyLevel> levels,
+                       @RequestParam(value = "q", required = false) String text,
+                       ServletWebRequest request,
+                       HttpServletResponse response) throws IOException {
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        long days = ChronoUnit.DAYS.between(from, to);
+        if (days <= 0 || days > MAX_WINDOW_DAYS) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            try (JsonGenerator json = Json.createGenerator(response.getWriter())) {
+                json.writeStartObject()
+                        .write("error", "Niepoprawny zakres dat (maksymalnie " + MAX_WINDOW_DAYS + " dni)")
+                        .writeEnd();
+            }
+            return;
+        }
+        ScheduleSnapshot snapshot = scheduleSnapshot.current();
+        String etag = snapshot.covers(from, to)
+                ? scheduleVersion.snapshotETag(snapshot)
+                : scheduleVersion.scheduleETag();
+        if (scheduleVersion.checkNotModified(request, etag)) {
+            return;
+        }
+        List<CalendarClassDto> activities = scheduleSnapshot.calendar(snapshot, from, to);
+        ScheduleFilter filter = new ScheduleFilter(types, rooms, instructors, levels, text,
+                from.atStartOfDay(CalendarService.ZONE).toOffsetDateTime(),
+                to.atStartOfDay(CalendarService.ZONE).toOffsetDateTime());
+        if (filter.hasFacets()) {
+            Set<Long> matching = scheduleIndex.ids(filter);
+            activities = activities.stream().filter(c -> matching.contains(c.getId())).toList();
+        }
+        try (JsonGenerator json = Json.createGenerator(response.getWriter())) {
+            json.writeStartArray();
+            for (CalendarClassDto c : activities) {
+                write(json, c);
+            }
+            json.writeEnd();
+        }
+    }
+
+    /**
+     * GET /api/calendar/facets – wartości filtrów kalendarza: typy zajęć, sale, aktywni instruktorzy
+     * i poziomy trudności jako {types, rooms, instructors, levels}, każda pozycja {id, name}.
+     */
+    @GetMapping("/facets")
+    public void facets(ServletWebRequest request, HttpServletResponse response) throws IOException {
+        if (scheduleVersion.checkNotModified(request, scheduleVersion.scheduleETag("facets"))) {
+            return;
+        }
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        try (JsonGenerator json = Json.createGenerator(response.getWriter())) {
+            json.writeStartObject();
+            json.writeStartArray("types");
+            for (ActivityType t : activityTypeRepository.findAll()) {
+                option(json, t.getId().toString(), t.getActivityName());
+            }
+            json.writeEnd();
+            json.writeStartArray("rooms");
+            for (Room r : roomRepository.findAll()) {
+                if (r.isActive()) option(json, r.getId().toString(), r.getName());
+            }
+            json.writeEnd();
+            json.writeStartArray("instructors");
+            List<User> instructors = userRepository.findByRole(UserRole.ROLE_INSTRUCTOR).stream()
+                    .filter(User::isActive)
+                    .sorted(Comparator.comparing(User::getLastName, Comparator.nullsLast(Comparator.naturalOrder())))
+                    .toList();
+            for (User i : instructors) {
+                option(json, i.getId().toString(), i.getFirstName() + " " + i.getLastName());
+            }
+            json.writeEnd();
+            json.writeStartArray("levels");
+            for (DifficultyLevel level : DifficultyLevel.values()) {
+                option(json, level.name(), level.getDisplayName());
+            }
+            json.writeEnd();
+            json.writeEnd();
+        }
+    }
+
+    /**
+     * GET /api/calendar/stream – strumień SSE zdarzeń "seats" z tablicą zmian
+     * {activityId, reserved, waitlisted, capacity}; 503, gdy serwer ma już maksymalną liczbę subskrybentów.
+     */
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> stream() {
+        SseEmitter emitter = seatStream.subscribe();
+        if (emitter == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
+    private static void option(JsonGenerator json, String id, String name) {
+        json.writeStartObject()
+                .write("id", id)
+                .write("name", name == null ? "" : name)
+                .writeEnd();
+    }
+
+    /** Pola w tej samej postaci, w jakiej calendar.js czytał dotąd window.__activities. */
+    private void write(JsonGenerator json, CalendarClassDto c) {
+        json.writeStartObject()
+                .write("id", c.getId())
+                .write("name", c.getName())
+                .write("day", c.getDay())
+                .write("date", c.getDate())
+                .write("time", c.getTime())
+                .write("duration", c.getDuration())
+                .write("room", c.getRoom())
+                .write("instructor", c.getInstructor())
+                .write("spots", c.getSpots())
+                .write("level", c.getLevel());
+        if (c.getSubstitutedFor() != null) {
+            json.write("substitutedFor", c.getSubstitutedFor());
+        } else {
+            json.writeNull("substitutedFor");
+        }
+        json.write("isSubstitution", c.isSubstitution())
+                .writeEnd();
+    }
+}
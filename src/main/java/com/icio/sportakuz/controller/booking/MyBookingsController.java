@@ -1,18 +1,27 @@
 package com.icio.sportakuz.controller.booking;
 
-import com.icio.sportakuz.entity.Booking;
 import com.icio.sportakuz.repo.BookingRepository;
+import com.icio.sportakuz.repo.BookingStatus;
+import com.icio.sportakuz.repo.MyBookingRow;
 import com.icio.sportakuz.dto.booking.MyBookingDto;
+import com.icio.sportakuz.service.booking.BookingHistoryService;
+import com.icio.sportakuz.service.schedule.CalendarFeedService;
+import com.icio.sportakuz.service.schedule.ScheduleVersion;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.security.Principal;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.Locale;
 import java.util.stream.Collectors;
 
 /**
@@ -24,46 +33,95 @@ import java.util.stream.Collectors;
 public class MyBookingsController {
 
 	private final BookingRepository bookingRepository;
+	private final ScheduleVersion scheduleVersion;
+	private final CalendarFeedService feedService;
+	private final BookingHistoryService historyService;
 	private final ZoneId zone = ZoneId.of("Europe/Warsaw");
 
-	public MyBookingsController(BookingRepository bookingRepository) {
+	public MyBookingsController(BookingRepository bookingRepository, ScheduleVersion scheduleVersion,
+								CalendarFeedService feedService, BookingHistoryService historyService) {
 		this.bookingRepository = bookingRepository;
+		this.scheduleVersion = scheduleVersion;
+		this.feedService = feedService;
+		this.historyService = historyService;
 	}
 
-	/** GET /my/bookings – główny widok zarezerwowanych zajęć. */
+	/** GET /my/bookings – główny widok zarezerwowanych zajęć (304, gdy od ostatniego pobrania nic się nie zmieniło). */
 	@GetMapping
-	public String calendarRoot(Model model, Principal principal) {
+	public String calendarRoot(Model model, Principal principal, Locale locale, ServletWebRequest request) {
+		String token = feedService.userToken(principal.getName()); // w ETagu – nowy adres kanału zmienia widok
+		if (scheduleVersion.checkNotModified(request, scheduleVersion.scheduleETag(ScheduleVersion.viewer(principal), locale, token))) {
+			return null;
+		}
 		model.addAttribute("pageTitle", "Moje rezerwacje");
 
 		// Placeholder until users get added
 		String userName = principal.getName();
 
-		List<Booking> bookings =  bookingRepository.findAllByUserNameAndActivity_EndTimeAfter(userName, OffsetDateTime.now());
+		// Jedno zapytanie z join-ami i pozycją na liście oczekujących (zamiast encji + zapytania na każdą rezerwację)
+		List<MyBookingRow> bookings = bookingRepository.findMyBookingRows(
+				userName, BookingStatus.LIVE, OffsetDateTime.now());
 		List<MyBookingDto> dtoList = bookings.stream().map(this::toDto).collect(Collectors.toList());
 		model.addAttribute("bookings", dtoList);
+
+		// Adres subskrypcji rezerwacji w kalendarzu telefonu (.ics)
+		if (token != null) {
+			model.addAttribute("calendarFeedUrl", ServletUriComponentsBuilder.fromCurrentContextPath()
+					.path("/ics/member/{token}.ics").buildAndExpand(token).toUriString());
+		}
 		return "bookings/my_bookings";
 	}
 
-	private MyBookingDto toDto(Booking b) {
-		var startZoned = b.getActivity().getStartTime().atZoneSameInstant(zone);
-		var endZoned = b.getActivity().getEndTime().atZoneSameInstant(zone);
+	/**
+	 * POST /my/bookings/calendar-token – generuje adres subskrypcji rezerwacji (.ics) albo zastępuje dotychczasowy
+	 * nowym (stary przestaje działać, np. po udostępnieniu go komuś).
+	 */
+	@PostMapping("/calendar-token")
+	public String regenerateCalendarToken(Principal principal) {
+		feedService.regenerateUserToken(principal.getName());
+		return "redirect:/my/bookings";
+	}
+
+	/**
+	 * GET /my/bookings/history?after=... – historia rezerwacji (zakończone zajęcia), od najnowszych,
+	 * stronicowana kursorem zamiast numeru strony. Niepoprawny kursor pokazuje pierwszą stronę.
+	 */
+	@GetMapping("/history")
+	public String history(@RequestParam(name = "after", required = false) String after, Model model, Principal principal) {
+		BookingHistoryService.Page page;
+		try {
+			page = historyService.page(principal.getName(), after, BookingHistoryService.DEFAULT_PAGE_SIZE);
+		} catch (IllegalArgumentException e) {
+			page = historyService.page(principal.getName(), null, BookingHistoryService.DEFAULT_PAGE_SIZE);
+			after = null;
+		}
+		model.addAttribute("history", page.items());
+		model.addAttribute("nextCursor", page.next());
+		model.addAttribute("firstPage", after == null || after.isBlank());
+		return "bookings/booking_history";
+	}
+
+	private MyBookingDto toDto(MyBookingRow b) {
+		var startZoned = b.startTime().atZoneSameInstant(zone);
+		var endZoned = b.endTime().atZoneSameInstant(zone);
 		String date = startZoned.toLocalDate().format(DateTimeFormatter.ISO_LOCAL_DATE); // yyyy-MM-dd
 		String time = startZoned.toLocalTime().format(DateTimeFormatter.ofPattern("HH:mm"));
 		int duration = (int) java.time.Duration.between(startZoned.toOffsetDateTime(), endZoned.toOffsetDateTime()).toMinutes();
-		String substitutedFor = b.getActivity().getSubstitutedFor() != null
-				? (b.getActivity().getSubstitutedFor().getFirstName() + " " + b.getActivity().getSubstitutedFor().getLastName())
+		String substitutedFor = b.substitutedForLastName() != null
+				? (b.substitutedForFirstName() + " " + b.substitutedForLastName())
 				: null;
 
 		return new MyBookingDto(
-			b.getId(),
-			b.getActivity().getType() != null ? b.getActivity().getType().getActivityName() : "Zajęcia",
-			b.getActivity().getInstructor() != null ? (b.getActivity().getInstructor().getFirstName() + " " + b.getActivity().getInstructor().getLastName()) : "Instruktor",
+			b.id(),
+			b.typeName() != null ? b.typeName() : "Zajęcia",
+			b.instructorLastName() != null ? (b.instructorFirstName() + " " + b.instructorLastName()) : "Instruktor",
 			date,
 			time,
 			duration,
-			b.getActivity().getRoom().getName(),
+			b.roomName(),
 			substitutedFor,
-			substitutedFor != null
+			substitutedFor != null,
+			b.waitlistPosition()
 			);
 	}
-}
\ No newline at end of file
+}
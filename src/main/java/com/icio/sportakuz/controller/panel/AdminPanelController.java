@@ -5,7 +5,7 @@ import com.icio.sportakuz.repo.ActivityRepository;
 import com.icio.sportakuz.repo.ActivityTypeRepository;
 import com.icio.sportakuz.repo.RoomRepository;
 import com.icio.sportakuz.repo.UserRepository;
-import org.springframework.data.domain.Pageable;
+import com.icio.sportakuz.service.schedule.ScheduleSnapshotService;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -16,7 +16,7 @@ import java.time.OffsetDateTime;
  * Kontroler panelu administracyjnego. Odpowiada za możliwość dodawnia oraz edycji zasobów
  * takich jak typy zajęć, sale czy instruktorzy.
  * Zbiera statystyki (liczby zajęć, typów, instruktorów, sal)
- * oraz listy najbliższych widocznych zajęć (upcoming). Dane trafiają do szablonu panel/admin.
+ * oraz listy najbliższych widocznych zajęć (upcoming, z migawki harmonogramu). Dane trafiają do szablonu panel/admin.
  */
 @Controller
 public class AdminPanelController {
@@ -25,15 +25,18 @@ public class AdminPanelController {
     private final ActivityTypeRepository activityTypeRepository;
     private final UserRepository userRepository;
     private final RoomRepository roomRepository;
+    private final ScheduleSnapshotService scheduleSnapshot;
 
     public AdminPanelController(ActivityRepository activityRepository,
                                 ActivityTypeRepository activityTypeRepository,
                                 UserRepository userRepository,
-                                RoomRepository roomRepository) {
+                                RoomRepository roomRepository,
+                                ScheduleSnapshotService scheduleSnapshot) {
         this.activityRepository = activityRepository;
         this.activityTypeRepository = activityTypeRepository;
         this.userRepository = userRepository;
         this.roomRepository = roomRepository;
+        this.scheduleSnapshot = scheduleSnapshot;
     }
 
     /** Panel Administratora – Udostępnia administratorowi możliwość podglądu wszystkich zajęć oraz instruktorów */
@@ -45,7 +48,7 @@ public class AdminPanelController {
         long roomsTotal = roomRepository.count();
 
         OffsetDateTime now = OffsetDateTime.now();
-        var upcoming = activityRepository.findNextVisible(now, Pageable.ofSize(4));
+        var upcoming = scheduleSnapshot.upcoming(4, null);
         model.addAttribute("userZone", ZoneId.of("Europe/Warsaw"));
         model.addAttribute("now", now);
         model.addAttribute("upcoming", upcoming);
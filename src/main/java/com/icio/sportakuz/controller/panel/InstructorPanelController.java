@@ -1,14 +1,18 @@
 package com.icio.sportakuz.controller.panel;
 
 import com.icio.sportakuz.entity.User;
+import com.icio.sportakuz.entity.UserRole;
 import com.icio.sportakuz.repo.ActivityRepository;
 import com.icio.sportakuz.repo.ActivityTypeRepository;
 import com.icio.sportakuz.repo.RoomRepository;
 import com.icio.sportakuz.repo.UserRepository;
-import org.springframework.data.domain.Pageable;
+import com.icio.sportakuz.service.schedule.CalendarFeedService;
+import com.icio.sportakuz.service.schedule.ScheduleSnapshotService;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.security.Principal;
 import java.time.OffsetDateTime;
@@ -20,14 +24,20 @@ public class InstructorPanelController {
     private final ActivityRepository activityRepository;
     private final UserRepository userRepository;
     private final RoomRepository roomRepository;
+    private final ScheduleSnapshotService scheduleSnapshot;
+    private final CalendarFeedService feedService;
 
     public InstructorPanelController(ActivityRepository activityRepository,
                                      ActivityTypeRepository activityTypeRepository,
                                      UserRepository userRepository,
-                                     RoomRepository roomRepository) {
+                                     RoomRepository roomRepository,
+                                     ScheduleSnapshotService scheduleSnapshot,
+                                     CalendarFeedService feedService) {
         this.activityRepository = activityRepository;
         this.userRepository = userRepository;
         this.roomRepository = roomRepository;
+        this.scheduleSnapshot = scheduleSnapshot;
+        this.feedService = feedService;
     }
 
     @GetMapping("/panel/instructor")
@@ -50,7 +60,7 @@ public class InstructorPanelController {
         long completedCount = activityRepository.countCompletedByInstructor(email, thirtyDaysAgo, now);
         model.addAttribute("stats_completed_30days", completedCount);
 
-        var myUpcoming = activityRepository.findUpcomingForInstructor(email, now, Pageable.ofSize(4));
+        var myUpcoming = scheduleSnapshot.upcoming(4, email);
         model.addAttribute("upcoming", myUpcoming);
 
         model.addAttribute("stats_active_bookings", myUpcoming.size());
@@ -58,6 +68,22 @@ public class InstructorPanelController {
         long roomsTotal = roomRepository.count();
         model.addAttribute("stats_rooms", roomsTotal);
 
+        // Subskrypcja własnych zajęć w kalendarzu (.ics) – tylko dla instruktorów
+        if (currentUser != null && currentUser.getRole() == UserRole.ROLE_INSTRUCTOR) {
+            model.addAttribute("calendarFeedEnabled", true);
+            if (currentUser.getCalendarToken() != null) {
+                model.addAttribute("calendarFeedUrl", ServletUriComponentsBuilder.fromCurrentContextPath()
+                        .path("/ics/instructor/{token}.ics").buildAndExpand(currentUser.getCalendarToken()).toUriString());
+            }
+        }
+
         return "panels/instructor/dashboard";
     }
-}
\ No newline at end of file
+
+    /** Generuje adres kanału własnych zajęć (.ics) albo zastępuje dotychczasowy nowym. */
+    @PostMapping("/panel/instructor/calendar-token")
+    public String regenerateCalendarToken(Principal principal) {
+        feedService.regenerateUserToken(principal.getName());
+        return "redirect:/panel/instructor";
+    }
+}
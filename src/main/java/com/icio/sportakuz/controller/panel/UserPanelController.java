@@ -1,10 +1,9 @@
 package com.icio.sportakuz.controller.panel;
 
 import com.icio.sportakuz.entity.User;
-import com.icio.sportakuz.repo.ActivityRepository;
 import com.icio.sportakuz.repo.BookingRepository;
 import com.icio.sportakuz.repo.UserRepository;
-import org.springframework.data.domain.Pageable;
+import com.icio.sportakuz.service.schedule.ScheduleSnapshotService;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -15,16 +14,16 @@ import java.time.OffsetDateTime;
 @Controller
 public class UserPanelController {
 
-    private final ActivityRepository activityRepository;
     private final UserRepository userRepository;
     private final BookingRepository bookingRepository;
+    private final ScheduleSnapshotService scheduleSnapshot;
 
-    public UserPanelController(ActivityRepository activityRepository,
-                               UserRepository userRepository,
-                               BookingRepository bookingRepository) {
-        this.activityRepository = activityRepository;
+    public UserPanelController(UserRepository userRepository,
+                               BookingRepository bookingRepository,
+                               ScheduleSnapshotService scheduleSnapshot) {
         this.userRepository = userRepository;
         this.bookingRepository = bookingRepository;
+        this.scheduleSnapshot = scheduleSnapshot;
     }
 
     @GetMapping("/panel/user")
@@ -49,7 +48,7 @@ public class UserPanelController {
         model.addAttribute("stats_active_bookings", activeBookingsCount);
         model.addAttribute("stats_completed_30days", completedBookingsCount);
 
-        var upcoming = activityRepository.findNextVisible(now, Pageable.ofSize(4));
+        var upcoming = scheduleSnapshot.upcoming(4, null);
 
         model.addAttribute("now", now);
         model.addAttribute("upcoming", upcoming);
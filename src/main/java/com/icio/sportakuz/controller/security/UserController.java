@@ -3,11 +3,14 @@ package com.icio.sportakuz.controller.security;
 import com.icio.sportakuz.dto.UserForm;
 import com.icio.sportakuz.entity.User;
 import com.icio.sportakuz.entity.UserRole;
+import com.icio.sportakuz.repo.OutboxEventType;
 import com.icio.sportakuz.repo.UserRepository;
+import com.icio.sportakuz.service.outbox.OutboxPublisher;
 import jakarta.validation.Valid;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Controller;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
@@ -22,10 +25,12 @@ public class UserController {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder; // POTRZEBNE DO HASŁA
+    private final OutboxPublisher outbox;
 
-    public UserController(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public UserController(UserRepository userRepository, PasswordEncoder passwordEncoder, OutboxPublisher outbox) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.outbox = outbox;
     }
 
     @GetMapping
@@ -113,6 +118,7 @@ public class UserController {
     }
 
     @PostMapping("/edit/{id}")
+    @Transactional
     public String processEditForm(@PathVariable("id") Long id,
                                   @Valid @ModelAttribute("instructorForm") UserForm form,
                                   BindingResult bindingResult,
@@ -157,6 +163,7 @@ public class UserController {
         // ---------------------------------------------
 
         userRepository.save(existingUser);
+        outbox.publish(OutboxPublisher.Change.reference(OutboxEventType.INSTRUCTOR_UPDATED, id));
 
         redirectAttributes.addFlashAttribute("globalSuccessMessage", "Zaktualizowano dane instruktora.");
         return "redirect:/users";
@@ -0,0 +1,23 @@
+package com.icio.sportakuz.dto.booking;
+
+/**
+ * DTO pozycji historii rezerwacji (widok /my/bookings/history i GET /api/bookings/history).
+ * @param id id rezerwacji
+ * @param activityName nazwa zajęć (null, jeśli zajęcia zostały usunięte)
+ * @param instructor imię i nazwisko instruktora (null, jeśli zajęcia zostały usunięte)
+ * @param date data w formacie yyyy-MM-dd
+ * @param time godzina startu (HH:mm)
+ * @param duration czas trwania w minutach (null, jeśli zajęcia zostały usunięte)
+ * @param room nazwa sali (null, jeśli zajęcia zostały usunięte)
+ * @param status status rezerwacji (nazwa {@link com.icio.sportakuz.repo.BookingStatus})
+ */
+public record BookingHistoryDto(
+        Long id,
+        String activityName,
+        String instructor,
+        String date,
+        String time,
+        Integer duration,
+        String room,
+        String status
+) {}
@@ -11,6 +11,7 @@ package com.icio.sportakuz.dto.booking;
  * @param room nazwa sali
  * @param substitutedFor imię i nazwisko instruktora zastępującego instruktora (null jeśli brak zastępstwa)
  * @param isSubstitution flaga czy jest zastępstwo
+ * @param waitlistPosition pozycja na liście oczekujących (null jeśli rezerwacja ma przydzielone miejsce)
  */
 public record MyBookingDto(
         Long id,
@@ -21,5 +22,6 @@ public record MyBookingDto(
         int duration,
         String room,
         String substitutedFor,
-        boolean isSubstitution
+        boolean isSubstitution,
+        Long waitlistPosition
 ) {}
@@ -15,7 +15,10 @@ import java.time.OffsetDateTime;
  * Czas Zakończenia (endTime) jest wyliczany automatycznie.
  */
 @Entity
-@Table(name = "activities")
+@Table(name = "activities",
+        indexes = {
+                @Index(name = "idx_activities_end_time", columnList = "end_time")
+        })
 @Getter
 @Setter
 public class Activity {
@@ -57,6 +60,14 @@ public class Activity {
     @Column(nullable=false)
     private Integer capacity;
 
+    /**
+     * Liczba aktywnych rezerwacji (zdenormalizowana).
+     * Zmieniana wyłącznie zapytaniami warunkowymi w ActivityRepository – zapis encji jej nie nadpisuje.
+     */
+    @Column(name = "reserved_count", nullable = false, insertable = false, updatable = false,
+            columnDefinition = "integer not null default 0")
+    private Integer reservedCount = 0;
+
     @Enumerated(EnumType.STRING)
     @Column(nullable=false, length=16)
     private ClassStatus status = ClassStatus.PLANNED;
@@ -17,7 +17,8 @@ import java.time.OffsetDateTime;
 @Table(name = "bookings",
         indexes = {
                 @Index(name="idx_bookings_class", columnList="class_id"),
-                @Index(name="idx_bookings_status", columnList="status")
+                @Index(name="idx_bookings_status", columnList="status"),
+                @Index(name="idx_bookings_user_class", columnList="user_name, class_id")
         })
 @Getter
 @Setter
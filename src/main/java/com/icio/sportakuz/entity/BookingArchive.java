@@ -0,0 +1,51 @@
+package com.icio.sportakuz.entity;
+
+import com.icio.sportakuz.repo.BookingStatus;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Zarchiwizowana rezerwacja (tabela bookings_archive) – historia rezerwacji zakończonych lub usuniętych zajęć.
+ * Wiersze przenosi z tabeli bookings {@code BookingArchiver}; ID pozostaje takie jak w bookings.
+ * Brak klucza obcego do activities – zajęcia mogły zostać usunięte, dlatego zapamiętany jest też ich czas rozpoczęcia.
+ */
+@Entity
+@Table(name = "bookings_archive",
+        indexes = {
+                @Index(name = "idx_bookings_archive_user_start", columnList = "user_name, class_start_time, id"),
+                @Index(name = "idx_bookings_archive_class", columnList = "class_id")
+        })
+@Getter
+@Setter
+public class BookingArchive {
+    @Id
+    private Long id;
+
+    /** ID wystąpienia zajęć, którego dotyczyła rezerwacja. */
+    @Column(name = "class_id", nullable = false)
+    private Long classId;
+
+    /** Czas rozpoczęcia zajęć w chwili archiwizacji. */
+    @Column(name = "class_start_time")
+    private OffsetDateTime classStartTime;
+
+    @Column(name = "user_name", nullable = false, length = 100)
+    private String userName;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private BookingStatus status;
+
+    @Column(name = "created_at", nullable = false)
+    private OffsetDateTime createdAt;
+
+    @Column(name = "cancelled_at")
+    private OffsetDateTime cancelledAt;
+
+    /** Timestamp przeniesienia do archiwum. */
+    @Column(name = "archived_at", nullable = false)
+    private OffsetDateTime archivedAt;
+}
@@ -0,0 +1,53 @@
+package com.icio.sportakuz.entity;
+
+import com.icio.sportakuz.repo.OutboxEventType;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Zdarzenie zmiany rezerwacji lub grafiku (tabela outbox_events), zapisywane w tej samej transakcji co sama zmiana.
+ * tx_id to identyfikator transakcji PostgreSQL (pg_current_xact_id) – relay dostarcza zdarzenia w kolejności (tx_id, id)
+ * i tylko z transakcji, które na pewno się zakończyły, więc późniejszy commit z niższym ID nie zostanie pominięty.
+ * Zdarzenia są zwięzłe (ID + krótki opis) – konsument sam doczytuje potrzebne dane.
+ */
+@Entity
+@Table(name = "outbox_events",
+        indexes = {
+                @Index(name = "idx_outbox_events_tx", columnList = "tx_id, id"),
+                @Index(name = "idx_outbox_events_created", columnList = "created_at")
+        })
+@Getter
+@Setter
+public class OutboxEvent {
+    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /** Transakcja, w której zapisano zdarzenie. */
+    @Column(name = "tx_id", nullable = false)
+    private Long txId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private OutboxEventType type;
+
+    /** Wystąpienie zajęć, którego dotyczy zdarzenie. */
+    @Column(name = "activity_id")
+    private Long activityId;
+
+    /** Rezerwacja (tylko zdarzenia BOOKING_*). */
+    @Column(name = "booking_id")
+    private Long bookingId;
+
+    @Column(name = "user_name", length = 100)
+    private String userName;
+
+    /** Dodatkowa informacja zależna od typu (np. nowy status). */
+    @Column(length = 32)
+    private String detail;
+
+    @Column(name = "created_at", nullable = false)
+    private OffsetDateTime createdAt;
+}
@@ -0,0 +1,31 @@
+package com.icio.sportakuz.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Pozycja trwałego konsumenta outboxu (tabela outbox_offsets): ostatnie dostarczone zdarzenie (tx_id, id).
+ * Wiersz jest blokowany na czas dostarczania partii, więc dany konsument przetwarza zdarzenia tylko w jednym miejscu naraz.
+ */
+@Entity
+@Table(name = "outbox_offsets")
+@Getter
+@Setter
+public class OutboxOffset {
+    /** Nazwa konsumenta. */
+    @Id
+    @Column(length = 100)
+    private String consumer;
+
+    @Column(name = "tx_id", nullable = false)
+    private Long txId;
+
+    @Column(name = "event_id", nullable = false)
+    private Long eventId;
+
+    @Column(name = "updated_at", nullable = false)
+    private OffsetDateTime updatedAt;
+}
@@ -38,6 +38,10 @@ public class Room {
     @Column(nullable=false)
     private boolean active = true;
 
+    /** Losowy token adresu subskrypcji planu sali (.ics) – nadawany i zmieniany przyciskiem przy linku; null – adres jeszcze nie wygenerowany. */
+    @Column(name="calendar_token", unique=true, length=64)
+    private String calendarToken;
+
     /** Timestamp utworzenia rekordu (ustawiany przez DB). */
     @CreationTimestamp
     @Column(name="created_at", nullable=false, updatable=false)
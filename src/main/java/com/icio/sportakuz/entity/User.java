@@ -42,6 +42,10 @@ public class User {
     @Column(nullable = false)
     private boolean active = true;
 
+    /** Losowy token adresu subskrypcji kalendarza (.ics) – nadawany i zmieniany przyciskiem przy linku; null – adres jeszcze nie wygenerowany. */
+    @Column(name = "calendar_token", unique = true, length = 64)
+    private String calendarToken;
+
     @CreationTimestamp
     @Column(name = "created_at", updatable = false)
     private OffsetDateTime createdAt;
@@ -0,0 +1,18 @@
+package com.icio.sportakuz.repo;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Projekcja wystąpienia zajęć dla indeksu harmonogramu – cechy, po których można filtrować
+ * (typ, sala, instruktor, poziom trudności, nazwy do wyszukiwania tekstowego) oraz czas rozpoczęcia.
+ */
+public record ActivityFacets(Long id,
+                             OffsetDateTime startTime,
+                             Integer typeId,
+                             Long roomId,
+                             Long instructorId,
+                             DifficultyLevel difficulty,
+                             String typeName,
+                             String instructorFirstName,
+                             String instructorLastName) {
+}
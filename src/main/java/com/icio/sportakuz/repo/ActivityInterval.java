@@ -0,0 +1,14 @@
+package com.icio.sportakuz.repo;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Przedział czasu nieanulowanego wystąpienia zajęć wraz z salą i instruktorem.
+ * Projekcja do indeksu kolizji bez ładowania encji.
+ */
+public record ActivityInterval(Long id,
+                               Long roomId,
+                               Long instructorId,
+                               OffsetDateTime startTime,
+                               OffsetDateTime endTime) {
+}
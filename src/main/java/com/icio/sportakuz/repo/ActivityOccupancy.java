@@ -0,0 +1,20 @@
+package com.icio.sportakuz.repo;
+
+/**
+ * Obłożenie wystąpienia zajęć wyliczone z tabeli bookings jednym zapytaniem GROUP BY dla wielu zajęć naraz.
+ * @param activityId ID wystąpienia zajęć
+ * @param booked liczba rezerwacji zajmujących miejsce (REQUESTED/CONFIRMED/PAID)
+ * @param waitlisted liczba osób na liście oczekujących
+ */
+public record ActivityOccupancy(Long activityId, long booked, long waitlisted) {
+
+    /** Zajęcia bez żadnych rezerwacji. */
+    public static ActivityOccupancy empty(Long activityId) {
+        return new ActivityOccupancy(activityId, 0, 0);
+    }
+
+    /** Tekst "zajęte/pojemność", z liczbą oczekujących w nawiasie, jeśli ktoś czeka. */
+    public String spots(int capacity) {
+        return booked + "/" + capacity + (waitlisted > 0 ? " (+" + waitlisted + ")" : "");
+    }
+}
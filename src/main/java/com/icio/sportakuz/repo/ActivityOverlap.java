@@ -0,0 +1,35 @@
+package com.icio.sportakuz.repo;
+
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Ograniczenia wykluczające kolizje nieanulowanych wystąpień zajęć (migracja V6): w tej samej sali
+ * i u tego samego instruktora przedziały [start_time, end_time) nie mogą się nakładać.
+ */
+public enum ActivityOverlap {
+    ROOM("ex_activities_room_overlap"),
+    INSTRUCTOR("ex_activities_instructor_overlap");
+
+    private final String constraint;
+
+    ActivityOverlap(String constraint) {
+        this.constraint = constraint;
+    }
+
+    public String getConstraint() {
+        return constraint;
+    }
+
+    /** Które ograniczenie kolizji naruszył zapis (pusty wynik – inne naruszenie więzów). */
+    public static Optional<ActivityOverlap> of(DataIntegrityViolationException e) {
+        String cause = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+        if (cause == null) {
+            return Optional.empty();
+        }
+        return Arrays.stream(values()).filter(o -> cause.contains(o.constraint)).findFirst();
+    }
+}
@@ -1,13 +1,21 @@
 package com.icio.sportakuz.repo;
 import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import com.icio.sportakuz.entity.Activity;
+import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.repository.query.Param;
 import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Repozytorium pojedynczych wystąpień zajęć {@link Activity}.
@@ -24,72 +32,104 @@ public interface ActivityRepository extends JpaRepository<Activity, Long> {
     List<Activity> findByInstructor_IdAndStartTimeAfterOrderByStartTimeAsc(
             Long instructorId, OffsetDateTime since);
 
-    /** Kolizje w sali (nakładające się przedziały czasowe) – status różny od CANCELLED. */
-    @Query("""
+    /**
+     * Wszystkie wystąpienia mieszczące się w przedziale czasu [from, to).
+     */
+    List<Activity> findByStartTimeBetween(OffsetDateTime from, OffsetDateTime to);
+
+    /**
+     * Strona bieżących (nieanulowanych, niezakończonych) wystąpień dla listy w panelu, opcjonalnie zawężona wzorcem
+     * LIKE po nazwie typu lub imieniu / nazwisku instruktora ({@code likePattern} = null – wszystkie).
+     * Kolejność (np. {@code lower(t.activityName)}, {@code lower(i.lastName)}, {@code c.startTime}) i okno strony
+     * przekazuje {@code pageable}; typ, instruktor, sala, seria i zastępstwo pobierane są w tym samym zapytaniu.
+     * Indeksy częściowe idx_activities_upcoming_* (migracja V5).
+     */
+    @Query(value = """
            select c from Activity c
-           where c.room.id = :roomId
-             and c.status <> com.icio.sportakuz.repo.ClassStatus.CANCELLED
-             and c.startTime < :end
-             and c.endTime   > :start
+           join fetch c.type t
+           join fetch c.instructor i
+           join fetch c.room
+           left join fetch c.series
+           left join fetch c.substitutedFor
+           where c.status not in (com.icio.sportakuz.repo.ClassStatus.CANCELLED, com.icio.sportakuz.repo.ClassStatus.FINISHED)
+             and (:likePattern is null
+               or lower(t.activityName) like :likePattern
+               or lower(i.firstName) like :likePattern
+               or lower(i.lastName) like :likePattern)
+           """,
+           countQuery = """
+           select count(c) from Activity c
+           join c.type t
+           join c.instructor i
+           where c.status not in (com.icio.sportakuz.repo.ClassStatus.CANCELLED, com.icio.sportakuz.repo.ClassStatus.FINISHED)
+             and (:likePattern is null
+               or lower(t.activityName) like :likePattern
+               or lower(i.firstName) like :likePattern
+               or lower(i.lastName) like :likePattern)
            """)
-    List<Activity> findOverlappingInRoom(@Param("roomId") Long roomId,
-                                         @Param("start") OffsetDateTime start,
-                                         @Param("end") OffsetDateTime end);
+    Page<Activity> findUpcomingPage(@Param("likePattern") String likePattern, Pageable pageable);
 
-    /** Kolizje czasowe instruktora. */
+    /**
+     * Strona historii (anulowane / zakończone wystąpienia) starszych niż kursor (startTime, id), najnowsze pierwsze
+     * – stronicowanie po kluczu (indeks częściowy idx_activities_history_start, migracja V5), bez liczenia
+     * całej historii. Wzorzec jak w {@link #findUpcomingPage}.
+     */
     @Query("""
            select c from Activity c
-           where c.instructor.id = :instructorId
-             and c.status <> com.icio.sportakuz.repo.ClassStatus.CANCELLED
-             and c.startTime < :end
-             and c.endTime   > :start
+           join fetch c.type t
+           join fetch c.instructor i
+           join fetch c.room
+           left join fetch c.series
+           where c.status in (com.icio.sportakuz.repo.ClassStatus.CANCELLED, com.icio.sportakuz.repo.ClassStatus.FINISHED)
+             and (c.startTime, c.id) < (:startTime, :id)
+             and (:likePattern is null
+               or lower(t.activityName) like :likePattern
+               or lower(i.firstName) like :likePattern
+               or lower(i.lastName) like :likePattern)
+           order by c.startTime desc, c.id desc
            """)
-    List<Activity> findOverlappingForInstructor(@Param("instructorId") Long instructorId,
-                                                @Param("start") OffsetDateTime start,
-                                                @Param("end") OffsetDateTime end);
+    List<Activity> findHistoryBefore(@Param("likePattern") String likePattern,
+                                     @Param("startTime") OffsetDateTime startTime,
+                                     @Param("id") Long id,
+                                     Pageable pageable);
 
-    /** Wszystkie wystąpienia posortowane rosnąco po czasie rozpoczęcia. */
-    List<Activity> findAllByOrderByStartTimeAsc();
+    /** Czas rozpoczęcia wystąpienia (kursor historii) – bez ładowania encji. */
+    @Query("select c.startTime from Activity c where c.id = :id")
+    Optional<OffsetDateTime> findStartTimeById(@Param("id") Long id);
 
     /**
-     * Wszystkie wystąpienia mieszczące się w przedziale czasu [from, to).
+     * Nieanulowane wystąpienia podanych instruktorów nachodzące na przedział [from, to) – jednym zapytaniem
+     * dla całej strony listy (indeks idx_activities_end_time), niezależnie od liczby instruktorów.
      */
-    List<Activity> findByStartTimeBetween(OffsetDateTime from, OffsetDateTime to);
-
-        /** Wyszukiwanie po typie lub instruktorze; sortowane po starcie. */
-        @Query("""
-          select c from Activity c
-          where (:likePattern is null or :likePattern = ''
-            or lower(c.type.activityName) like :likePattern
-            or lower(c.instructor.firstName) like :likePattern
-            or lower(c.instructor.lastName) like :likePattern)
-          order by c.startTime asc
-          """)
-        List<Activity> searchOrderByStartTimeAsc(@Param("likePattern") String likePattern);
-
-    /** Liczba kolidujących wystąpień w sali. */
     @Query("""
-           select count(c) from Activity c
-           where c.room.id = :roomId
+           select new com.icio.sportakuz.repo.InstructorInterval(c.id, c.instructor.id, c.startTime, c.endTime)
+           from Activity c
+           where c.instructor.id in :instructorIds
              and c.status <> com.icio.sportakuz.repo.ClassStatus.CANCELLED
-             and c.startTime < :end
-             and c.endTime   > :start
+             and c.startTime < :to
+             and c.endTime   > :from
            """)
-    long countOverlappingInRoom(@Param("roomId") Long roomId,
-                                @Param("start") OffsetDateTime start,
-                                @Param("end") OffsetDateTime end);
+    List<InstructorInterval> findInstructorIntervals(@Param("instructorIds") Collection<Long> instructorIds,
+                                                     @Param("from") OffsetDateTime from,
+                                                     @Param("to") OffsetDateTime to);
 
-    /** Liczba kolidujących wystąpień u instruktora. */
+    /** Nieanulowane wystąpienia kończące się po {@code since} – do zbudowania indeksu kolizji (indeks idx_activities_end_time). */
     @Query("""
-           select count(c) from Activity c
-           where c.instructor.id = :instructorId
+           select new com.icio.sportakuz.repo.ActivityInterval(c.id, c.room.id, c.instructor.id, c.startTime, c.endTime)
+           from Activity c
+           where c.status <> com.icio.sportakuz.repo.ClassStatus.CANCELLED
+             and c.endTime > :since
+           """)
+    List<ActivityInterval> findIntervalsEndingAfter(@Param("since") OffsetDateTime since);
+
+    /** Jak {@link #findIntervalsEndingAfter}, ale tylko dla podanych ID – do przyrostowej aktualizacji indeksu kolizji. */
+    @Query("""
+           select new com.icio.sportakuz.repo.ActivityInterval(c.id, c.room.id, c.instructor.id, c.startTime, c.endTime)
+           from Activity c
+           where c.id in :ids
              and c.status <> com.icio.sportakuz.repo.ClassStatus.CANCELLED
-             and c.startTime < :end
-             and c.endTime   > :start
            """)
-    long countOverlappingForInstructor(@Param("instructorId") Long instructorId,
-                                       @Param("start") OffsetDateTime start,
-                                       @Param("end") OffsetDateTime end);
+    List<ActivityInterval> findIntervals(@Param("ids") Collection<Long> ids);
 
     /** Najbliższe planowane zajęcia od chwili 'now'. */
     @Query("""
@@ -110,14 +150,136 @@ public interface ActivityRepository extends JpaRepository<Activity, Long> {
            """)
     List<Activity> findUpcoming(@Param("now") OffsetDateTime now);
 
-    /** Najbliższe widoczne (nieanulowane) zajęcia z możliwością ograniczenia liczby rekordów. */
+    /**
+     * Nieanulowane, niezakończone przed {@code now} zajęcia zaczynające się w [{@code from}, {@code to}) – okno
+     * kalendarza – jako projekcja z samymi potrzebnymi kolumnami
+     * – jedno zapytanie z join-ami typu, sali i prowadzących, bez encji w kontekście persystencji.
+     */
     @Query("""
-           select c from Activity c
+           select new com.icio.sportakuz.repo.CalendarClassRow(c.id, t.activityName, t.difficulty,
+                  c.startTime, c.endTime, c.status, r.name, i.email, i.firstName, i.lastName,
+                  s.firstName, s.lastName, c.capacity)
+           from Activity c
+           join c.type t
+           join c.room r
+           join c.instructor i
+           left join c.substitutedFor s
            where c.status <> com.icio.sportakuz.repo.ClassStatus.CANCELLED
              and c.endTime >= :now
+             and c.startTime >= :from
+             and c.startTime < :to
+           order by c.startTime asc
+           """)
+    List<CalendarClassRow> findCalendarRows(@Param("from") OffsetDateTime from,
+                                            @Param("to") OffsetDateTime to,
+                                            @Param("now") OffsetDateTime now);
+
+    /**
+     * Najbliższe widoczne zajęcia zaczynające się od {@code from} jako projekcja kalendarza, opcjonalnie tylko danego
+     * instruktora ({@code email} = null – wszystkich). Uzupełnia pulpity, gdy w migawce harmonogramu jest ich za mało.
+     */
+    @Query("""
+           select new com.icio.sportakuz.repo.CalendarClassRow(c.id, t.activityName, t.difficulty,
+                  c.startTime, c.endTime, c.status, r.name, i.email, i.firstName, i.lastName,
+                  s.firstName, s.lastName, c.capacity)
+           from Activity c
+           join c.type t
+           join c.room r
+           join c.instructor i
+           left join c.substitutedFor s
+           where c.status <> com.icio.sportakuz.repo.ClassStatus.CANCELLED
+             and c.endTime >= :now
+             and c.startTime >= :from
+             and (:email is null or i.email = :email)
+           order by c.startTime asc
+           """)
+    List<CalendarClassRow> findNextCalendarRows(@Param("from") OffsetDateTime from,
+                                                @Param("now") OffsetDateTime now,
+                                                @Param("email") String email,
+                                                Pageable pageable);
+
+    /** Dostępność miejsc podanych zajęć (liczby rezerwacji z podzapytań) – jedno zapytanie dla całej partii zmian. */
+    @Query("""
+           select new com.icio.sportakuz.repo.SeatAvailability(c.id,
+                  (select count(b) from Booking b
+                   where b.activity = c
+                     and b.status in (com.icio.sportakuz.repo.BookingStatus.REQUESTED,
+                                      com.icio.sportakuz.repo.BookingStatus.CONFIRMED,
+                                      com.icio.sportakuz.repo.BookingStatus.PAID)),
+                  (select count(w) from Booking w
+                   where w.activity = c
+                     and w.status = com.icio.sportakuz.repo.BookingStatus.WAITLISTED),
+                  c.capacity)
+           from Activity c
+           where c.id in :ids
+           """)
+    List<SeatAvailability> findSeatAvailability(@Param("ids") Collection<Long> ids);
+
+    /** Cechy wszystkich bieżących (nieanulowanych i niezakończonych) wystąpień – do zbudowania indeksu harmonogramu. */
+    @Query("""
+           select new com.icio.sportakuz.repo.ActivityFacets(c.id, c.startTime, t.id, r.id, i.id, t.difficulty,
+                  t.activityName, i.firstName, i.lastName)
+           from Activity c
+           join c.type t
+           join c.room r
+           join c.instructor i
+           where c.status not in (com.icio.sportakuz.repo.ClassStatus.CANCELLED, com.icio.sportakuz.repo.ClassStatus.FINISHED)
+           """)
+    List<ActivityFacets> findActivityFacets();
+
+    /** Jak {@link #findActivityFacets()}, ale tylko dla podanych ID – do przyrostowej aktualizacji indeksu. */
+    @Query("""
+           select new com.icio.sportakuz.repo.ActivityFacets(c.id, c.startTime, t.id, r.id, i.id, t.difficulty,
+                  t.activityName, i.firstName, i.lastName)
+           from Activity c
+           join c.type t
+           join c.room r
+           join c.instructor i
+           where c.id in :ids
+             and c.status not in (com.icio.sportakuz.repo.ClassStatus.CANCELLED, com.icio.sportakuz.repo.ClassStatus.FINISHED)
+           """)
+    List<ActivityFacets> findActivityFacets(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Nieodwołane zajęcia instruktora kończące się od {@code since} – strumieniowo (kursor z fetch size),
+     * do zapisu kanału .ics wprost do odpowiedzi. Wymaga trwającej transakcji; strumień trzeba zamknąć.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "200"))
+    @Query("""
+           select new com.icio.sportakuz.repo.CalendarFeedRow(c.id, t.activityName, c.startTime, c.endTime,
+                  r.name, i.firstName, i.lastName, false)
+           from Activity c
+           join c.type t
+           join c.room r
+           join c.instructor i
+           where i.id = :instructorId
+             and c.status <> com.icio.sportakuz.repo.ClassStatus.CANCELLED
+             and c.endTime >= :since
+           order by c.startTime asc
+           """)
+    Stream<CalendarFeedRow> streamInstructorFeed(@Param("instructorId") Long instructorId,
+                                                 @Param("since") OffsetDateTime since);
+
+    /** Jak {@link #streamInstructorFeed}, ale plan sali. */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "200"))
+    @Query("""
+           select new com.icio.sportakuz.repo.CalendarFeedRow(c.id, t.activityName, c.startTime, c.endTime,
+                  r.name, i.firstName, i.lastName, false)
+           from Activity c
+           join c.type t
+           join c.room r
+           join c.instructor i
+           where r.id = :roomId
+             and c.status <> com.icio.sportakuz.repo.ClassStatus.CANCELLED
+             and c.endTime >= :since
            order by c.startTime asc
            """)
-    List<Activity> findNextVisible(@Param("now") OffsetDateTime now, Pageable pageable);
+    Stream<CalendarFeedRow> streamRoomFeed(@Param("roomId") Long roomId,
+                                           @Param("since") OffsetDateTime since);
+
+    /** Godziny rozpoczęcia podanych zajęć – do wyznaczenia dni migawki harmonogramu do przebudowania. */
+    @Query("select c.startTime from Activity c where c.id in :ids")
+    List<OffsetDateTime> findStartTimes(@Param("ids") Collection<Long> ids);
 
     /** Sprawdza czy istnieje wystąpienie w danej serii dokładnie o wskazanym starcie. */
     boolean existsBySeries_IdAndStartTime(Long seriesId, OffsetDateTime startTime);
@@ -130,6 +292,103 @@ public interface ActivityRepository extends JpaRepository<Activity, Long> {
     @Query("select c from Activity c where c.id = :id")
     Activity findByIdForUpdate(@Param("id") Long id);
 
+    /**
+     * Pobiera i blokuje wiele wystąpień naraz. Blokady zakładane są w kolejności ID,
+     * więc równoległe rezerwacje zbiorcze nie zakleszczają się nawzajem.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Activity c where c.id in :ids order by c.id")
+    List<Activity> findAllByIdInForUpdate(@Param("ids") Collection<Long> ids);
+
+    /** ID wystąpień serii rozpoczynających się w przedziale [from, to). */
+    @Query("""
+           select c.id from Activity c
+           where c.series.id = :seriesId
+             and c.startTime >= :from
+             and c.startTime < :to
+           order by c.id
+           """)
+    List<Long> findIdsBySeriesAndStartTimeBetween(@Param("seriesId") Long seriesId,
+                                                 @Param("from") OffsetDateTime from,
+                                                 @Param("to") OffsetDateTime to);
+
+    /** Zajmuje po jednym miejscu na każdym z podanych zajęć (wywoływać po zablokowaniu i sprawdzeniu pojemności). */
+    @Modifying
+    @Query(value = "update activities set reserved_count = reserved_count + 1 where id in (:ids)", nativeQuery = true)
+    int reserveSeats(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Warunkowo zajmuje miejsce na zajęciach (reserved_count + 1), o ile nie przekroczono pojemności
+     * i zajęcia nie są anulowane. Zwraca liczbę zmienionych wierszy (0 = brak miejsca / anulowane / brak zajęć).
+     */
+    @Modifying
+    @Query(value = """
+           update activities set reserved_count = reserved_count + 1
+           where id = :id
+             and reserved_count < capacity
+             and status <> 'CANCELLED'
+           """, nativeQuery = true)
+    int tryReserveSeat(@Param("id") Long id);
+
+    /**
+     * Zajmuje naraz {@code count} miejsc (partia rezerwacji z jednego sharda) – wszystkie albo żadne.
+     * @return 1, jeśli miejsca zostały zajęte; 0, gdy zabrakło miejsc lub zajęcia są anulowane
+     */
+    @Modifying
+    @Query(value = """
+           update activities set reserved_count = reserved_count + :count
+           where id = :id
+             and reserved_count + :count <= capacity
+             and status <> 'CANCELLED'
+           """, nativeQuery = true)
+    int tryReserveSeats(@Param("id") Long id, @Param("count") int count);
+
+    /** Stan miejsc "zajęte/pojemność" w bazie (w bieżącej transakcji – z jej zmianami). */
+    @Query(value = "select reserved_count || '/' || capacity from activities where id = :id", nativeQuery = true)
+    String findSpots(@Param("id") Long id);
+
+    /**
+     * Blokuje wiersz zajęć jak warunkowy UPDATE reserved_count (FOR NO KEY UPDATE – nie wstrzymuje wstawiania rezerwacji
+     * z kluczem obcym do zajęć). Anulowanie blokuje zajęcia przed zmianą rezerwacji, w tej samej kolejności co nowa
+     * rezerwacja – inaczej anulowanie i równoległa ponowna rezerwacja tego samego użytkownika zakleszczają się.
+     */
+    @Query(value = "select id from activities where id = :id for no key update", nativeQuery = true)
+    Long lockSeats(@Param("id") Long id);
+
+    /** Zwalnia miejsce na zajęciach (reserved_count - 1, nie schodzi poniżej zera). */
+    @Modifying
+    @Query(value = """
+           update activities set reserved_count = reserved_count - 1
+           where id = :id
+             and reserved_count > 0
+           """, nativeQuery = true)
+    int releaseSeat(@Param("id") Long id);
+
+    /** Zeruje licznik zajętych miejsc (np. po anulowaniu wszystkich rezerwacji odwołanych zajęć). */
+    @Modifying
+    @Query(value = "update activities set reserved_count = 0 where id = :id", nativeQuery = true)
+    int resetReservedCount(@Param("id") Long id);
+
+    /** Identyfikatory zajęć (kończących się po 'since'), dla których reserved_count rozjechał się z tabelą bookings. */
+    @Query(value = """
+           select a.id from activities a
+           where a.end_time >= :since
+             and a.reserved_count <> (select count(*) from bookings b
+                                      where b.class_id = a.id
+                                        and b.status in ('REQUESTED', 'CONFIRMED', 'PAID'))
+           """, nativeQuery = true)
+    List<Long> findReservedCountDrift(@Param("since") OffsetDateTime since);
+
+    /** Przelicza reserved_count na podstawie tabeli bookings (wywoływać po zablokowaniu wiersza zajęć). */
+    @Modifying
+    @Query(value = """
+           update activities set reserved_count = (select count(*) from bookings b
+                                                   where b.class_id = :id
+                                                     and b.status in ('REQUESTED', 'CONFIRMED', 'PAID'))
+           where id = :id
+           """, nativeQuery = true)
+    int recountReservedSeats(@Param("id") Long id);
+
     /**
      * Zlicza zajęcia przeprowadzone przez instruktora w zadanym przedziale czasu.
      * Warunki:
@@ -0,0 +1,81 @@
+package com.icio.sportakuz.repo;
+
+import com.icio.sportakuz.entity.BookingArchive;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/**
+ * Repozytorium archiwum rezerwacji {@link BookingArchive}. Przeniesienie wierszy z bookings odbywa się
+ * jednym poleceniem (DELETE ... RETURNING + INSERT), bez ładowania encji.
+ */
+public interface BookingArchiveRepository extends JpaRepository<BookingArchive, Long> {
+
+    /**
+     * Przenosi do archiwum co najwyżej {@code limit} rezerwacji zajęć zakończonych przed {@code endedBefore}.
+     * Wiersze zablokowane przez inne transakcje są pomijane (SKIP LOCKED) i trafią do kolejnej partii.
+     * @return liczba przeniesionych rezerwacji
+     */
+    @Modifying
+    @Query(value = """
+           with moved as (
+               delete from bookings
+               where id in (select b.id from bookings b
+                            join activities a on a.id = b.class_id
+                            where a.end_time < :endedBefore
+                            order by b.id
+                            limit :limit
+                            for update of b skip locked)
+               returning id, class_id, user_name, status, created_at, cancelled_at)
+           insert into bookings_archive (id, class_id, class_start_time, user_name, status, created_at, cancelled_at, archived_at)
+           select m.id, m.class_id, a.start_time, m.user_name, m.status, m.created_at, m.cancelled_at, now()
+           from moved m join activities a on a.id = m.class_id
+           """, nativeQuery = true)
+    int archiveFinished(@Param("endedBefore") OffsetDateTime endedBefore, @Param("limit") int limit);
+
+    /**
+     * Przenosi do archiwum wszystkie rezerwacje usuwanego wystąpienia zajęć; rezerwacje, które nie były
+     * anulowane, trafiają do archiwum jako CANCELLED (zajęcia przestają istnieć).
+     * @return liczba przeniesionych rezerwacji
+     */
+    @Modifying
+    @Query(value = """
+           with moved as (
+               delete from bookings where class_id = :classId
+               returning id, class_id, user_name, status, created_at, cancelled_at)
+           insert into bookings_archive (id, class_id, class_start_time, user_name, status, created_at, cancelled_at, archived_at)
+           select m.id, m.class_id, a.start_time, m.user_name, 'CANCELLED', m.created_at, coalesce(m.cancelled_at, now()), now()
+           from moved m join activities a on a.id = m.class_id
+           """, nativeQuery = true)
+    int archiveAllForActivity(@Param("classId") Long classId);
+
+    /**
+     * Strona historii użytkownika z archiwum: rezerwacje zajęć rozpoczętych przed {@code startedBefore}
+     * (archiwum zawiera też rezerwacje przyszłych zajęć usuniętych z grafiku), starsze niż kursor
+     * (classStartTime, id), malejąco – przejście po indeksie idx_bookings_archive_user_start od kursora, bez OFFSET. Dane zajęć dołączane
+     * są, o ile zajęcia nadal istnieją (czas zakończenia – tylko, gdy nie zostały przesunięte po archiwizacji).
+     */
+    @Query("""
+           select new com.icio.sportakuz.repo.BookingHistoryRow(h.id, h.status, h.classStartTime,
+                  case when a.startTime = h.classStartTime then a.endTime else null end, t.activityName, r.name, i.firstName, i.lastName)
+           from BookingArchive h
+           left join Activity a on a.id = h.classId
+           left join a.type t
+           left join a.room r
+           left join a.instructor i
+           where h.userName = :userName
+             and h.classStartTime < :startedBefore
+             and (h.classStartTime, h.id) < (:startTime, :id)
+           order by h.classStartTime desc, h.id desc
+           """)
+    List<BookingHistoryRow> findHistoryBefore(@Param("userName") String userName,
+                                              @Param("startedBefore") OffsetDateTime startedBefore,
+                                              @Param("startTime") OffsetDateTime startTime,
+                                              @Param("id") Long id,
+                                              Pageable pageable);
+}
@@ -0,0 +1,18 @@
+package com.icio.sportakuz.repo;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Projekcja rezerwacji z historii użytkownika – z tabeli bookings (zajęcia już zakończone) albo z bookings_archive.
+ * Zajęcia zarchiwizowanej rezerwacji mogły zostać usunięte – wtedy wszystkie pola poza ID, statusem
+ * i czasem rozpoczęcia są puste.
+ */
+public record BookingHistoryRow(Long id,
+                                BookingStatus status,
+                                OffsetDateTime startTime,
+                                OffsetDateTime endTime,
+                                String typeName,
+                                String roomName,
+                                String instructorFirstName,
+                                String instructorLastName) {
+}
@@ -1,13 +1,21 @@
 package com.icio.sportakuz.repo;
 
 import com.icio.sportakuz.entity.Booking;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.repository.query.Param;
 
 import java.time.OffsetDateTime;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * Repozytorium rezerwacji {@link Booking}. Zapewnia metody liczenia aktywnych rezerwacji
@@ -25,6 +33,60 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
            """)
     long countActiveByClassId(@Param("classId") Long classId);
 
+    /**
+     * Zajęcia z aktywnymi rezerwacjami użytkownika (w tym z listy oczekujących), kończące się od {@code since}
+     * – strumieniowo, do zapisu kanału .ics wprost do odpowiedzi. Wymaga trwającej transakcji; strumień trzeba zamknąć.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "200"))
+    @Query("""
+           select new com.icio.sportakuz.repo.CalendarFeedRow(c.id, t.activityName, c.startTime, c.endTime,
+                  r.name, i.firstName, i.lastName,
+                  case when b.status = com.icio.sportakuz.repo.BookingStatus.WAITLISTED then true else false end)
+           from Booking b
+           join b.activity c
+           join c.type t
+           join c.room r
+           join c.instructor i
+           where b.userName = :userName
+             and b.status in :statuses
+             and c.status <> com.icio.sportakuz.repo.ClassStatus.CANCELLED
+             and c.endTime >= :since
+           order by c.startTime asc
+           """)
+    Stream<CalendarFeedRow> streamMemberFeed(@Param("userName") String userName,
+                                             @Param("statuses") Collection<BookingStatus> statuses,
+                                             @Param("since") OffsetDateTime since);
+
+    /** Obłożenie (zajęte miejsca + lista oczekujących) podanych wystąpień zajęć – jedno zapytanie GROUP BY. */
+    @Query("""
+           select new com.icio.sportakuz.repo.ActivityOccupancy(b.activity.id,
+                  sum(case when b.status = com.icio.sportakuz.repo.BookingStatus.WAITLISTED then 0 else 1 end),
+                  sum(case when b.status = com.icio.sportakuz.repo.BookingStatus.WAITLISTED then 1 else 0 end))
+           from Booking b
+           where b.activity.id in :classIds
+             and b.status in (com.icio.sportakuz.repo.BookingStatus.REQUESTED,
+                              com.icio.sportakuz.repo.BookingStatus.CONFIRMED,
+                              com.icio.sportakuz.repo.BookingStatus.PAID,
+                              com.icio.sportakuz.repo.BookingStatus.WAITLISTED)
+           group by b.activity.id
+           """)
+    List<ActivityOccupancy> countOccupancy(@Param("classIds") Collection<Long> classIds);
+
+    /** Obłożenie podanych zajęć wg ID (również zajęć bez rezerwacji – z zerami). */
+    default Map<Long, ActivityOccupancy> occupancyOf(Collection<Long> classIds) {
+        Map<Long, ActivityOccupancy> result = new HashMap<>();
+        if (classIds.isEmpty()) {
+            return result;
+        }
+        for (ActivityOccupancy o : countOccupancy(classIds)) {
+            result.put(o.activityId(), o);
+        }
+        for (Long id : classIds) {
+            result.putIfAbsent(id, ActivityOccupancy.empty(id));
+        }
+        return result;
+    }
+
     /** Sprawdza czy istnieje rezerwacja użytkownika w jednym z podanych statusów. */
     boolean existsByActivity_IdAndUserNameAndStatusIn(
             Long classId, String userName, Collection<BookingStatus> statuses);
@@ -33,8 +95,73 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
     Booking findFirstByActivity_IdAndUserNameAndStatusIn(
       Long classId, String userName, Collection<BookingStatus> statuses);
 
-    /** Pobiera wszystkie rezerwację użytkownika. */
-    List<Booking> findAllByUserNameAndActivity_EndTimeAfter(String userName, OffsetDateTime endTime);
+    /**
+     * Wstawia rezerwację, o ile użytkownik nie ma już "żywej" rezerwacji na te zajęcia
+     * (indeks częściowy uq_bookings_live_user, migracja V2).
+     * @return ID nowej rezerwacji albo null, gdy naruszyłaby ona indeks (duplikat)
+     */
+    @Query(value = """
+           insert into bookings (class_id, user_name, status, created_at)
+           values (:classId, :userName, :status, now())
+           on conflict (class_id, user_name) where status in ('REQUESTED', 'CONFIRMED', 'PAID', 'WAITLISTED')
+           do nothing
+           returning id
+           """, nativeQuery = true)
+    Long insertUnlessLive(@Param("classId") Long classId,
+                          @Param("userName") String userName,
+                          @Param("status") String status);
+
+    /**
+     * Rezerwacje użytkownika w podanych statusach na zajęcia kończące się po {@code now} jako projekcja
+     * dla widoku "Moje rezerwacje" – jedno zapytanie, razem z pozycją na liście oczekujących (podzapytanie).
+     */
+    @Query("""
+           select new com.icio.sportakuz.repo.MyBookingRow(b.id, t.activityName, a.startTime, a.endTime, r.name,
+                  i.firstName, i.lastName, s.firstName, s.lastName,
+                  case when b.status = com.icio.sportakuz.repo.BookingStatus.WAITLISTED
+                       then (select count(w) from Booking w
+                             where w.activity = a
+                               and w.status = com.icio.sportakuz.repo.BookingStatus.WAITLISTED
+                               and w.id <= b.id)
+                       else null end)
+           from Booking b
+           join b.activity a
+           join a.type t
+           join a.room r
+           join a.instructor i
+           left join a.substitutedFor s
+           where b.userName = :userName
+             and b.status in :statuses
+             and a.endTime > :now
+           order by a.startTime asc
+           """)
+    List<MyBookingRow> findMyBookingRows(@Param("userName") String userName,
+                                         @Param("statuses") Collection<BookingStatus> statuses,
+                                         @Param("now") OffsetDateTime now);
+
+    /**
+     * Strona historii użytkownika z tabeli bookings: rezerwacje zajęć zakończonych przed {@code endedBefore},
+     * starsze niż kursor (startTime, id) – stronicowanie po kluczu, malejąco; indeks idx_bookings_user_class.
+     * W tabeli są tylko rezerwacje z ostatniej doby (resztę przenosi BookingArchiver), więc koszt nie zależy od strony.
+     */
+    @Query("""
+           select new com.icio.sportakuz.repo.BookingHistoryRow(b.id, b.status, a.startTime, a.endTime, t.activityName,
+                  r.name, i.firstName, i.lastName)
+           from Booking b
+           join b.activity a
+           join a.type t
+           join a.room r
+           join a.instructor i
+           where b.userName = :userName
+             and a.endTime <= :endedBefore
+             and (a.startTime, b.id) < (:startTime, :id)
+           order by a.startTime desc, b.id desc
+           """)
+    List<BookingHistoryRow> findHistoryBefore(@Param("userName") String userName,
+                                              @Param("endedBefore") OffsetDateTime endedBefore,
+                                              @Param("startTime") OffsetDateTime startTime,
+                                              @Param("id") Long id,
+                                              Pageable pageable);
 
     /** Pobiera rezerwacje po ID. */
     List<Booking> findFirstById(long id);
@@ -44,12 +171,13 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
      * Warunki:
      * 1. Zgadza się nazwa użytkownika.
      * 2. Data rozpoczęcia zajęć jest w przyszłości (> now).
-     * 3. Status rezerwacji NIE jest CANCELLED (odrzucona/anulowana).
+     * 3. Status rezerwacji NIE jest CANCELLED (odrzucona/anulowana) ani WAITLISTED (brak miejsca).
      */
     @Query("SELECT COUNT(b) FROM Booking b " +
             "WHERE b.userName = :userName " +
             "AND b.activity.startTime > :now " +
-            "AND b.status != 'CANCELLED'")
+            "AND b.status NOT IN (com.icio.sportakuz.repo.BookingStatus.CANCELLED, " +
+            "                     com.icio.sportakuz.repo.BookingStatus.WAITLISTED)")
     long countActiveBookings(@Param("userName") String userName,
                              @Param("now") OffsetDateTime now);
 
@@ -58,17 +186,111 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
      * Warunki:
      * 1. Zgadza się nazwa użytkownika.
      * 2. Zajęcia zakończyły się w przedziale (od, do).
-     * 3. Status rezerwacji NIE jest CANCELLED.
+     * 3. Status rezerwacji NIE jest CANCELLED ani WAITLISTED.
+     * Rezerwacje zakończonych zajęć przenosi do bookings_archive {@code BookingArchiver}, więc liczone są obie tabele;
+     * archiwum nie zna czasu zakończenia, dlatego tam przedział dotyczy czasu rozpoczęcia (class_start_time).
      * Opcjonalnie: można dodać warunek AND b.activity.status = 'DONE', jeśli instruktorzy oznaczają obecność.
      */
-    @Query("SELECT COUNT(b) FROM Booking b " +
-            "WHERE b.userName = :userName " +
-            "AND b.activity.endTime BETWEEN :fromDate AND :toDate " +
-            "AND b.status != 'CANCELLED'")
+    @Query(value = """
+           select (select count(*) from bookings b
+                   join activities a on a.id = b.class_id
+                   where b.user_name = :userName
+                     and a.end_time between :fromDate and :toDate
+                     and b.status not in ('CANCELLED', 'WAITLISTED'))
+                + (select count(*) from bookings_archive h
+                   where h.user_name = :userName
+                     and h.class_start_time between :fromDate and :toDate
+                     and h.status not in ('CANCELLED', 'WAITLISTED'))
+           """, nativeQuery = true)
     long countCompletedBookings(@Param("userName") String userName,
                                 @Param("fromDate") OffsetDateTime fromDate,
                                 @Param("toDate") OffsetDateTime toDate);
 
+    /**
+     * Anuluje rezerwację, o ile nadal ma podany status (warunkowe UPDATE). Z równoległych anulowań tej samej
+     * rezerwacji wiersz zmienia tylko jedno – pozostałe dostają 0 i nie zwalniają miejsca drugi raz.
+     * @return liczba zmienionych wierszy (0 albo 1)
+     */
+    @Modifying
+    @Query(value = """
+           update bookings set status = 'CANCELLED', cancelled_at = now()
+           where id = :id
+             and status = :status
+           """, nativeQuery = true)
+    int cancelIfStatus(@Param("id") Long id, @Param("status") String status);
+
+    /** Bieżący (zatwierdzony) status rezerwacji – z pominięciem encji w kontekście utrwalania. */
+    @Query("select b.status from Booking b where b.id = :id")
+    BookingStatus findStatusById(@Param("id") Long id);
+
+    /**
+     * Pierwsza osoba z listy oczekujących (kolejność wg ID), zablokowana do końca transakcji.
+     * SKIP LOCKED – równoległe zwolnienia miejsc awansują kolejne osoby zamiast czekać na siebie.
+     */
+    @Query(value = """
+           select * from bookings
+           where class_id = :classId
+             and status = 'WAITLISTED'
+           order by id
+           limit 1
+           for update skip locked
+           """, nativeQuery = true)
+    Booking findWaitlistHeadForUpdate(@Param("classId") Long classId);
+
+    /** Pozycja rezerwacji na liście oczekujących danego wystąpienia zajęć (1 = następna w kolejce). */
+    @Query("""
+           select count(b) from Booking b
+           where b.activity.id = :classId
+             and b.status = com.icio.sportakuz.repo.BookingStatus.WAITLISTED
+             and b.id <= :bookingId
+           """)
+    long waitlistPosition(@Param("classId") Long classId, @Param("bookingId") Long bookingId);
+
+    /** ID zajęć (spośród podanych), na które użytkownik ma już rezerwację w jednym z podanych statusów. */
+    @Query("""
+           select b.activity.id from Booking b
+           where b.userName = :userName
+             and b.activity.id in :classIds
+             and b.status in :statuses
+           """)
+    List<Long> findBookedClassIds(@Param("userName") String userName,
+                                  @Param("classIds") Collection<Long> classIds,
+                                  @Param("statuses") Collection<BookingStatus> statuses);
+
+    /**
+     * Wstawia rezerwacje REQUESTED użytkownika na wszystkie podane zajęcia jednym poleceniem INSERT ... SELECT.
+     * @return wiersze [ID rezerwacji, ID zajęć] wstawionych rezerwacji
+     */
+    @Query(value = """
+           insert into bookings (class_id, user_name, status, created_at)
+           select a.id, :userName, 'REQUESTED', now() from activities a
+           where a.id in (:classIds)
+           returning id, class_id
+           """, nativeQuery = true)
+    List<Object[]> insertRequested(@Param("userName") String userName, @Param("classIds") Collection<Long> classIds);
+
+    /**
+     * Anuluje wszystkie "żywe" rezerwacje (również listę oczekujących) danego wystąpienia zajęć jednym poleceniem
+     * i w tym samym poleceniu zapisuje dla każdej zdarzenie BOOKING_CANCELLED_BY_ACTIVITY do outboxu
+     * (detail = lokalny czas rozpoczęcia zajęć) – liczba zapytań nie zależy od liczby rezerwacji.
+     * @return liczba anulowanych rezerwacji
+     */
+    @Modifying
+    @Query(value = """
+           with cancelled as (
+               update bookings set status = 'CANCELLED', cancelled_at = now()
+               where class_id = :classId
+                 and status in ('REQUESTED', 'CONFIRMED', 'PAID', 'WAITLISTED')
+               returning id, user_name)
+           insert into outbox_events (tx_id, type, activity_id, booking_id, user_name, detail, created_at)
+           select pg_current_xact_id()::text::bigint, 'BOOKING_CANCELLED_BY_ACTIVITY', :classId, c.id, c.user_name,
+                  to_char(a.start_time at time zone 'Europe/Warsaw', 'YYYY-MM-DD HH24:MI'), now()
+           from cancelled c
+           join activities a on a.id = :classId
+           order by c.id
+           """, nativeQuery = true)
+    int cancelAllLiveForActivity(@Param("classId") Long classId);
+
     /** Wszystkie aktywne rezerwacje dla danego wystąpienia zajęć. */
     List<Booking> findAllByActivity_IdAndStatusIn(Long activityId, Collection<BookingStatus> statuses);
 }
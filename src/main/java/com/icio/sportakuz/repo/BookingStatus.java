@@ -1,17 +1,27 @@
 package com.icio.sportakuz.repo;
 
+import java.util.List;
+
 /**
  * Status rezerwacji uczestnika na zajęcia.
  * REQUESTED - zgłoszona, oczekuje na potwierdzenie
  * CONFIRMED - potwierdzona (miejsce zarezerwowane)
  * PAID - opłacona (jeśli wymagane płatności)
  * CANCELLED - anulowana przez system lub użytkownika
+ * WAITLISTED - na liście oczekujących (brak wolnych miejsc), awansuje po zwolnieniu miejsca
  */
 public enum BookingStatus {
     REQUESTED("Zgłoszona"),
     CONFIRMED("Potwierdzona"),
     PAID("Opłacona"),
-    CANCELLED("Anulowana");
+    CANCELLED("Anulowana"),
+    WAITLISTED("Lista oczekujących");
+
+    /** Statusy zajmujące miejsce na zajęciach. */
+    public static final List<BookingStatus> ACTIVE = List.of(REQUESTED, CONFIRMED, PAID);
+
+    /** Statusy "żywej" rezerwacji użytkownika – zajmującej miejsce lub oczekującej na nie. */
+    public static final List<BookingStatus> LIVE = List.of(REQUESTED, CONFIRMED, PAID, WAITLISTED);
 
     private final String label;
 
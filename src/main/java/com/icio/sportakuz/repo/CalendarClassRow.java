@@ -0,0 +1,22 @@
+package com.icio.sportakuz.repo;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Projekcja wystąpienia zajęć dla kalendarza i pulpitów – tylko kolumny potrzebne do zbudowania CalendarClassDto,
+ * pobierane jednym zapytaniem z join-ami (bez ładowania encji Activity / User / ActivitySeries).
+ */
+public record CalendarClassRow(Long id,
+                               String typeName,
+                               DifficultyLevel difficulty,
+                               OffsetDateTime startTime,
+                               OffsetDateTime endTime,
+                               ClassStatus status,
+                               String roomName,
+                               String instructorEmail,
+                               String instructorFirstName,
+                               String instructorLastName,
+                               String substitutedForFirstName,
+                               String substitutedForLastName,
+                               Integer capacity) {
+}
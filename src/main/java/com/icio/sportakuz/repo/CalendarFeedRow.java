@@ -0,0 +1,17 @@
+package com.icio.sportakuz.repo;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Projekcja zajęć dla kanałów iCalendar (.ics) – jedno wydarzenie kalendarza.
+ * @param waitlisted czy użytkownik jest dopiero na liście oczekujących (tylko kanał rezerwacji)
+ */
+public record CalendarFeedRow(Long activityId,
+                              String typeName,
+                              OffsetDateTime startTime,
+                              OffsetDateTime endTime,
+                              String roomName,
+                              String instructorFirstName,
+                              String instructorLastName,
+                              boolean waitlisted) {
+}
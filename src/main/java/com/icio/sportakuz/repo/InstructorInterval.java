@@ -0,0 +1,13 @@
+package com.icio.sportakuz.repo;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Zajęty przedział instruktora – nieanulowane wystąpienie zajęć, które prowadzi.
+ * Projekcja do wyliczania dostępności instruktorów bez ładowania encji.
+ */
+public record InstructorInterval(Long activityId,
+                                 Long instructorId,
+                                 OffsetDateTime startTime,
+                                 OffsetDateTime endTime) {
+}
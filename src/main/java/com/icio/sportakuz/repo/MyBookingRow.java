@@ -0,0 +1,20 @@
+package com.icio.sportakuz.repo;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Projekcja rezerwacji użytkownika dla widoku "Moje rezerwacje" – tylko kolumny potrzebne do MyBookingDto,
+ * razem z pozycją na liście oczekujących, pobierane jednym zapytaniem.
+ * @param waitlistPosition pozycja na liście oczekujących (null, jeśli rezerwacja ma miejsce)
+ */
+public record MyBookingRow(Long id,
+                           String typeName,
+                           OffsetDateTime startTime,
+                           OffsetDateTime endTime,
+                           String roomName,
+                           String instructorFirstName,
+                           String instructorLastName,
+                           String substitutedForFirstName,
+                           String substitutedForLastName,
+                           Long waitlistPosition) {
+}
@@ -0,0 +1,61 @@
+package com.icio.sportakuz.repo;
+
+import com.icio.sportakuz.entity.OutboxEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/**
+ * Repozytorium zdarzeń outboxu {@link OutboxEvent}. Zapis zdarzeń wykonuje {@code OutboxPublisher},
+ * tutaj są zapytania relay-a.
+ */
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /**
+     * Kolejne zdarzenia po pozycji (txId, eventId) w kolejności (tx_id, id) – tylko z transakcji starszych niż
+     * najstarsza wciąż trwająca (xmin bieżącego snapshotu), czyli takich, do których nic już nie zostanie dopisane.
+     */
+    @Query(value = """
+           select * from outbox_events
+           where (tx_id, id) > (:txId, :eventId)
+             and tx_id < pg_snapshot_xmin(pg_current_snapshot())::text::bigint
+           order by tx_id, id
+           limit :limit
+           """, nativeQuery = true)
+    List<OutboxEvent> findCommittedAfter(@Param("txId") long txId,
+                                         @Param("eventId") long eventId,
+                                         @Param("limit") int limit);
+
+    /**
+     * Pozycja zmian w outboxie widoczna dla bieżącego snapshotu: "txId:id:n" – ostatnie zdarzenie z transakcji starszych
+     * niż xmin (ten zbiór już się nie zmieni) i liczba widocznych zdarzeń z nowszych transakcji. Każde nowo zatwierdzone
+     * zdarzenie zmienia wynik, również gdy starsza transakcja zatwierdzi się później niż nowsza.
+     */
+    @Query(value = """
+           with horizon as (select pg_snapshot_xmin(pg_current_snapshot())::text::bigint as xmin)
+           select coalesce((select e.tx_id || ':' || e.id from outbox_events e, horizon h
+                            where e.tx_id < h.xmin
+                            order by e.tx_id desc, e.id desc
+                            limit 1), '0:0')
+                  || ':' || (select count(*) from outbox_events e, horizon h where e.tx_id >= h.xmin)
+           """, nativeQuery = true)
+    String findChangePosition();
+
+    /** Ostatnie zdarzenie z zakończonych transakcji (punkt startowy konsumenta ulotnego) albo null. */
+    @Query(value = """
+           select * from outbox_events
+           where tx_id < pg_snapshot_xmin(pg_current_snapshot())::text::bigint
+           order by tx_id desc, id desc
+           limit 1
+           """, nativeQuery = true)
+    OutboxEvent findLastCommitted();
+
+    /** Usuwa zdarzenia zapisane przed podaną chwilą. */
+    @Modifying
+    @Query(value = "delete from outbox_events where created_at < :before", nativeQuery = true)
+    int deleteCreatedBefore(@Param("before") OffsetDateTime before);
+}
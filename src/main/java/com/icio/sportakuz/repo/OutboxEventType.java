@@ -0,0 +1,29 @@
+package com.icio.sportakuz.repo;
+
+/**
+ * Rodzaj zdarzenia zapisywanego w outboxie (tabela outbox_events).
+ * BOOKING_CREATED - nowa rezerwacja zajmująca miejsce (REQUESTED)
+ * BOOKING_WAITLISTED - nowy wpis na liście oczekujących
+ * BOOKING_PROMOTED - awans z listy oczekujących na zwolnione miejsce
+ * BOOKING_CANCELLED - anulowanie rezerwacji lub wpisu na liście (detail = status sprzed anulowania)
+ * BOOKING_CANCELLED_BY_ACTIVITY - anulowanie rezerwacji z powodu odwołania / usunięcia zajęć
+ *                                 (detail = lokalny czas rozpoczęcia zajęć "yyyy-MM-dd HH:mm")
+ * ACTIVITY_CREATED / ACTIVITY_UPDATED / ACTIVITY_DELETED - zmiany wystąpień zajęć w grafiku
+ * ACTIVITY_STATUS_CHANGED - zmiana statusu wystąpienia (detail = nowy status)
+ * ROOM_UPDATED / ACTIVITY_TYPE_UPDATED / INSTRUCTOR_UPDATED - zmiana danych słownikowych widocznych w grafiku
+ *                                 (detail = ID zmienionej sali / typu / instruktora)
+ */
+public enum OutboxEventType {
+    BOOKING_CREATED,
+    BOOKING_WAITLISTED,
+    BOOKING_PROMOTED,
+    BOOKING_CANCELLED,
+    BOOKING_CANCELLED_BY_ACTIVITY,
+    ACTIVITY_CREATED,
+    ACTIVITY_UPDATED,
+    ACTIVITY_STATUS_CHANGED,
+    ACTIVITY_DELETED,
+    ROOM_UPDATED,
+    ACTIVITY_TYPE_UPDATED,
+    INSTRUCTOR_UPDATED
+}
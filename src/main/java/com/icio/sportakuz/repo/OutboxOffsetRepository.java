@@ -0,0 +1,29 @@
+package com.icio.sportakuz.repo;
+
+import com.icio.sportakuz.entity.OutboxOffset;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+/**
+ * Repozytorium pozycji trwałych konsumentów outboxu {@link OutboxOffset}.
+ */
+public interface OutboxOffsetRepository extends JpaRepository<OutboxOffset, String> {
+
+    /** Zakłada pozycję konsumenta (od początku outboxu), jeśli jeszcze nie istnieje. */
+    @Modifying
+    @Query(value = """
+           insert into outbox_offsets (consumer, tx_id, event_id, updated_at)
+           values (:consumer, 0, 0, now())
+           on conflict (consumer) do nothing
+           """, nativeQuery = true)
+    int register(@Param("consumer") String consumer);
+
+    /**
+     * Blokuje pozycję konsumenta do końca transakcji.
+     * SKIP LOCKED – gdy partię dostarcza już inny kontekst / instancja, zwraca null zamiast czekać.
+     */
+    @Query(value = "select * from outbox_offsets where consumer = :consumer for update skip locked", nativeQuery = true)
+    OutboxOffset lockForDelivery(@Param("consumer") String consumer);
+}
@@ -12,4 +12,7 @@ import java.util.Optional;
 public interface RoomRepository extends JpaRepository<Room, Long> {
     /** Wyszukuje salę po jej nazwie. */
     Optional<Room> findByName(String name);
+
+    /** Wyszukuje salę po tokenie subskrypcji planu sali (.ics). */
+    Optional<Room> findByCalendarToken(String calendarToken);
 }
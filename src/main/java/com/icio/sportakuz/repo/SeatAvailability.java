@@ -0,0 +1,11 @@
+package com.icio.sportakuz.repo;
+
+/**
+ * Bieżąca dostępność miejsc na zajęciach – zmiana wysyłana subskrybentom strumienia /api/calendar/stream.
+ * @param activityId ID wystąpienia zajęć
+ * @param reserved liczba rezerwacji zajmujących miejsce (REQUESTED/CONFIRMED/PAID)
+ * @param waitlisted liczba osób na liście oczekujących
+ * @param capacity pojemność zajęć
+ */
+public record SeatAvailability(Long activityId, long reserved, long waitlisted, int capacity) {
+}
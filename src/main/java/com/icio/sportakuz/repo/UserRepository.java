@@ -22,5 +22,8 @@ public interface UserRepository extends JpaRepository<User, Long> {
     // Możemy dodać też sprawdzanie czy email już istnieje (np. przy rejestracji)
     boolean existsByEmail(String email);
 
+    // Subskrypcja kalendarza (.ics) – użytkownik po tokenie z adresu
+    Optional<User> findByCalendarToken(String calendarToken);
+
 
 }
\ No newline at end of file
@@ -0,0 +1,47 @@
+package com.icio.sportakuz.service.booking;
+
+import com.icio.sportakuz.repo.ActivityRepository;
+import com.icio.sportakuz.repo.BookingRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Zbiorcze anulowanie rezerwacji odwołanych lub usuwanych zajęć: jeden UPDATE rezerwacji (razem z zapisem zdarzeń
+ * BOOKING_CANCELLED_BY_ACTIVITY do outboxu) i jeden UPDATE licznika miejsc – niezależnie od liczby uczestników.
+ * Powiadomienia wysyła asynchronicznie, partiami, konsument outboxu ({@code CancellationNotifier}).
+ */
+@Component
+public class ActivityBookingCanceller {
+
+    private static final Logger log = LoggerFactory.getLogger(ActivityBookingCanceller.class);
+
+    private final BookingRepository bookingRepository;
+    private final ActivityRepository activityRepository;
+    private final SeatLedger seatLedger;
+
+    public ActivityBookingCanceller(BookingRepository bookingRepository,
+                                    ActivityRepository activityRepository,
+                                    SeatLedger seatLedger) {
+        this.bookingRepository = bookingRepository;
+        this.activityRepository = activityRepository;
+        this.seatLedger = seatLedger;
+    }
+
+    /**
+     * Anuluje wszystkie aktywne rezerwacje i wpisy na liście oczekujących danego wystąpienia zajęć
+     * (w bieżącej transakcji, jeśli taka trwa).
+     * @return liczba anulowanych rezerwacji
+     */
+    @Transactional
+    public int cancelAll(Long activityId) {
+        int cancelled = bookingRepository.cancelAllLiveForActivity(activityId);
+        if (cancelled > 0) {
+            activityRepository.resetReservedCount(activityId);
+            log.info("[CANCEL] Anulowano {} rezerwacji zajęć {}", cancelled, activityId);
+        }
+        seatLedger.evict(activityId);
+        return cancelled;
+    }
+}
@@ -0,0 +1,58 @@
+package com.icio.sportakuz.service.booking;
+
+import com.icio.sportakuz.repo.BookingArchiveRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+
+/**
+ * Przenosi rezerwacje zakończonych zajęć z tabeli bookings do bookings_archive, aby tabela bookings
+ * (i jej indeksy idx_bookings_class / idx_bookings_status) zawierała tylko bieżące rezerwacje.
+ * Każda partia to osobna, krótka transakcja – archiwizacja nie blokuje długo rezerwacji.
+ */
+@Component
+public class BookingArchiver {
+
+    private static final Logger log = LoggerFactory.getLogger(BookingArchiver.class);
+
+    /** Liczba rezerwacji przenoszonych w jednej transakcji. */
+    private static final int BATCH_SIZE = 1_000;
+    /** Maksymalna liczba partii w jednym przebiegu (reszta w kolejnym). */
+    private static final int MAX_BATCHES_PER_RUN = 50;
+    /** Zajęcia archiwizujemy dopiero dobę po zakończeniu (poprawki liczników, późne potwierdzenia). */
+    private static final Duration RETENTION = Duration.ofDays(1);
+
+    private final BookingArchiveRepository archiveRepository;
+    private final TransactionTemplate tx;
+
+    public BookingArchiver(BookingArchiveRepository archiveRepository, PlatformTransactionManager transactionManager) {
+        this.archiveRepository = archiveRepository;
+        this.tx = new TransactionTemplate(transactionManager);
+    }
+
+    /** Co godzinę przenosi rezerwacje zajęć zakończonych ponad dobę temu. */
+    @Scheduled(fixedDelay = 60 * 60 * 1000, initialDelay = 5 * 60 * 1000)
+    public void archiveFinished() {
+        OffsetDateTime endedBefore = OffsetDateTime.now().minus(RETENTION);
+        int total = 0;
+        for (int i = 0; i < MAX_BATCHES_PER_RUN; i++) {
+            Integer moved = tx.execute(status -> archiveRepository.archiveFinished(endedBefore, BATCH_SIZE));
+            if (moved == null || moved == 0) break;
+            total += moved;
+        }
+        if (total > 0) {
+            log.info("[ARCHIVE] Przeniesiono {} rezerwacji zakończonych zajęć do bookings_archive", total);
+        }
+    }
+
+    /** Archiwizuje wszystkie rezerwacje zajęć przed ich usunięciem (w bieżącej transakcji, jeśli taka trwa). */
+    public int archiveForDeletedActivity(Long activityId) {
+        return tx.execute(status -> archiveRepository.archiveAllForActivity(activityId));
+    }
+}
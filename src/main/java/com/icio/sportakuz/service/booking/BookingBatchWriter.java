@@ -0,0 +1,188 @@
+package com.icio.sportakuz.service.booking;
+
+import com.icio.sportakuz.entity.Booking;
+import com.icio.sportakuz.repo.ActivityRepository;
+import com.icio.sportakuz.repo.BookingRepository;
+import com.icio.sportakuz.repo.BookingStatus;
+import com.icio.sportakuz.repo.OutboxEventType;
+import com.icio.sportakuz.service.outbox.OutboxPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Zbiorczy zapis partii rezerwacji: jeden warunkowy UPDATE reserved_count na zajęcia,
+ * jeden wielowierszowy INSERT rezerwacji, jeden wsadowy zapis zdarzeń do outboxu i jeden commit na partię.
+ * Używany przez {@link ShardedBookingExecutor} oraz alokator trybu rush ({@link RushAdmissionQueue}).
+ */
+@Component
+public class BookingBatchWriter {
+
+    private final BookingRepository bookingRepository;
+    private final ActivityRepository activityRepository;
+    private final SeatLedger seatLedger;
+    private final WaitlistPromoter waitlistPromoter;
+    private final OutboxPublisher outbox;
+    private final JdbcTemplate jdbcTemplate;
+
+    public BookingBatchWriter(BookingRepository bookingRepository,
+                              ActivityRepository activityRepository,
+                              SeatLedger seatLedger,
+                              WaitlistPromoter waitlistPromoter,
+                              OutboxPublisher outbox,
+                              DataSource dataSource) {
+        this.bookingRepository = bookingRepository;
+        this.activityRepository = activityRepository;
+        this.seatLedger = seatLedger;
+        this.waitlistPromoter = waitlistPromoter;
+        this.outbox = outbox;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * Obsługa partii w jednej transakcji: najpierw przydział miejsc w pamięci, potem jeden wielowierszowy INSERT
+     * (duplikaty odrzuca indeks unikalny) i jeden warunkowy UPDATE reserved_count na zajęcia.
+     * Wyniki są w kolejności żądań – przy braku miejsc wcześniejsze żądania dostają miejsca,
+     * późniejsze trafiają na listę oczekujących. Brak miejsc potwierdza baza – wolne miejsca, o których liczniki w pamięci
+     * nie wiedzą, dostają w tej samej transakcji kolejne osoby z listy oczekujących ({@link WaitlistPromoter}).
+     * @throws IllegalStateException gdy reserved_count w bazie nie pozwala zająć miejsc przydzielonych w pamięci
+     *         (transakcja zostaje wycofana, żądania należy ponowić pojedynczo)
+     */
+    @Transactional
+    public List<BookingResult> admit(List<BookingRequest> batch) {
+        BookingResult[] results = new BookingResult[batch.size()];
+        Map<String, Integer> firstInBatch = new HashMap<>();
+        List<Integer> repeated = new ArrayList<>();
+        List<Row> rows = new ArrayList<>();
+        Map<Long, Integer> seatsTaken = new LinkedHashMap<>();
+        Map<Row, Long> waitlisted = new LinkedHashMap<>();
+
+        for (int i = 0; i < batch.size(); i++) {
+            BookingRequest p = batch.get(i);
+            SeatLedger.Seats seats = seatLedger.seats(p.classId());
+            if (seats == null) {
+                results[i] = BookingResult.of(BookingResult.Outcome.NOT_FOUND);
+                continue;
+            }
+            if (seats.cancelled()) {
+                results[i] = BookingResult.of(BookingResult.Outcome.CANCELLED);
+                continue;
+            }
+            if (firstInBatch.putIfAbsent(p.classId() + ":" + p.userName(), i) != null) {
+                repeated.add(i); // to samo żądanie wcześniej w tej partii – wynik ustalany na końcu
+                continue;
+            }
+            int reserved = seatLedger.tryReserve(seats);
+            if (reserved >= 0) {
+                rows.add(new Row(i, p.classId(), p.userName(), seats, BookingStatus.REQUESTED, reserved + "/" + seats.capacity()));
+            } else {
+                rows.add(new Row(i, p.classId(), p.userName(), seats, BookingStatus.WAITLISTED, seats.spots()));
+            }
+        }
+
+        // Duplikaty odrzuca indeks unikalny (ON CONFLICT DO NOTHING) – miejsca zajmujemy tylko dla wstawionych wierszy
+        Map<String, Long> ids = insertAll(rows);
+        List<OutboxPublisher.Change> changes = new ArrayList<>(ids.size());
+        for (Row row : rows) {
+            Long id = ids.get(row.classId + ":" + row.userName);
+            if (id == null) {
+                if (row.status == BookingStatus.REQUESTED) {
+                    seatLedger.reject(row.seats);
+                }
+                results[row.index] = duplicate(row.classId, row.userName, row.spots);
+            } else if (row.status == BookingStatus.REQUESTED) {
+                seatsTaken.merge(row.classId, 1, Integer::sum);
+                results[row.index] = BookingResult.booked(id, row.spots);
+                changes.add(OutboxPublisher.Change.booking(OutboxEventType.BOOKING_CREATED, row.classId, id, row.userName, null));
+            } else {
+                waitlisted.put(row, id); // wynik po potwierdzeniu braku miejsc w bazie
+                changes.add(OutboxPublisher.Change.booking(OutboxEventType.BOOKING_WAITLISTED, row.classId, id, row.userName, null));
+            }
+        }
+        for (Map.Entry<Long, Integer> e : seatsTaken.entrySet()) {
+            if (activityRepository.tryReserveSeats(e.getKey(), e.getValue()) == 0) {
+                // rejestr rozjechał się z bazą – wycofanie partii, żądania zostaną ponowione pojedynczo
+                seatLedger.evict(e.getKey());
+                throw new IllegalStateException("Brak miejsc w bazie dla zajęć " + e.getKey());
+            }
+        }
+        outbox.publishAll(changes);
+
+        Set<Long> promoted = new HashSet<>();
+        for (Long classId : new LinkedHashSet<>(waitlisted.keySet().stream().map(Row::classId).toList())) {
+            if (waitlistPromoter.promote(classId) > 0) {
+                promoted.add(classId);
+            }
+        }
+        for (Map.Entry<Row, Long> e : waitlisted.entrySet()) {
+            Row row = e.getKey();
+            Long id = e.getValue();
+            results[row.index] = promoted.contains(row.classId) && bookingRepository.findStatusById(id) != BookingStatus.WAITLISTED
+                    ? BookingResult.booked(id, activityRepository.findSpots(row.classId))
+                    : BookingResult.waitlisted(id, bookingRepository.waitlistPosition(row.classId, id), row.spots);
+        }
+
+        for (int i : repeated) {
+            BookingRequest p = batch.get(i);
+            BookingResult first = results[firstInBatch.get(p.classId() + ":" + p.userName())];
+            results[i] = first.outcome() == BookingResult.Outcome.WAITLISTED
+                    ? first
+                    : BookingResult.of(BookingResult.Outcome.DUPLICATE);
+        }
+        return Arrays.asList(results);
+    }
+
+    /** Użytkownik ma już rezerwację – jeśli czeka na liście, zwracamy jego pozycję. */
+    private BookingResult duplicate(Long classId, String userName, String spots) {
+        Booking existing = bookingRepository.findFirstByActivity_IdAndUserNameAndStatusIn(
+                classId, userName, BookingStatus.LIVE);
+        if (existing != null && existing.getStatus() == BookingStatus.WAITLISTED) {
+            long position = bookingRepository.waitlistPosition(classId, existing.getId());
+            return BookingResult.waitlisted(existing.getId(), position, spots);
+        }
+        return BookingResult.of(BookingResult.Outcome.DUPLICATE);
+    }
+
+    /**
+     * Jeden wielowierszowy INSERT ... ON CONFLICT DO NOTHING RETURNING;
+     * zwraca ID wstawionych rezerwacji wg klucza "classId:userName" (bez duplikatów odrzuconych przez indeks).
+     */
+    private Map<String, Long> insertAll(List<Row> rows) {
+        Map<String, Long> ids = new HashMap<>();
+        if (rows.isEmpty()) {
+            return ids;
+        }
+        StringBuilder sql = new StringBuilder("insert into bookings (class_id, user_name, status, created_at) values ");
+        List<Object> args = new ArrayList<>(rows.size() * 3);
+        for (int i = 0; i < rows.size(); i++) {
+            Row row = rows.get(i);
+            sql.append(i == 0 ? "" : ", ").append("(?, ?, ?, now())");
+            args.add(row.classId);
+            args.add(row.userName);
+            args.add(row.status.name());
+        }
+        sql.append(" on conflict (class_id, user_name) where status in ('REQUESTED', 'CONFIRMED', 'PAID', 'WAITLISTED')")
+                .append(" do nothing returning id, class_id, user_name");
+        jdbcTemplate.query(sql.toString(),
+                rs -> { ids.put(rs.getLong("class_id") + ":" + rs.getString("user_name"), rs.getLong("id")); },
+                args.toArray());
+        return ids;
+    }
+
+    /** Rezerwacja do wstawienia; index – pozycja żądania w partii. */
+    private record Row(int index, Long classId, String userName, SeatLedger.Seats seats, BookingStatus status, String spots) {}
+
+    /** Pojedyncze żądanie rezerwacji w partii. */
+    public record BookingRequest(Long classId, String userName) {}
+}
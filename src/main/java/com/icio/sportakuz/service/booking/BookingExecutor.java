@@ -0,0 +1,30 @@
+package com.icio.sportakuz.service.booking;
+
+import java.util.List;
+
+/**
+ * Sposób wykonania rezerwacji wywoływany przez BookingApiController.create.
+ * Implementacje: {@link DirectBookingExecutor} (domyślna, w wątku żądania)
+ * oraz {@link ShardedBookingExecutor} (jednowątkowe shardy per zajęcia, zapis partiami).
+ * Wybór przez właściwość systemową {@code sportakuz.booking.mode} (direct | sharded).
+ */
+public interface BookingExecutor {
+
+    /** Tworzy rezerwację (lub wpis na liście oczekujących) użytkownika na wskazane zajęcia. */
+    BookingResult create(Long classId, String userName);
+
+    /** Statystyki shardów (głębokość kolejki, rozmiar partii); pusta lista dla wykonania bezpośredniego. */
+    default List<ShardStats> shardStats() {
+        return List.of();
+    }
+
+    /**
+     * Stan pojedynczego sharda.
+     * @param queueDepth liczba żądań oczekujących w kolejce
+     * @param lastBatchSize rozmiar ostatnio przetworzonej partii
+     * @param maxBatchSize największa dotąd partia
+     * @param batches liczba przetworzonych partii (transakcji)
+     * @param processed liczba przetworzonych żądań
+     */
+    record ShardStats(int index, int queueDepth, int lastBatchSize, int maxBatchSize, long batches, long processed) {}
+}
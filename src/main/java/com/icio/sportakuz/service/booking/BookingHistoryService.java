@@ -0,0 +1,135 @@
+package com.icio.sportakuz.service.booking;
+
+import com.icio.sportakuz.dto.booking.BookingHistoryDto;
+import com.icio.sportakuz.repo.BookingArchiveRepository;
+import com.icio.sportakuz.repo.BookingHistoryRow;
+import com.icio.sportakuz.repo.BookingRepository;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Historia rezerwacji użytkownika (zakończone zajęcia) stronicowana po kluczu (startTime, id) malejąco.
+ * Strona to scalenie dwóch zapytań – z tabeli bookings (zajęcia z ostatniej doby) i z bookings_archive –
+ * każde ograniczone do rozmiaru strony i zaczynające od kursora, więc kolejne strony kosztują tyle samo co pierwsza,
+ * niezależnie od liczby rezerwacji w historii.
+ */
+@Service
+public class BookingHistoryService {
+
+    /** Domyślny i maksymalny rozmiar strony. */
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private static final Comparator<BookingHistoryRow> NEWEST_FIRST =
+            Comparator.comparing(BookingHistoryRow::startTime).thenComparing(BookingHistoryRow::id).reversed();
+
+    private final BookingRepository bookingRepository;
+    private final BookingArchiveRepository archiveRepository;
+    private final ZoneId zone = ZoneId.of("Europe/Warsaw");
+
+    public BookingHistoryService(BookingRepository bookingRepository, BookingArchiveRepository archiveRepository) {
+        this.bookingRepository = bookingRepository;
+        this.archiveRepository = archiveRepository;
+    }
+
+    /**
+     * Strona historii rezerwacji użytkownika.
+     * @param after kursor z poprzedniej strony ({@link Page#next()}) albo null dla pierwszej strony
+     * @param size rozmiar strony (przycinany do [1, {@value #MAX_PAGE_SIZE}])
+     * @throws IllegalArgumentException gdy kursor jest niepoprawny
+     */
+    @Transactional(readOnly = true)
+    public Page page(String userName, String after, int size) {
+        Cursor cursor = after == null || after.isBlank() ? Cursor.FIRST : Cursor.decode(after);
+        int limit = Math.clamp(size, 1, MAX_PAGE_SIZE);
+        // o jeden wiersz więcej – wiadomo wtedy, czy istnieje następna strona
+        Pageable window = Pageable.ofSize(limit + 1);
+
+        OffsetDateTime now = OffsetDateTime.now();
+        List<BookingHistoryRow> rows = new ArrayList<>(bookingRepository.findHistoryBefore(
+                userName, now, cursor.startTime(), cursor.id(), window));
+        rows.addAll(archiveRepository.findHistoryBefore(userName, now, cursor.startTime(), cursor.id(), window));
+        rows.sort(NEWEST_FIRST);
+
+        // rezerwacja przeniesiona do archiwum między zapytaniami mogłaby pojawić się dwa razy
+        Set<Long> seen = new HashSet<>();
+        List<BookingHistoryRow> page = new ArrayList<>(limit);
+        boolean more = false;
+        for (BookingHistoryRow row : rows) {
+            if (!seen.add(row.id())) continue;
+            if (page.size() == limit) {
+                more = true;
+                break;
+            }
+            page.add(row);
+        }
+        String next = more ? Cursor.of(page.get(page.size() - 1)).encode() : null;
+        return new Page(page.stream().map(this::toDto).toList(), next);
+    }
+
+    private BookingHistoryDto toDto(BookingHistoryRow r) {
+        var start = r.startTime().atZoneSameInstant(zone);
+        Integer duration = r.endTime() != null ? (int) Duration.between(r.startTime(), r.endTime()).toMinutes() : null;
+        String instructor = r.instructorLastName() != null ? r.instructorFirstName() + " " + r.instructorLastName() : null;
+        return new BookingHistoryDto(
+                r.id(),
+                r.typeName(),
+                instructor,
+                start.toLocalDate().format(DateTimeFormatter.ISO_LOCAL_DATE),
+                start.toLocalTime().format(DateTimeFormatter.ofPattern("HH:mm")),
+                duration,
+                r.roomName(),
+                r.status().name());
+    }
+
+    /**
+     * Strona historii.
+     * @param next kursor następnej strony (null, gdy to ostatnia strona)
+     */
+    public record Page(List<BookingHistoryDto> items, String next) {}
+
+    /**
+     * Pozycja w historii: ostatnia pokazana rezerwacja (czas rozpoczęcia zajęć, ID).
+     * Postać tekstowa: sekundy epoki, nanosekundy i ID w systemie 36, rozdzielone kropkami.
+     */
+    record Cursor(OffsetDateTime startTime, long id) {
+        /** Kursor pierwszej strony – później niż jakiekolwiek zajęcia. */
+        static final Cursor FIRST = new Cursor(OffsetDateTime.of(9999, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC), Long.MAX_VALUE);
+
+        static Cursor of(BookingHistoryRow row) {
+            return new Cursor(row.startTime(), row.id());
+        }
+
+        String encode() {
+            Instant instant = startTime.toInstant();
+            return Long.toString(instant.getEpochSecond(), 36) + "." + Integer.toString(instant.getNano(), 36)
+                    + "." + Long.toString(id, 36);
+        }
+
+        static Cursor decode(String value) {
+            String[] parts = value.split("\\.");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Niepoprawny kursor: " + value);
+            }
+            try {
+                Instant instant = Instant.ofEpochSecond(Long.parseLong(parts[0], 36), Integer.parseInt(parts[1], 36));
+                return new Cursor(instant.atOffset(ZoneOffset.UTC), Long.parseLong(parts[2], 36));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Niepoprawny kursor: " + value, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.icio.sportakuz.service.booking;
+
+/**
+ * Wynik próby utworzenia rezerwacji, niezależny od sposobu jej wykonania ({@link BookingExecutor}).
+ * @param outcome rodzaj wyniku
+ * @param bookingId ID utworzonej (lub istniejącej, oczekującej) rezerwacji
+ * @param spots miejsca zajęte/pojemność
+ * @param position pozycja na liście oczekujących (tylko dla WAITLISTED)
+ */
+public record BookingResult(Outcome outcome, Long bookingId, String spots, Long position) {
+
+    public enum Outcome {
+        /** Miejsce przydzielone – rezerwacja REQUESTED. */
+        BOOKED,
+        /** Brak miejsc – rezerwacja na liście oczekujących. */
+        WAITLISTED,
+        NOT_FOUND,
+        CANCELLED,
+        /** Użytkownik ma już aktywną rezerwację na te zajęcia. */
+        DUPLICATE,
+        /** Żądanie nie zostało przetworzone w czasie i wycofano je – nic nie zapisano, można ponowić. */
+        BUSY,
+        /** Brak wyniku w czasie, a żądanie było już zapisywane – rezerwacja mogła powstać. */
+        UNKNOWN
+    }
+
+    public static BookingResult booked(Long bookingId, String spots) {
+        return new BookingResult(Outcome.BOOKED, bookingId, spots, null);
+    }
+
+    public static BookingResult waitlisted(Long bookingId, long position, String spots) {
+        return new BookingResult(Outcome.WAITLISTED, bookingId, spots, position);
+    }
+
+    public static BookingResult of(Outcome outcome) {
+        return new BookingResult(outcome, null, null, null);
+    }
+}
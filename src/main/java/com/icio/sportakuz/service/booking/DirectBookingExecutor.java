@@ -0,0 +1,113 @@
+package com.icio.sportakuz.service.booking;
+
+import com.icio.sportakuz.entity.Booking;
+import com.icio.sportakuz.repo.ActivityRepository;
+import com.icio.sportakuz.repo.BookingRepository;
+import com.icio.sportakuz.repo.BookingStatus;
+import com.icio.sportakuz.repo.OutboxEventType;
+import com.icio.sportakuz.service.outbox.OutboxPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+
+import java.util.List;
+
+/**
+ * Domyślny sposób rezerwacji – w wątku żądania, jedna transakcja na rezerwację.
+ * Miejsce jest przydzielane w pamięci ({@link SeatLedger}) zanim wykonane zostanie jakiekolwiek zapytanie,
+ * a następnie potwierdzane warunkowym UPDATE kolumny reserved_count.
+ * Gdy brak wolnych miejsc, rezerwacja trafia na listę oczekujących (WAITLISTED), a brak miejsc potwierdza baza:
+ * jeśli liczniki w pamięci były nieaktualne (np. pojemność zwiększona na innym serwerze), wolne miejsca w tej samej
+ * transakcji dostają najpierw osoby z listy ({@link WaitlistPromoter}), a dopiero potem ta rezerwacja.
+ * Wiersz zajęć jest zawsze blokowany (UPDATE reserved_count) przed wstawieniem rezerwacji – inna kolejność
+ * zakleszczałaby się z równoległą rezerwacją tego samego użytkownika na indeksie unikalnym.
+ * Duplikat rezerwacji użytkownika odrzuca indeks unikalny w bazie (INSERT ... ON CONFLICT DO NOTHING).
+ */
+@Service
+public class DirectBookingExecutor implements BookingExecutor {
+
+    private final BookingRepository bookingRepository;
+    private final ActivityRepository activityRepository;
+    private final SeatLedger seatLedger;
+    private final WaitlistPromoter waitlistPromoter;
+    private final OutboxPublisher outbox;
+
+    public DirectBookingExecutor(BookingRepository bookingRepository,
+                                 ActivityRepository activityRepository,
+                                 SeatLedger seatLedger,
+                                 WaitlistPromoter waitlistPromoter,
+                                 OutboxPublisher outbox) {
+        this.bookingRepository = bookingRepository;
+        this.activityRepository = activityRepository;
+        this.seatLedger = seatLedger;
+        this.waitlistPromoter = waitlistPromoter;
+        this.outbox = outbox;
+    }
+
+    @Override
+    @Transactional
+    public BookingResult create(Long classId, String userName) {
+        SeatLedger.Seats seats = seatLedger.seats(classId);
+        if (seats == null) {
+            return BookingResult.of(BookingResult.Outcome.NOT_FOUND);
+        }
+        if (seats.cancelled()) {
+            return BookingResult.of(BookingResult.Outcome.CANCELLED);
+        }
+        int reserved = seatLedger.tryReserve(seats);
+        boolean claimed = false; // miejsce zajęte w bazie mimo braku miejsc w pamięci
+        // Ostateczna decyzja w bazie: warunkowy UPDATE reserved_count (bez SELECT ... FOR UPDATE i COUNT(*))
+        if (reserved >= 0 && activityRepository.tryReserveSeat(classId) == 0) {
+            seatLedger.reject(seats);
+            seatLedger.evict(classId); // rejestr rozjechał się z bazą – wczytujemy go ponownie
+            seats = seatLedger.seats(classId);
+            if (seats == null || seats.cancelled()) {
+                return BookingResult.of(BookingResult.Outcome.CANCELLED);
+            }
+            reserved = -1;
+        } else if (reserved < 0) {
+            claimed = claimFreedSeat(classId);
+        }
+        // Duplikat wykrywa indeks unikalny – bez osobnego zapytania; wycofanie transakcji zwraca miejsce do puli
+        BookingStatus status = reserved < 0 && !claimed ? BookingStatus.WAITLISTED : BookingStatus.REQUESTED;
+        Long bookingId = bookingRepository.insertUnlessLive(classId, userName, status.name());
+        if (bookingId == null) {
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            return duplicate(classId, userName, seats);
+        }
+        outbox.publish(OutboxPublisher.Change.booking(status == BookingStatus.WAITLISTED
+                ? OutboxEventType.BOOKING_WAITLISTED : OutboxEventType.BOOKING_CREATED, classId, bookingId, userName, null));
+        if (status == BookingStatus.WAITLISTED) {
+            long position = bookingRepository.waitlistPosition(classId, bookingId);
+            return BookingResult.waitlisted(bookingId, position, seats.spots());
+        }
+        return BookingResult.booked(bookingId, claimed
+                ? activityRepository.findSpots(classId)
+                : reserved + "/" + seats.capacity());
+    }
+
+    /**
+     * Zajęcia pełne według liczników w pamięci – sprawdzenie w bazie. Wolne miejsca dostają najpierw kolejne osoby
+     * z listy oczekujących, a jeśli po nich coś zostało, ta rezerwacja (warunkowy UPDATE reserved_count).
+     * @return czy ta rezerwacja zajęła miejsce (liczniki w pamięci są wtedy wczytywane ponownie po commicie)
+     */
+    private boolean claimFreedSeat(Long classId) {
+        waitlistPromoter.promote(classId);
+        if (activityRepository.tryReserveSeat(classId) == 0) {
+            return false;
+        }
+        seatLedger.evictAll(List.of(classId));
+        return true;
+    }
+
+    /** Wynik dla użytkownika, który ma już rezerwację – jeśli czeka na liście, zwracamy jego pozycję. */
+    private BookingResult duplicate(Long classId, String userName, SeatLedger.Seats seats) {
+        Booking existing = bookingRepository.findFirstByActivity_IdAndUserNameAndStatusIn(
+                classId, userName, BookingStatus.LIVE);
+        if (existing != null && existing.getStatus() == BookingStatus.WAITLISTED) {
+            long position = bookingRepository.waitlistPosition(classId, existing.getId());
+            return BookingResult.waitlisted(existing.getId(), position, seats.spots());
+        }
+        return BookingResult.of(BookingResult.Outcome.DUPLICATE);
+    }
+}
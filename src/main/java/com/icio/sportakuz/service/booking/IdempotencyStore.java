@@ -0,0 +1,132 @@
+package com.icio.sportakuz.service.booking;
+
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Ograniczony (LRU) magazyn odpowiedzi dla nagłówka Idempotency-Key z czasem życia wpisu (TTL).
+ * Pierwsze żądanie z danym kluczem "przejmuje" wpis i po zakończeniu zapisuje w nim odpowiedź;
+ * powtórzenia dostają tę samą odpowiedź (lub czekają na nią, jeśli pierwsze żądanie jeszcze trwa).
+ */
+@Component
+public class IdempotencyStore {
+
+    /** Domyślna maksymalna liczba pamiętanych kluczy. */
+    private static final int DEFAULT_MAX_ENTRIES = 10_000;
+    /** Domyślny czas życia wpisu. */
+    private static final Duration DEFAULT_TTL = Duration.ofHours(1);
+
+    private final int maxEntries;
+    private final Duration ttl;
+    private final Clock clock;
+    private final LinkedHashMap<String, Entry> entries;
+
+    public IdempotencyStore() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL, Clock.systemUTC());
+    }
+
+    IdempotencyStore(int maxEntries, Duration ttl, Clock clock) {
+        this.maxEntries = maxEntries;
+        this.ttl = ttl;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > IdempotencyStore.this.maxEntries) {
+                    evictFinished();
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Rozpoczyna obsługę klucza.
+     * @return wpis klucza – jeśli {@link Claim#owner()}, wywołujący przejął klucz i musi potem wywołać
+     *         {@link #complete} albo {@link #abandon} z tym wpisem; w przeciwnym razie {@link Claim#response()}
+     *         to przyszła (lub gotowa) odpowiedź pierwszego żądania
+     */
+    public synchronized Claim begin(String key) {
+        Instant now = clock.instant();
+        Entry existing = entries.get(key);
+        if (existing != null && existing.expiresAt.isAfter(now)) {
+            return new Claim(key, existing, false);
+        }
+        Entry entry = new Entry(new CompletableFuture<>(), now.plus(ttl));
+        entries.put(key, entry);
+        return new Claim(key, entry, true);
+    }
+
+    /**
+     * Zapisuje odpowiedź w przejętym wpisie i budzi oczekujące powtórzenia. Działa na wpisie z {@link #begin},
+     * nie na kluczu – po wygaśnięciu wpisu klucz mogło już przejąć inne żądanie.
+     */
+    public void complete(Claim claim, StoredResponse response) {
+        claim.entry.response.complete(response);
+    }
+
+    /** Zwalnia przejęty klucz bez zapisywania odpowiedzi (np. błąd serwera) – kolejne powtórzenie wykona się od nowa. */
+    public void abandon(Claim claim) {
+        synchronized (this) {
+            entries.remove(claim.key, claim.entry); // tylko własny wpis, nie następcy po wygaśnięciu
+        }
+        claim.entry.response.complete(null);
+    }
+
+    /** Liczba pamiętanych kluczy (również wygasłych, jeszcze nieusuniętych). */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Usuwa najdawniej używany wpis z gotową odpowiedzią (lub wygasły). Wpisy żądań w toku zostają – inaczej
+     * oczekujące powtórzenia nie dostałyby odpowiedzi, a kolejne wykonałoby żądanie drugi raz; liczba kluczy może
+     * wtedy chwilowo przekroczyć limit o liczbę równoległych żądań.
+     */
+    private void evictFinished() {
+        Instant now = clock.instant();
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.response.isDone() || !entry.expiresAt.isAfter(now)) {
+                it.remove();
+                return;
+            }
+        }
+    }
+
+    /** Wpis klucza zwrócony przez {@link #begin}. */
+    public static final class Claim {
+        private final String key;
+        private final Entry entry;
+        private final boolean owner;
+
+        private Claim(String key, Entry entry, boolean owner) {
+            this.key = key;
+            this.entry = entry;
+            this.owner = owner;
+        }
+
+        /** Czy wywołujący przejął klucz (wykonuje żądanie). */
+        public boolean owner() {
+            return owner;
+        }
+
+        /** Odpowiedź pierwszego żądania (null, gdy zostało porzucone). */
+        public CompletableFuture<StoredResponse> response() {
+            return entry.response;
+        }
+    }
+
+    /** Zapamiętana odpowiedź HTTP. */
+    public record StoredResponse(int status, String contentType, byte[] body) {}
+
+    private record Entry(CompletableFuture<StoredResponse> response, Instant expiresAt) {}
+}
@@ -0,0 +1,56 @@
+package com.icio.sportakuz.service.booking;
+
+import com.icio.sportakuz.repo.ActivityRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/**
+ * Okresowo naprawia rozbieżności pomiędzy activities.reserved_count a liczbą aktywnych rezerwacji w tabeli bookings.
+ * Każde zajęcia są przeliczane w osobnej, krótkiej transakcji po zablokowaniu ich wiersza – dzięki temu
+ * równoległa rezerwacja (która też blokuje ten wiersz warunkowym UPDATE) nie zostanie nadpisana starym wynikiem.
+ * Miejsca zwolnione przez przeliczenie dostaje w tej samej transakcji lista oczekujących ({@link WaitlistPromoter}).
+ */
+@Component
+public class ReservedCountReconciler {
+
+    private static final Logger log = LoggerFactory.getLogger(ReservedCountReconciler.class);
+
+    private final ActivityRepository activityRepository;
+    private final SeatLedger seatLedger;
+    private final WaitlistPromoter waitlistPromoter;
+    private final TransactionTemplate tx;
+
+    public ReservedCountReconciler(ActivityRepository activityRepository,
+                                   SeatLedger seatLedger,
+                                   WaitlistPromoter waitlistPromoter,
+                                   PlatformTransactionManager transactionManager) {
+        this.activityRepository = activityRepository;
+        this.seatLedger = seatLedger;
+        this.waitlistPromoter = waitlistPromoter;
+        this.tx = new TransactionTemplate(transactionManager);
+    }
+
+    /** Co 10 minut sprawdza zajęcia zakończone najwyżej dobę temu oraz przyszłe. */
+    @Scheduled(fixedDelay = 10 * 60 * 1000, initialDelay = 60 * 1000)
+    public void reconcile() {
+        List<Long> drifted = activityRepository.findReservedCountDrift(OffsetDateTime.now().minusDays(1));
+        for (Long id : drifted) {
+            tx.executeWithoutResult(status -> {
+                activityRepository.findByIdForUpdate(id);
+                activityRepository.recountReservedSeats(id);
+                waitlistPromoter.promote(id); // licznik w dół zwolnił miejsca – najpierw dla listy oczekujących
+            });
+            seatLedger.evict(id);
+        }
+        if (!drifted.isEmpty()) {
+            log.warn("[RESERVED_COUNT] Naprawiono liczniki rezerwacji dla {} zajęć: {}", drifted.size(), drifted);
+        }
+    }
+}
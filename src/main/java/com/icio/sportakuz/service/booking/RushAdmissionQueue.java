@@ -0,0 +1,181 @@
+package com.icio.sportakuz.service.booking;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tryb "rush" dla zajęć właśnie otwartych do zapisów (PLANNED -> OPEN), gdy setki osób rezerwują naraz.
+ * W oknie rush żądanie rezerwacji nie czeka na bazę – od razu dostaje bilet z numerem kolejnym,
+ * a alokator w tle przydziela miejsca partiami ({@link BookingBatchWriter}) w kolejności biletów.
+ * Wynik klient odczytuje z lekkiego endpointu statusu biletu. Wątki serwletów i połączenia z bazą
+ * nie są blokowane w czasie szczytu, a kolejność przydziału jest sprawiedliwa (kto pierwszy, ten lepszy).
+ */
+@Component
+public class RushAdmissionQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(RushAdmissionQueue.class);
+
+    /** Jak długo po otwarciu zapisów działa tryb rush. */
+    private static final Duration RUSH_WINDOW = Duration.ofMinutes(2);
+    /** Jak długo pamiętany jest rozstrzygnięty bilet. */
+    private static final Duration TICKET_TTL = Duration.ofMinutes(15);
+    /** Maksymalna liczba biletów przydzielanych w jednej transakcji. */
+    private static final int MAX_ALLOCATION_BATCH = 500;
+
+    private final BookingBatchWriter batchWriter;
+    private final BookingExecutor fallback;
+    private final Clock clock = Clock.systemUTC();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<Long, Instant> rushUntil = new ConcurrentHashMap<>();
+    private final Map<Long, PriorityBlockingQueue<Ticket>> pending = new ConcurrentHashMap<>();
+    private final Map<String, Ticket> tickets = new ConcurrentHashMap<>();
+    /** Oczekujący bilet wg "classId:userName" – ponowne kliknięcie zwraca ten sam bilet. */
+    private final Map<String, Ticket> pendingByUser = new ConcurrentHashMap<>();
+
+    public RushAdmissionQueue(BookingBatchWriter batchWriter,
+                              @Qualifier("directBookingExecutor") BookingExecutor fallback) {
+        this.batchWriter = batchWriter;
+        this.fallback = fallback;
+    }
+
+    /** Włącza tryb rush dla zajęć (wywoływane przy otwarciu zapisów). */
+    public void open(Long activityId) {
+        rushUntil.put(activityId, clock.instant().plus(RUSH_WINDOW));
+    }
+
+    /** Czy rezerwacje na te zajęcia obsługiwane są przez kolejkę biletów. */
+    public boolean isRush(Long activityId) {
+        Instant until = rushUntil.get(activityId);
+        return until != null && until.isAfter(clock.instant());
+    }
+
+    /** Wydaje bilet (albo zwraca już oczekujący bilet tego użytkownika na te zajęcia). */
+    public Ticket issue(Long classId, String userName) {
+        return pendingByUser.computeIfAbsent(classId + ":" + userName, key -> {
+            Ticket ticket = new Ticket(UUID.randomUUID().toString(), classId, userName,
+                    clock.instant(), sequence.incrementAndGet());
+            tickets.put(ticket.id(), ticket);
+            // dodanie pod blokadą klucza – cleanup nie usunie w tym czasie pustej kolejki tych zajęć
+            pending.compute(classId, (id, queue) -> {
+                PriorityBlockingQueue<Ticket> q = queue != null
+                        ? queue : new PriorityBlockingQueue<>(64, Comparator.comparingLong(Ticket::sequence));
+                q.add(ticket);
+                return q;
+            });
+            return ticket;
+        });
+    }
+
+    /** Bilet o podanym ID lub null. */
+    public Ticket ticket(String ticketId) {
+        return ticketId == null ? null : tickets.get(ticketId);
+    }
+
+    /** Liczba biletów na te same zajęcia wydanych wcześniej i jeszcze nieprzydzielonych. */
+    public long ahead(Ticket ticket) {
+        PriorityBlockingQueue<Ticket> queue = pending.get(ticket.classId());
+        if (queue == null || ticket.isResolved()) return 0;
+        return queue.stream().filter(t -> t.sequence() < ticket.sequence()).count();
+    }
+
+    /** Przydziela miejsca oczekującym biletom – partiami, w kolejności wydania biletów. */
+    @Scheduled(fixedDelay = 200)
+    public void allocate() {
+        for (PriorityBlockingQueue<Ticket> queue : pending.values()) {
+            List<Ticket> batch = new ArrayList<>();
+            Ticket next;
+            while (batch.size() < MAX_ALLOCATION_BATCH && (next = queue.poll()) != null) {
+                batch.add(next);
+            }
+            if (!batch.isEmpty()) {
+                allocate(batch);
+            }
+        }
+        cleanup();
+    }
+
+    private void allocate(List<Ticket> batch) {
+        try {
+            List<BookingResult> results = batchWriter.admit(batch.stream()
+                    .map(t -> new BookingBatchWriter.BookingRequest(t.classId(), t.userName())).toList());
+            for (int i = 0; i < batch.size(); i++) {
+                resolve(batch.get(i), results.get(i));
+            }
+        } catch (RuntimeException e) {
+            log.warn("[RUSH] Partia {} biletów wycofana, przydzielam pojedynczo: {}", batch.size(), e.getMessage());
+            for (Ticket t : batch) {
+                try {
+                    resolve(t, fallback.create(t.classId(), t.userName()));
+                } catch (RuntimeException ex) {
+                    log.error("[RUSH] Nie udało się przydzielić biletu {}: {}", t.id(), ex.getMessage());
+                    resolve(t, null);
+                }
+            }
+        }
+    }
+
+    private void resolve(Ticket ticket, BookingResult result) {
+        ticket.resolve(result, clock.instant());
+        pendingByUser.remove(ticket.classId() + ":" + ticket.userName(), ticket);
+    }
+
+    private void cleanup() {
+        Instant now = clock.instant();
+        tickets.values().removeIf(t -> t.isResolved() && t.resolvedAt().plus(TICKET_TTL).isBefore(now));
+        rushUntil.entrySet().removeIf(e -> e.getValue().isBefore(now));
+        // atomowo per klucz z issue() – bilet nie trafi do kolejki już usuniętej z mapy
+        for (Long classId : pending.keySet()) {
+            pending.computeIfPresent(classId, (id, queue) -> queue.isEmpty() && !rushUntil.containsKey(id) ? null : queue);
+        }
+    }
+
+    /** Bilet kolejki rush; wynik pojawia się po przydziale (null, gdy przydział się nie powiódł). */
+    public static final class Ticket {
+        private final String id;
+        private final Long classId;
+        private final String userName;
+        private final Instant issuedAt;
+        private final long sequence;
+        private volatile boolean resolved;
+        private volatile BookingResult result;
+        private volatile Instant resolvedAt;
+
+        Ticket(String id, Long classId, String userName, Instant issuedAt, long sequence) {
+            this.id = id;
+            this.classId = classId;
+            this.userName = userName;
+            this.issuedAt = issuedAt;
+            this.sequence = sequence;
+        }
+
+        public String id() { return id; }
+        public Long classId() { return classId; }
+        public String userName() { return userName; }
+        public Instant issuedAt() { return issuedAt; }
+        public long sequence() { return sequence; }
+        public boolean isResolved() { return resolved; }
+        public BookingResult result() { return result; }
+        public Instant resolvedAt() { return resolvedAt; }
+
+        void resolve(BookingResult result, Instant at) {
+            this.result = result;
+            this.resolvedAt = at;
+            this.resolved = true;
+        }
+    }
+}
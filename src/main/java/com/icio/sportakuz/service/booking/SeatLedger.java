@@ -0,0 +1,249 @@
+package com.icio.sportakuz.service.booking;
+
+import com.icio.sportakuz.entity.Activity;
+import com.icio.sportakuz.repo.ActivityRepository;
+import com.icio.sportakuz.repo.ClassStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pamięciowy rejestr miejsc na zajęciach (reserved / capacity) dla każdego {@link Activity}.
+ * Liczniki są ładowane leniwie z bazy (kolumna reserved_count) przy pierwszym odwołaniu, a potem zmieniane
+ * operacją CAS, dzięki czemu odrzucenie rezerwacji na pełne zajęcia nie wykonuje żadnego zapytania SQL.
+ * Rejestr jest filtrem wstępnym – o przyjęciu rezerwacji ostatecznie decyduje warunkowy UPDATE w bazie.
+ * Zmiana pojemności / statusu zajęć wymaga wywołania {@link #evict(Long)}.
+ * Ponowne wczytanie liczników uwzględnia miejsca zajęte przez transakcje jeszcze niezatwierdzone
+ * ({@link #inFlight}) – baza ich nie widzi, a po zatwierdzeniu nie są już doliczane drugi raz.
+ */
+@Component
+public class SeatLedger {
+
+    private final ActivityRepository activityRepository;
+    private final ConcurrentHashMap<Long, Seats> seats = new ConcurrentHashMap<>();
+    /** Miejsca zajęte w pamięci przez transakcje przed zatwierdzeniem, wg ID zajęć (brak wpisu = 0). */
+    private final ConcurrentHashMap<Long, Integer> inFlight = new ConcurrentHashMap<>();
+    /** Licznik wywołań evict – liczniki wczytane w trakcie usuwania nie zostają w pamięci. */
+    private final AtomicLong evictions = new AtomicLong();
+
+    public SeatLedger(ActivityRepository activityRepository) {
+        this.activityRepository = activityRepository;
+    }
+
+    /**
+     * Zwraca liczniki dla zajęć (ładując je z bazy przy pierwszym użyciu) lub null, jeśli zajęcia nie istnieją.
+     * Zapytanie wykonywane jest poza blokadą mapy; przy równoległym ładowaniu w pamięci zostaje pierwszy wynik.
+     */
+    public Seats seats(Long activityId) {
+        Seats cached = seats.get(activityId);
+        if (cached != null) return cached;
+        long epoch = evictions.get();
+        Seats loaded = load(activityId);
+        if (loaded == null) return null;
+        Seats raced = seats.putIfAbsent(activityId, loaded);
+        if (raced != null) return raced;
+        if (evictions.get() != epoch) {
+            seats.remove(activityId, loaded); // evict w trakcie ładowania – odczyt mógł być już nieaktualny
+        }
+        return loaded;
+    }
+
+    /**
+     * Próbuje zająć miejsce. Jeśli trwa transakcja, miejsce jest liczone jako niezatwierdzone aż do jej zatwierdzenia,
+     * a jeśli zostanie ona wycofana, wraca do puli.
+     * @return liczba zajętych miejsc po rezerwacji albo -1, gdy brak wolnych miejsc
+     */
+    public int tryReserve(Seats s) {
+        int reserved = s.tryAcquire();
+        if (reserved >= 0 && TransactionSynchronizationManager.isSynchronizationActive()) {
+            held().add(s);
+        }
+        return reserved;
+    }
+
+    /** Oddaje miejsce zajęte przez {@link #tryReserve}, którego nie potwierdził warunkowy UPDATE w bazie. */
+    public void reject(Seats s) {
+        s.release();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            held().remove(s);
+        }
+    }
+
+    /**
+     * Zwalnia miejsce po usunięciu rezerwacji (po zatwierdzeniu transakcji, jeśli taka trwa) – w bieżących
+     * licznikach, także gdy w międzyczasie zostały wczytane ponownie (baza do zatwierdzenia liczy jeszcze to miejsce).
+     */
+    public void release(Long activityId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    releaseCurrent(activityId);
+                }
+            });
+        } else {
+            releaseCurrent(activityId);
+        }
+    }
+
+    /** Usuwa liczniki zajęć z pamięci – kolejne odwołanie wczyta je ponownie z bazy. */
+    public void evict(Long activityId) {
+        if (activityId != null) {
+            evictions.incrementAndGet();
+            seats.remove(activityId);
+        }
+    }
+
+    /** Usuwa liczniki wielu zajęć – po zatwierdzeniu transakcji, jeśli taka trwa (by nie wczytać niezatwierdzonego stanu). */
+    public void evictAll(Collection<Long> activityIds) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    activityIds.forEach(SeatLedger.this::evict);
+                }
+            });
+        } else {
+            activityIds.forEach(this::evict);
+        }
+    }
+
+    private Seats load(Long activityId) {
+        Activity activity = activityRepository.findById(activityId).orElse(null);
+        if (activity == null) return null;
+        // Niezatwierdzone rezerwacje odczytywane po zapytaniu: te zatwierdzone w międzyczasie mogą zostać
+        // pominięte (licznik chwilowo zaniżony – rozstrzyga baza), ale nigdy nie są liczone podwójnie.
+        int pending = inFlight.getOrDefault(activityId, 0);
+        return new Seats(activityId, activity.getCapacity(), activity.getStatus() == ClassStatus.CANCELLED,
+                activity.getReservedCount() + pending);
+    }
+
+    private void releaseCurrent(Long activityId) {
+        Seats current = seats.get(activityId);
+        if (current != null) current.release(); // nie było w pamięci – zostanie wczytane z bazy przy kolejnym użyciu
+    }
+
+    private void settled(Long activityId) {
+        inFlight.computeIfPresent(activityId, (id, n) -> n > 1 ? n - 1 : null);
+    }
+
+    private Held held() {
+        Held held = (Held) TransactionSynchronizationManager.getResource(this);
+        if (held == null) {
+            held = new Held();
+            TransactionSynchronizationManager.bindResource(this, held);
+            TransactionSynchronizationManager.registerSynchronization(held);
+        }
+        return held;
+    }
+
+    /**
+     * Miejsca zajęte w bieżącej transakcji. Do chwili zatwierdzenia (beforeCommit) są liczone w {@link #inFlight};
+     * po wycofaniu wracają do puli – w licznikach, na których je zajęto, i w bieżących, jeśli wczytano je ponownie.
+     */
+    private final class Held implements TransactionSynchronization {
+        private final List<Seats> acquired = new ArrayList<>();
+        private boolean pending = true;
+
+        void add(Seats s) {
+            acquired.add(s);
+            inFlight.merge(s.activityId, 1, Integer::sum);
+        }
+
+        void remove(Seats s) {
+            if (acquired.remove(s) && pending) {
+                settled(s.activityId);
+            }
+        }
+
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResource(SeatLedger.this);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(SeatLedger.this, this);
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            settle();
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(SeatLedger.this);
+            settle();
+            if (status != STATUS_COMMITTED) {
+                for (Seats s : acquired) {
+                    s.release();
+                    Seats current = seats.get(s.activityId);
+                    if (current != null && current != s) current.release();
+                }
+            }
+        }
+
+        private void settle() {
+            if (pending) {
+                pending = false;
+                acquired.forEach(s -> settled(s.activityId));
+            }
+        }
+    }
+
+    /** Liczniki miejsc pojedynczych zajęć. Pojemność i status są niezmienne – zmiana wymaga evict(). */
+    public static final class Seats {
+        private final Long activityId;
+        private final int capacity;
+        private final boolean cancelled;
+        private final AtomicInteger reserved;
+
+        Seats(Long activityId, int capacity, boolean cancelled, int reserved) {
+            this.activityId = activityId;
+            this.capacity = capacity;
+            this.cancelled = cancelled;
+            this.reserved = new AtomicInteger(reserved);
+        }
+
+        public int capacity() {
+            return capacity;
+        }
+
+        public boolean cancelled() {
+            return cancelled;
+        }
+
+        public int reserved() {
+            return reserved.get();
+        }
+
+        /** Tekst "zajęte/pojemność" zwracany do kalendarza. */
+        public String spots() {
+            return reserved.get() + "/" + capacity;
+        }
+
+        int tryAcquire() {
+            while (true) {
+                int current = reserved.get();
+                if (current >= capacity) return -1;
+                if (reserved.compareAndSet(current, current + 1)) return current + 1;
+            }
+        }
+
+        void release() {
+            while (true) {
+                int current = reserved.get();
+                if (current <= 0) return;
+                if (reserved.compareAndSet(current, current - 1)) return;
+            }
+        }
+    }
+}
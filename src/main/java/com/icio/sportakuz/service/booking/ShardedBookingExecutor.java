@@ -0,0 +1,179 @@
+package com.icio.sportakuz.service.booking;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rezerwacje wykonywane przez jednowątkowe shardy: wszystkie żądania utworzenia rezerwacji dla danych zajęć trafiają
+ * (wg ID zajęć) do kolejki tego samego sharda.
+ * Wątek sharda pobiera z kolejki do {@code batchSize} żądań i zapisuje je zbiorczo ({@link BookingBatchWriter}) –
+ * zamiast wielu wątków walczących o blokadę tego samego wiersza jest jeden UPDATE na zajęcia,
+ * jeden wielowierszowy INSERT i jeden commit na partię.
+ * Anulowania, rezerwacje zbiorcze i zmiany zajęć zapisują te same wiersze poza shardem – o poprawności
+ * nadal decydują warunkowe UPDATE i indeks unikalny w bazie.
+ * Gdy partia się nie powiedzie, jej żądania są ponawiane pojedynczo przez {@link DirectBookingExecutor}.
+ * Gdy wynik nie nadejdzie w czasie, żądanie jest wycofywane z kolejki ({@link BookingResult.Outcome#BUSY}),
+ * a jeśli shard już je przetwarza – wynik jest nieznany ({@link BookingResult.Outcome#UNKNOWN}).
+ */
+public class ShardedBookingExecutor implements BookingExecutor, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardedBookingExecutor.class);
+
+    /** Maksymalny czas oczekiwania wątku żądania na wynik z sharda. */
+    private static final long RESPONSE_TIMEOUT_SECONDS = 10;
+
+    private final BookingBatchWriter batchWriter;
+    private final BookingExecutor fallback;
+    private final int batchSize;
+    private final Shard[] shards;
+
+    public ShardedBookingExecutor(int shardCount,
+                                  int batchSize,
+                                  BookingBatchWriter batchWriter,
+                                  BookingExecutor fallback) {
+        if (shardCount < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("shardCount i batchSize muszą być dodatnie");
+        }
+        this.batchWriter = batchWriter;
+        this.fallback = fallback;
+        this.batchSize = batchSize;
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i);
+            shards[i].thread.start();
+        }
+    }
+
+    @Override
+    public BookingResult create(Long classId, String userName) {
+        Pending pending = new Pending(classId, userName, new CompletableFuture<>());
+        Shard shard = shards[Math.floorMod(classId.hashCode(), shards.length)];
+        if (!shard.running) {
+            throw new IllegalStateException("Executor rezerwacji został zatrzymany");
+        }
+        shard.queue.add(pending);
+        try {
+            return pending.result.get(RESPONSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return abandon(shard, pending);
+        } catch (TimeoutException e) {
+            return abandon(shard, pending);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Rezygnuje z oczekiwania na wynik. Żądanie jeszcze w kolejce jest z niej usuwane – nic nie zostało zapisane;
+     * żądanie pobrane już do partii może zostać zatwierdzone, więc wynik jest nieznany (nie błąd).
+     */
+    private BookingResult abandon(Shard shard, Pending pending) {
+        if (shard.queue.remove(pending)) {
+            log.warn("[BOOKING] Shard {}: brak wyniku w {} s, żądanie wycofane z kolejki (zajęcia {})",
+                    shard.index, RESPONSE_TIMEOUT_SECONDS, pending.classId);
+            return BookingResult.of(BookingResult.Outcome.BUSY);
+        }
+        log.warn("[BOOKING] Shard {}: brak wyniku w {} s, żądanie w trakcie zapisu (zajęcia {})",
+                shard.index, RESPONSE_TIMEOUT_SECONDS, pending.classId);
+        return BookingResult.of(BookingResult.Outcome.UNKNOWN);
+    }
+
+    @Override
+    public List<ShardStats> shardStats() {
+        List<ShardStats> stats = new ArrayList<>(shards.length);
+        for (Shard s : shards) {
+            stats.add(new ShardStats(s.index, s.queue.size(), s.lastBatchSize, s.maxBatchSize,
+                    s.batches.get(), s.processed.get()));
+        }
+        return stats;
+    }
+
+    /** Zatrzymuje wątki shardów; żądania pozostałe w kolejkach kończą się błędem. */
+    @Override
+    public void close() {
+        for (Shard s : shards) {
+            s.running = false;
+            s.thread.interrupt();
+        }
+        for (Shard s : shards) {
+            try {
+                s.thread.join(TimeUnit.SECONDS.toMillis(RESPONSE_TIMEOUT_SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            Pending p;
+            while ((p = s.queue.poll()) != null) {
+                p.result.completeExceptionally(new IllegalStateException("Executor rezerwacji został zatrzymany"));
+            }
+        }
+    }
+
+    private void process(List<Pending> batch) {
+        List<BookingResult> results;
+        try {
+            results = batchWriter.admit(batch.stream()
+                    .map(p -> new BookingBatchWriter.BookingRequest(p.classId, p.userName)).toList());
+        } catch (RuntimeException e) {
+            log.warn("[BOOKING] Partia {} rezerwacji wycofana, ponawiam pojedynczo: {}", batch.size(), e.getMessage());
+            for (Pending p : batch) {
+                try {
+                    p.result.complete(fallback.create(p.classId, p.userName));
+                } catch (RuntimeException ex) {
+                    p.result.completeExceptionally(ex);
+                }
+            }
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).result.complete(results.get(i));
+        }
+    }
+
+    private record Pending(Long classId, String userName, CompletableFuture<BookingResult> result) {}
+
+    private final class Shard {
+        private final int index;
+        private final LinkedBlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+        private final Thread thread;
+        private final AtomicLong batches = new AtomicLong();
+        private final AtomicLong processed = new AtomicLong();
+        private volatile boolean running = true;
+        private volatile int lastBatchSize;
+        private volatile int maxBatchSize;
+
+        Shard(int index) {
+            this.index = index;
+            this.thread = new Thread(this::run, "booking-shard-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        private void run() {
+            List<Pending> batch = new ArrayList<>(batchSize);
+            while (running) {
+                try {
+                    batch.add(queue.take());
+                } catch (InterruptedException e) {
+                    break;
+                }
+                queue.drainTo(batch, batchSize - 1);
+                process(batch);
+                lastBatchSize = batch.size();
+                maxBatchSize = Math.max(maxBatchSize, batch.size());
+                batches.incrementAndGet();
+                processed.addAndGet(batch.size());
+                batch.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.icio.sportakuz.service.booking;
+
+import com.icio.sportakuz.entity.Booking;
+import com.icio.sportakuz.repo.ActivityRepository;
+import com.icio.sportakuz.repo.BookingRepository;
+import com.icio.sportakuz.repo.BookingStatus;
+import com.icio.sportakuz.repo.OutboxEventType;
+import com.icio.sportakuz.service.outbox.OutboxPublisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Awans z listy oczekujących na wolne miejsca zwolnione bez anulowania rezerwacji – zwiększenie pojemności
+ * wystąpienia lub serii, przeliczenie reserved_count w dół. Bez tego wolne miejsce zająłby pierwszy nowy chętny
+ * przed kolejką. (Miejsce z anulowanej rezerwacji przekazuje czołu listy BookingApiController.)
+ */
+@Service
+public class WaitlistPromoter {
+
+    private static final Logger log = LoggerFactory.getLogger(WaitlistPromoter.class);
+
+    private final BookingRepository bookingRepository;
+    private final ActivityRepository activityRepository;
+    private final SeatLedger seatLedger;
+    private final OutboxPublisher outbox;
+
+    public WaitlistPromoter(BookingRepository bookingRepository,
+                            ActivityRepository activityRepository,
+                            SeatLedger seatLedger,
+                            OutboxPublisher outbox) {
+        this.bookingRepository = bookingRepository;
+        this.activityRepository = activityRepository;
+        this.seatLedger = seatLedger;
+        this.outbox = outbox;
+    }
+
+    /**
+     * Awansuje kolejne osoby z listy oczekujących, dopóki warunkowy UPDATE reserved_count zajmuje miejsce.
+     * Wywoływać w transakcji, która zwolniła miejsca (po zapisaniu zmiany w bazie).
+     * @return liczba awansowanych rezerwacji
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public int promote(Long classId) {
+        int promoted = 0;
+        Booking head;
+        while ((head = bookingRepository.findWaitlistHeadForUpdate(classId)) != null
+                && activityRepository.tryReserveSeat(classId) == 1) {
+            head.setStatus(BookingStatus.REQUESTED);
+            bookingRepository.flush(); // kolejne zapytanie o czoło listy nie może zwrócić tej samej rezerwacji
+            outbox.publish(OutboxPublisher.Change.booking(OutboxEventType.BOOKING_PROMOTED,
+                    classId, head.getId(), head.getUserName(), null));
+            promoted++;
+        }
+        if (promoted > 0) {
+            seatLedger.evictAll(List.of(classId)); // liczniki w pamięci nie znają awansów
+            log.info("[WAITLIST] Zajęcia {}: awansowano {} rezerwacji z listy oczekujących", classId, promoted);
+        }
+        return promoted;
+    }
+}
@@ -0,0 +1,24 @@
+package com.icio.sportakuz.service.outbox;
+
+import com.icio.sportakuz.entity.OutboxEvent;
+import com.icio.sportakuz.repo.OutboxEventType;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Zdarzenie outboxu przekazywane konsumentom (niemutowalna kopia wiersza outbox_events).
+ * @param id ID zdarzenia – przy dostarczaniu "co najmniej raz" pozwala konsumentowi odrzucić powtórzenia
+ */
+public record ChangeEvent(long id,
+                          OutboxEventType type,
+                          Long activityId,
+                          Long bookingId,
+                          String userName,
+                          String detail,
+                          OffsetDateTime createdAt) {
+
+    static ChangeEvent of(OutboxEvent e) {
+        return new ChangeEvent(e.getId(), e.getType(), e.getActivityId(), e.getBookingId(),
+                e.getUserName(), e.getDetail(), e.getCreatedAt());
+    }
+}
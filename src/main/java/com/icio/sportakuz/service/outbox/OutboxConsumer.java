@@ -0,0 +1,27 @@
+package com.icio.sportakuz.service.outbox;
+
+import java.util.List;
+
+/**
+ * Konsument zdarzeń outboxu. Wystarczy zarejestrować go jako bean – {@link OutboxRelay} znajdzie go sam.
+ * Dostarczanie jest "co najmniej raz": partia, której {@link #accept} rzuci wyjątek, zostanie dostarczona ponownie,
+ * a po awarii część zdarzeń może przyjść drugi raz – konsument powinien być idempotentny (np. po {@link ChangeEvent#id()}).
+ */
+public interface OutboxConsumer {
+
+    /** Unikalna nazwa konsumenta – klucz jego pozycji w outbox_offsets. */
+    String name();
+
+    /** Przetwarza partię zdarzeń w kolejności zapisu. */
+    void accept(List<ChangeEvent> events);
+
+    /**
+     * Trwały konsument (domyślnie): pozycja zapisywana w bazie, zdarzenia od ostatniej pozycji również po restarcie,
+     * a każda partia trafia tylko do jednej instancji konsumenta (jeden kontekst / jeden serwer naraz).
+     * Ulotny konsument (np. unieważnianie cache w pamięci) trzyma pozycję w pamięci, zaczyna od bieżącego końca outboxu
+     * i dostaje wszystkie zdarzenia w każdym kontekście osobno.
+     */
+    default boolean durable() {
+        return true;
+    }
+}
@@ -0,0 +1,69 @@
+package com.icio.sportakuz.service.outbox;
+
+import com.icio.sportakuz.repo.OutboxEventType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Zapis zdarzeń zmian do outboxu (tabela outbox_events). Działa wyłącznie w trwającej transakcji zmiany
+ * (Propagation.MANDATORY) – zdarzenie zostaje zapisane wtedy i tylko wtedy, gdy zmiana zostanie zatwierdzona.
+ */
+@Component
+public class OutboxPublisher {
+
+    private static final String INSERT = """
+            insert into outbox_events (tx_id, type, activity_id, booking_id, user_name, detail, created_at)
+            values (pg_current_xact_id()::text::bigint, ?, ?, ?, ?, ?, now())
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public OutboxPublisher(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    /** Zapisuje jedno zdarzenie. */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void publish(Change change) {
+        jdbcTemplate.update(INSERT, args(change));
+    }
+
+    /** Zapisuje zdarzenia jednym poleceniem wsadowym (np. dla partii rezerwacji). */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void publishAll(Collection<Change> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        List<Object[]> batch = changes.stream().map(OutboxPublisher::args).toList();
+        jdbcTemplate.batchUpdate(INSERT, batch);
+    }
+
+    private static Object[] args(Change c) {
+        return new Object[]{c.type().name(), c.activityId(), c.bookingId(), c.userName(), c.detail()};
+    }
+
+    /** Zdarzenie do zapisania. */
+    public record Change(OutboxEventType type, Long activityId, Long bookingId, String userName, String detail) {
+
+        /** Zdarzenie rezerwacji. */
+        public static Change booking(OutboxEventType type, Long activityId, Long bookingId, String userName, String detail) {
+            return new Change(type, activityId, bookingId, userName, detail);
+        }
+
+        /** Zdarzenie wystąpienia zajęć. */
+        public static Change activity(OutboxEventType type, Long activityId, String detail) {
+            return new Change(type, activityId, null, null, detail);
+        }
+
+        /** Zmiana danych słownikowych (sala, typ zajęć, instruktor) dotycząca wielu zajęć naraz. */
+        public static Change reference(OutboxEventType type, Object id) {
+            return new Change(type, null, null, null, String.valueOf(id));
+        }
+    }
+}
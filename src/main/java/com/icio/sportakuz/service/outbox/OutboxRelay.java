@@ -0,0 +1,151 @@
+package com.icio.sportakuz.service.outbox;
+
+import com.icio.sportakuz.entity.OutboxEvent;
+import com.icio.sportakuz.entity.OutboxOffset;
+import com.icio.sportakuz.repo.OutboxEventRepository;
+import com.icio.sportakuz.repo.OutboxOffsetRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Przekazuje zdarzenia z outboxu do konsumentów ({@link OutboxConsumer}) partiami, w kolejności zapisu,
+ * "co najmniej raz": pozycja konsumenta przesuwa się dopiero po udanym {@link OutboxConsumer#accept}.
+ * Pozycje trwałych konsumentów są w tabeli outbox_offsets (zapis w tej samej transakcji co odczyt partii),
+ * ulotnych – w pamięci tego kontekstu.
+ */
+@Component
+public class OutboxRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+
+    /** Liczba zdarzeń w jednej partii. */
+    private static final int BATCH_SIZE = 200;
+    /** Maksymalna liczba partii na konsumenta w jednym przebiegu (reszta w kolejnym). */
+    private static final int MAX_BATCHES_PER_RUN = 20;
+    /** Jak długo trzymamy dostarczone zdarzenia. */
+    private static final Duration RETENTION = Duration.ofDays(7);
+    /** Maksymalna przerwa przed ponowieniem partii po błędzie konsumenta (rośnie wykładniczo od 1 s). */
+    private static final Duration MAX_RETRY_DELAY = Duration.ofMinutes(1);
+
+    private final OutboxEventRepository eventRepository;
+    private final OutboxOffsetRepository offsetRepository;
+    private final ObjectProvider<OutboxConsumer> consumers;
+    private final TransactionTemplate tx;
+    /** Pozycje ulotnych konsumentów wg nazwy. */
+    private final Map<String, Position> volatilePositions = new ConcurrentHashMap<>();
+    /** Trwali konsumenci, dla których założono już wiersz w outbox_offsets. */
+    private final Set<String> registered = ConcurrentHashMap.newKeySet();
+    /** Konsumenci po błędzie: liczba kolejnych błędów i chwila następnej próby. */
+    private final Map<String, Retry> retries = new ConcurrentHashMap<>();
+
+    public OutboxRelay(OutboxEventRepository eventRepository,
+                       OutboxOffsetRepository offsetRepository,
+                       ObjectProvider<OutboxConsumer> consumers,
+                       PlatformTransactionManager transactionManager) {
+        this.eventRepository = eventRepository;
+        this.offsetRepository = offsetRepository;
+        this.consumers = consumers;
+        this.tx = new TransactionTemplate(transactionManager);
+    }
+
+    /** Co pół sekundy dostarcza nowe zdarzenia wszystkim konsumentom. */
+    @Scheduled(fixedDelay = 500, initialDelay = 10 * 1000)
+    public void relay() {
+        consumers.orderedStream().forEach(consumer -> {
+            Retry retry = retries.get(consumer.name());
+            if (retry != null && Instant.now().isBefore(retry.notBefore())) {
+                return;
+            }
+            try {
+                for (int i = 0; i < MAX_BATCHES_PER_RUN; i++) {
+                    int delivered = consumer.durable() ? deliverDurable(consumer) : deliverVolatile(consumer);
+                    if (delivered < BATCH_SIZE) break;
+                }
+                retries.remove(consumer.name());
+            } catch (RuntimeException e) {
+                // partia nie została potwierdzona – zostanie dostarczona ponownie po przerwie
+                Retry next = Retry.after(retry);
+                retries.put(consumer.name(), next);
+                log.warn("[OUTBOX] Konsument {} nie przetworzył partii (próba {}): {}",
+                        consumer.name(), next.failures(), e.getMessage(), e);
+            }
+        });
+    }
+
+    /** Raz na godzinę usuwa zdarzenia starsze niż tydzień. */
+    @Scheduled(fixedDelay = 60 * 60 * 1000, initialDelay = 10 * 60 * 1000)
+    public void purge() {
+        Integer removed = tx.execute(status -> eventRepository.deleteCreatedBefore(OffsetDateTime.now().minus(RETENTION)));
+        if (removed != null && removed > 0) {
+            log.info("[OUTBOX] Usunięto {} starych zdarzeń", removed);
+        }
+    }
+
+    /** Partia dla trwałego konsumenta: blokada pozycji, odczyt, dostarczenie i nowa pozycja w jednej transakcji. */
+    private int deliverDurable(OutboxConsumer consumer) {
+        if (registered.add(consumer.name())) {
+            tx.executeWithoutResult(status -> offsetRepository.register(consumer.name()));
+        }
+        Integer delivered = tx.execute(status -> {
+            OutboxOffset offset = offsetRepository.lockForDelivery(consumer.name());
+            if (offset == null) {
+                return 0; // partię dostarcza teraz inny kontekst / instancja
+            }
+            List<OutboxEvent> batch = eventRepository.findCommittedAfter(offset.getTxId(), offset.getEventId(), BATCH_SIZE);
+            if (batch.isEmpty()) {
+                return 0;
+            }
+            consumer.accept(batch.stream().map(ChangeEvent::of).toList());
+            OutboxEvent last = batch.get(batch.size() - 1);
+            offset.setTxId(last.getTxId());
+            offset.setEventId(last.getId());
+            offset.setUpdatedAt(OffsetDateTime.now());
+            return batch.size();
+        });
+        return delivered == null ? 0 : delivered;
+    }
+
+    /** Partia dla ulotnego konsumenta: pozycja w pamięci, startuje od bieżącego końca outboxu. */
+    private int deliverVolatile(OutboxConsumer consumer) {
+        Position position = volatilePositions.computeIfAbsent(consumer.name(), name -> tx.execute(status -> {
+            OutboxEvent last = eventRepository.findLastCommitted();
+            return last == null ? Position.START : new Position(last.getTxId(), last.getId());
+        }));
+        List<OutboxEvent> batch = tx.execute(status ->
+                eventRepository.findCommittedAfter(position.txId(), position.eventId(), BATCH_SIZE));
+        if (batch == null || batch.isEmpty()) {
+            return 0;
+        }
+        consumer.accept(batch.stream().map(ChangeEvent::of).toList());
+        OutboxEvent last = batch.get(batch.size() - 1);
+        volatilePositions.put(consumer.name(), new Position(last.getTxId(), last.getId()));
+        return batch.size();
+    }
+
+    /** Stan ponawiania po błędzie konsumenta. */
+    private record Retry(int failures, Instant notBefore) {
+        static Retry after(Retry previous) {
+            int failures = previous == null ? 1 : previous.failures() + 1;
+            long delayMillis = Math.min(1000L << Math.min(failures - 1, 16), MAX_RETRY_DELAY.toMillis());
+            return new Retry(failures, Instant.now().plusMillis(delayMillis));
+        }
+    }
+
+    /** Pozycja w outboxie: ostatnie dostarczone (tx_id, id). */
+    private record Position(long txId, long eventId) {
+        static final Position START = new Position(0, 0);
+    }
+}
@@ -0,0 +1,111 @@
+package com.icio.sportakuz.service.schedule;
+
+import com.icio.sportakuz.repo.OutboxEventType;
+import com.icio.sportakuz.service.outbox.ChangeEvent;
+import com.icio.sportakuz.service.outbox.OutboxConsumer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Wspólna obsługa indeksów wystąpień zajęć trzymanych w pamięci ({@link ScheduleIndexService}, {@link ConflictIndexService}).
+ * Zapytania czytają bieżącą, niezmienną wersję indeksu bez blokad; indeks jest budowany przy pierwszym zapytaniu.
+ * Zmienione wystąpienia są doczytywane po zatwierdzeniu transakcji panelu ({@link #refreshAfterCommit}) i ze zdarzeń
+ * outboxu (ulotny konsument), a co 10 minut indeks jest budowany od nowa.
+ * @param <I> niezmienna wersja indeksu
+ */
+public abstract class ActivityIndexService<I> implements OutboxConsumer {
+
+    /** Zdarzenia zmieniające czas, salę, instruktora, typ lub status wystąpienia (rezerwacje ich nie zmieniają). */
+    private static final Set<OutboxEventType> ACTIVITY_CHANGES = EnumSet.of(
+            OutboxEventType.ACTIVITY_CREATED, OutboxEventType.ACTIVITY_UPDATED,
+            OutboxEventType.ACTIVITY_STATUS_CHANGED, OutboxEventType.ACTIVITY_DELETED);
+
+    private volatile I index;
+
+    /**
+     * Aktualizuje wystąpienie w indeksie zaraz po zatwierdzeniu bieżącej transakcji (albo od razu, gdy jej nie ma),
+     * bez czekania na outbox – kolejny widok lub formularz widzi zmianę od razu po przekierowaniu.
+     */
+    public void refreshAfterCommit(Long activityId) {
+        if (activityId == null || index == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    update(Set.of(activityId));
+                }
+            });
+        } else {
+            update(Set.of(activityId));
+        }
+    }
+
+    /** Co 10 minut pełna przebudowa (pierwsza tuż po ustawieniu pozycji konsumenta w outboxie). */
+    @Scheduled(fixedDelay = 10 * 60 * 1000, initialDelay = 15 * 1000)
+    public void refresh() {
+        rebuildAll();
+    }
+
+    @Override
+    public boolean durable() {
+        return false;
+    }
+
+    @Override
+    public void accept(List<ChangeEvent> events) {
+        if (index == null) {
+            return; // indeks zostanie zbudowany przy pierwszym zapytaniu – już ze zmianami
+        }
+        if (requiresRebuild(events)) {
+            rebuildAll();
+            return;
+        }
+        Set<Long> activityIds = events.stream()
+                .filter(e -> ACTIVITY_CHANGES.contains(e.type()))
+                .map(ChangeEvent::activityId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        if (!activityIds.isEmpty()) {
+            update(activityIds);
+        }
+    }
+
+    /** Bieżąca wersja indeksu (zbudowana przy pierwszym wywołaniu). */
+    protected I current() {
+        I current = index;
+        return current != null ? current : initialize();
+    }
+
+    /** Czy partia zdarzeń wymaga pełnej przebudowy zamiast aktualizacji zmienionych wystąpień (domyślnie nie). */
+    protected boolean requiresRebuild(List<ChangeEvent> events) {
+        return false;
+    }
+
+    /** Buduje indeks od nowa z bazy. Wywoływane pod blokadą indeksu. */
+    protected abstract I build();
+
+    /** Nowa wersja indeksu ze zmienionymi wystąpieniami doczytanymi z bazy. Wywoływane pod blokadą indeksu. */
+    protected abstract I withChanges(I index, Set<Long> activityIds);
+
+    private synchronized I initialize() {
+        return index != null ? index : rebuildAll();
+    }
+
+    private synchronized I rebuildAll() {
+        index = build();
+        return index;
+    }
+
+    private synchronized void update(Set<Long> activityIds) {
+        index = withChanges(index, activityIds);
+    }
+}
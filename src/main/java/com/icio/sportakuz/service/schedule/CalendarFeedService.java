@@ -0,0 +1,246 @@
+package com.icio.sportakuz.service.schedule;
+
+import com.icio.sportakuz.entity.Room;
+import com.icio.sportakuz.entity.User;
+import com.icio.sportakuz.entity.UserRole;
+import com.icio.sportakuz.repo.ActivityRepository;
+import com.icio.sportakuz.repo.BookingRepository;
+import com.icio.sportakuz.repo.BookingStatus;
+import com.icio.sportakuz.repo.CalendarFeedRow;
+import com.icio.sportakuz.repo.OutboxEventType;
+import com.icio.sportakuz.repo.RoomRepository;
+import com.icio.sportakuz.repo.UserRepository;
+import com.icio.sportakuz.service.outbox.ChangeEvent;
+import com.icio.sportakuz.service.outbox.OutboxConsumer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.Writer;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Kanały iCalendar (.ics) do subskrypcji w kalendarzach telefonów: rezerwacje użytkownika, zajęcia instruktora
+ * i plan sali, dostępne pod adresem z losowym tokenem (bez logowania).
+ * Wydarzenia są zapisywane wprost z kursora bazy do odpowiedzi, bez budowania listy w pamięci.
+ * Dla każdego kanału trzymany jest w pamięci znacznik wersji (ETag + Last-Modified) – częste odpytywanie
+ * przez klientów kalendarza kończy się 304 bez żadnego zapytania do bazy. Znaczniki unieważniają zdarzenia
+ * z outboxu (ulotny konsument): rezerwacje – kanał danego użytkownika, zmiany grafiku i słowników – wszystkie kanały.
+ */
+@Service
+public class CalendarFeedService implements OutboxConsumer {
+
+    /** Rodzaj kanału. */
+    public enum Kind { MEMBER, INSTRUCTOR, ROOM }
+
+    /** Ile dni wstecz kanał pokazuje zakończone zajęcia. */
+    private static final int PAST_DAYS = 30;
+    /** Sugerowany klientom odstęp odświeżania. */
+    private static final String REFRESH_INTERVAL = "PT1H";
+    /** Powyżej tylu znaczników pamięć jest czyszczona (kolejne odpytania wczytają je ponownie). */
+    private static final int MAX_FEEDS = 100_000;
+    private static final Set<OutboxEventType> SCHEDULE_CHANGES = EnumSet.of(
+            OutboxEventType.ACTIVITY_CREATED, OutboxEventType.ACTIVITY_UPDATED,
+            OutboxEventType.ACTIVITY_STATUS_CHANGED, OutboxEventType.ACTIVITY_DELETED,
+            OutboxEventType.ROOM_UPDATED, OutboxEventType.ACTIVITY_TYPE_UPDATED, OutboxEventType.INSTRUCTOR_UPDATED);
+
+    private final UserRepository userRepository;
+    private final RoomRepository roomRepository;
+    private final BookingRepository bookingRepository;
+    private final ActivityRepository activityRepository;
+    private final TransactionTemplate tx;
+    private final TransactionTemplate readOnlyTx;
+    private final SecureRandom random = new SecureRandom();
+    /** Wyróżnik uruchomienia – ETagi z poprzedniego startu nie pasują do nowych znaczników. */
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong generation = new AtomicLong();
+    /** Znaczniki kanałów wg "rodzaj:token". */
+    private final Map<String, Feed> feeds = new ConcurrentHashMap<>();
+    /** Licznik zmian tokenów – znacznik wczytany w trakcie zmiany nie zostaje w pamięci. */
+    private final AtomicLong rotations = new AtomicLong();
+
+    public CalendarFeedService(UserRepository userRepository,
+                               RoomRepository roomRepository,
+                               BookingRepository bookingRepository,
+                               ActivityRepository activityRepository,
+                               PlatformTransactionManager transactionManager) {
+        this.userRepository = userRepository;
+        this.roomRepository = roomRepository;
+        this.bookingRepository = bookingRepository;
+        this.activityRepository = activityRepository;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+    }
+
+    /** Token kanałów użytkownika albo null, gdy użytkownik nie istnieje lub nie wygenerował jeszcze adresu. */
+    public String userToken(String email) {
+        return userRepository.findByEmail(email).map(User::getCalendarToken).orElse(null);
+    }
+
+    /** Tokeny kanałów sal wg ID sali – tylko sal, dla których wygenerowano już adres. */
+    public Map<Long, String> roomTokens() {
+        return roomRepository.findAll().stream()
+                .filter(room -> room.getCalendarToken() != null)
+                .collect(Collectors.toMap(Room::getId, Room::getCalendarToken));
+    }
+
+    /**
+     * Nadaje użytkownikowi nowy token kanałów (pierwszy albo zamiast dotychczasowego) – stary adres
+     * kanału rezerwacji i zajęć instruktora przestaje działać.
+     * @return nowy token albo null, gdy użytkownik nie istnieje
+     */
+    public String regenerateUserToken(String email) {
+        User user = tx.execute(status -> userRepository.findByEmail(email)
+                .map(u -> {
+                    u.setCalendarToken(newToken());
+                    return u;
+                })
+                .orElse(null));
+        if (user == null) {
+            return null;
+        }
+        rotations.incrementAndGet();
+        feeds.values().removeIf(f -> f.kind() != Kind.ROOM && f.subjectId().equals(user.getId()));
+        return user.getCalendarToken();
+    }
+
+    /**
+     * Nadaje sali nowy token kanału planu (pierwszy albo zamiast dotychczasowego) – stary adres przestaje działać.
+     * @return nowy token albo null, gdy sala nie istnieje
+     */
+    public String regenerateRoomToken(Long roomId) {
+        String token = tx.execute(status -> roomRepository.findById(roomId)
+                .map(room -> {
+                    room.setCalendarToken(newToken());
+                    return room.getCalendarToken();
+                })
+                .orElse(null));
+        if (token != null) {
+            rotations.incrementAndGet();
+            feeds.values().removeIf(f -> f.kind() == Kind.ROOM && f.subjectId().equals(roomId));
+        }
+        return token;
+    }
+
+    /**
+     * Kanał o podanym tokenie z bieżącym znacznikiem wersji albo null, gdy token jest nieznany
+     * (lub użytkownik nieaktywny / bez roli instruktora dla kanału instruktora).
+     */
+    public Feed resolve(Kind kind, String token) {
+        String key = kind + ":" + token;
+        LocalDate today = LocalDate.now(CalendarService.ZONE);
+        Feed feed = feeds.get(key);
+        if (feed != null && feed.day().equals(today)) {
+            return feed; // okno kanału przesuwa się codziennie – wtedy nowy znacznik
+        }
+        long rotation = rotations.get();
+        feed = load(kind, token, today);
+        if (feed == null) {
+            return null;
+        }
+        if (feeds.size() >= MAX_FEEDS) {
+            feeds.clear();
+        }
+        feeds.put(key, feed);
+        if (rotations.get() != rotation) {
+            feeds.remove(key, feed); // token mógł właśnie zostać zmieniony – kolejne odpytanie sprawdzi go w bazie
+        }
+        return feed;
+    }
+
+    /** Zapisuje kanał strumieniowo – wiersze z kursora bazy od razu trafiają do {@code out}. */
+    public void write(Feed feed, Writer out) {
+        OffsetDateTime since = OffsetDateTime.now().minusDays(PAST_DAYS);
+        readOnlyTx.executeWithoutResult(status -> {
+            IcsWriter ics = new IcsWriter(out, Instant.now());
+            ics.begin(feed.title(), REFRESH_INTERVAL);
+            try (Stream<CalendarFeedRow> rows = switch (feed.kind()) {
+                case MEMBER -> bookingRepository.streamMemberFeed(feed.email(), BookingStatus.LIVE, since);
+                case INSTRUCTOR -> activityRepository.streamInstructorFeed(feed.subjectId(), since);
+                case ROOM -> activityRepository.streamRoomFeed(feed.subjectId(), since);
+            }) {
+                rows.forEach(ics::event);
+            }
+            ics.end();
+        });
+    }
+
+    @Override
+    public String name() {
+        return "calendar-feeds";
+    }
+
+    @Override
+    public boolean durable() {
+        return false;
+    }
+
+    @Override
+    public void accept(List<ChangeEvent> events) {
+        if (feeds.isEmpty()) {
+            return;
+        }
+        if (events.stream().anyMatch(e -> SCHEDULE_CHANGES.contains(e.type()))) {
+            feeds.clear(); // zmiany grafiku są rzadkie, a zajęcia mogą być w wielu kanałach
+            return;
+        }
+        Set<String> members = events.stream()
+                .map(ChangeEvent::userName)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        if (!members.isEmpty()) {
+            feeds.values().removeIf(f -> f.kind() == Kind.MEMBER && members.contains(f.email()));
+        }
+    }
+
+    private Feed load(Kind kind, String token, LocalDate today) {
+        Instant now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        String etag = "\"" + epoch + "-" + Long.toString(generation.incrementAndGet(), 36) + "\"";
+        if (kind == Kind.ROOM) {
+            return roomRepository.findByCalendarToken(token)
+                    .map(room -> new Feed(kind, room.getId(), null, "Sala " + room.getName(), etag, now, today))
+                    .orElse(null);
+        }
+        User user = userRepository.findByCalendarToken(token).orElse(null);
+        if (user == null || !user.isActive()) {
+            return null;
+        }
+        String name = user.getFirstName() != null ? user.getFirstName() + " " + user.getLastName() : user.getEmail();
+        if (kind == Kind.INSTRUCTOR) {
+            return user.getRole() == UserRole.ROLE_INSTRUCTOR
+                    ? new Feed(kind, user.getId(), user.getEmail(), "Zajęcia – " + name, etag, now, today)
+                    : null;
+        }
+        return new Feed(kind, user.getId(), user.getEmail(), "Rezerwacje – " + name, etag, now, today);
+    }
+
+    private String newToken() {
+        byte[] bytes = new byte[24];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * Kanał ze znacznikiem wersji.
+     * @param subjectId ID użytkownika lub sali
+     * @param lastModified chwila utworzenia znacznika – treść kanału nie zmieniła się później
+     * @param day dzień utworzenia znacznika (okno kanału przesuwa się codziennie)
+     */
+    public record Feed(Kind kind, Long subjectId, String email, String title, String etag, Instant lastModified, LocalDate day) {
+    }
+}
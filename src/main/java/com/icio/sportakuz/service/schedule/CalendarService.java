@@ -0,0 +1,88 @@
+package com.icio.sportakuz.service.schedule;
+
+import com.icio.sportakuz.dto.booking.CalendarClassDto;
+import com.icio.sportakuz.repo.ActivityOccupancy;
+import com.icio.sportakuz.repo.ActivityRepository;
+import com.icio.sportakuz.repo.BookingRepository;
+import com.icio.sportakuz.repo.CalendarClassRow;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Odczyt harmonogramu z bazy (źródło dla {@link ScheduleSnapshotService} i zapytań spoza jej horyzontu).
+ * Dwa zapytania niezależnie od liczby zajęć: projekcja zajęć i obłożenie (GROUP BY) tych zajęć.
+ */
+@Service
+public class CalendarService {
+
+    public static final ZoneId ZONE = ZoneId.of("Europe/Warsaw");
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm");
+
+    private final ActivityRepository activityRepository;
+    private final BookingRepository bookingRepository;
+
+    public CalendarService(ActivityRepository activityRepository, BookingRepository bookingRepository) {
+        this.activityRepository = activityRepository;
+        this.bookingRepository = bookingRepository;
+    }
+
+    /**
+     * Nieanulowane, niezakończone przed {@code now} zajęcia zaczynające się w dniach [from, to) (daty w strefie Europe/Warsaw).
+     */
+    public List<ScheduledClass> load(LocalDate from, LocalDate to, OffsetDateTime now) {
+        return toScheduled(activityRepository.findCalendarRows(
+                from.atStartOfDay(ZONE).toOffsetDateTime(), to.atStartOfDay(ZONE).toOffsetDateTime(), now));
+    }
+
+    /**
+     * Najbliższe (maks. {@code limit}) widoczne zajęcia zaczynające się od {@code from}, opcjonalnie tylko danego instruktora.
+     */
+    public List<ScheduledClass> next(OffsetDateTime from, OffsetDateTime now, String instructorEmail, int limit) {
+        return toScheduled(activityRepository.findNextCalendarRows(from, now, instructorEmail, Pageable.ofSize(limit)));
+    }
+
+    private List<ScheduledClass> toScheduled(List<CalendarClassRow> rows) {
+        Map<Long, ActivityOccupancy> occupancy = bookingRepository.occupancyOf(rows.stream().map(CalendarClassRow::id).toList());
+        return rows.stream()
+                .map(c -> new ScheduledClass(toDto(c, occupancy.get(c.id())), c.startTime(), c.endTime(), c.status(), c.instructorEmail()))
+                .toList();
+    }
+
+    private CalendarClassDto toDto(CalendarClassRow c, ActivityOccupancy occupancy) {
+        var startZoned = c.startTime().atZoneSameInstant(ZONE);
+        var endZoned = c.endTime().atZoneSameInstant(ZONE);
+        int dayIndex = startZoned.getDayOfWeek().getValue() - 1; // Monday->0
+        String date = startZoned.toLocalDate().format(DateTimeFormatter.ISO_LOCAL_DATE); // yyyy-MM-dd
+        String time = startZoned.toLocalTime().format(TIME_FORMAT);
+        int duration = (int) Duration.between(startZoned, endZoned).toMinutes();
+        String spots = occupancy.spots(c.capacity());
+        String level = c.difficulty() != null ? c.difficulty().getDisplayName() : "Nie podano";
+        String substitutedFor = c.substitutedForLastName() != null
+                ? (c.substitutedForFirstName() + " " + c.substitutedForLastName())
+                : null;
+
+        return new CalendarClassDto(
+            c.id(),
+            c.typeName() != null ? c.typeName() : "Zajęcia",
+            dayIndex,
+            date,
+            time,
+            duration,
+            c.roomName() != null ? c.roomName() : "Sala",
+            c.instructorLastName() != null ? (c.instructorFirstName() + " " + c.instructorLastName()) : "Instruktor",
+            spots,
+            level == null ? "" : level,
+            substitutedFor,
+            substitutedFor != null
+        );
+    }
+}
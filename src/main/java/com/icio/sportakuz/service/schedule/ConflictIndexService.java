@@ -0,0 +1,126 @@
+package com.icio.sportakuz.service.schedule;
+
+import com.icio.sportakuz.repo.ActivityInterval;
+import com.icio.sportakuz.repo.ActivityRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Indeks kolizji sal i instruktorów: osobne {@link IntervalTree} dla każdej sali i każdego instruktora
+ * z nieanulowanymi wystąpieniami kończącymi się po chwili zbudowania indeksu ({@code horizon}).
+ * Sprawdzenie kolizji w formularzu (przy zapisie i podpowiedź przy zmianie pól) odpowiada z indeksu w O(log n + k),
+ * bez zapytań do bazy. Indeks może być chwilę nieaktualny (zmiana z innego serwera przed dotarciem outboxu) –
+ * taką kolizję odrzucają przy zapisie ograniczenia w bazie (migracja V6). Odświeżanie – zob. {@link ActivityIndexService};
+ * pełna przebudowa przesuwa też {@code horizon} i usuwa zakończone wystąpienia.
+ */
+@Service
+public class ConflictIndexService extends ActivityIndexService<ConflictIndexService.Trees> {
+
+    private static final Logger log = LoggerFactory.getLogger(ConflictIndexService.class);
+
+    private final ActivityRepository activityRepository;
+    /** Zaindeksowane przedziały wg ID wystąpienia – tylko dla zmian (pod blokadą indeksu). */
+    private final Map<Long, ActivityInterval> indexed = new HashMap<>();
+
+    public ConflictIndexService(ActivityRepository activityRepository) {
+        this.activityRepository = activityRepository;
+    }
+
+    /**
+     * Czy według indeksu sala jest zajęta przez inne nieanulowane wystąpienie w przedziale [start, end).
+     * Przedział zaczynający się przed {@code horizon} jest poza zakresem indeksu – wtedy false (rozstrzyga zapis).
+     * @param excludeId ID edytowanego wystąpienia (jego własny przedział nie jest kolizją) albo null
+     */
+    public boolean roomBusy(Long roomId, OffsetDateTime start, OffsetDateTime end, Long excludeId) {
+        Trees current = current();
+        return busy(current, current.byRoom().get(roomId), start, end, excludeId);
+    }
+
+    /** Jak {@link #roomBusy}, dla instruktora. */
+    public boolean instructorBusy(Long instructorId, OffsetDateTime start, OffsetDateTime end, Long excludeId) {
+        Trees current = current();
+        return busy(current, current.byInstructor().get(instructorId), start, end, excludeId);
+    }
+
+    @Override
+    public String name() {
+        return "conflict-index";
+    }
+
+    private static boolean busy(Trees trees, IntervalTree tree, OffsetDateTime start, OffsetDateTime end, Long excludeId) {
+        if (tree == null || start.isBefore(trees.horizon())) {
+            return false;
+        }
+        return tree.overlapping(millis(start), millis(end)).stream().anyMatch(id -> !id.equals(excludeId));
+    }
+
+    @Override
+    protected Trees build() {
+        OffsetDateTime horizon = OffsetDateTime.now();
+        List<ActivityInterval> intervals = activityRepository.findIntervalsEndingAfter(horizon);
+        indexed.clear();
+        intervals.forEach(i -> indexed.put(i.id(), i));
+        log.debug("[CONFLICT] Indeks: zbudowano z {} wystąpień", intervals.size());
+        return new Trees(horizon, build(intervals, ActivityInterval::roomId), build(intervals, ActivityInterval::instructorId));
+    }
+
+    @Override
+    protected Trees withChanges(Trees trees, Set<Long> activityIds) {
+        Map<Long, IntervalTree> byRoom = new HashMap<>(trees.byRoom());
+        Map<Long, IntervalTree> byInstructor = new HashMap<>(trees.byInstructor());
+        for (Long id : activityIds) {
+            ActivityInterval old = indexed.remove(id);
+            if (old != null) {
+                remove(byRoom, old.roomId(), old);
+                remove(byInstructor, old.instructorId(), old);
+            }
+        }
+        for (ActivityInterval interval : activityRepository.findIntervals(activityIds)) {
+            indexed.put(interval.id(), interval);
+            add(byRoom, interval.roomId(), interval);
+            add(byInstructor, interval.instructorId(), interval);
+        }
+        log.debug("[CONFLICT] Indeks: zaktualizowano {} wystąpień", activityIds.size());
+        return new Trees(trees.horizon(), byRoom, byInstructor);
+    }
+
+    private static Map<Long, IntervalTree> build(Collection<ActivityInterval> intervals,
+                                                 Function<ActivityInterval, Long> key) {
+        Map<Long, IntervalTree> trees = new HashMap<>();
+        intervals.forEach(i -> add(trees, key.apply(i), i));
+        return trees;
+    }
+
+    private static void add(Map<Long, IntervalTree> trees, Long key, ActivityInterval i) {
+        if (key == null) return;
+        trees.put(key, trees.getOrDefault(key, IntervalTree.EMPTY).with(i.id(), millis(i.startTime()), millis(i.endTime())));
+    }
+
+    private static void remove(Map<Long, IntervalTree> trees, Long key, ActivityInterval i) {
+        IntervalTree tree = key == null ? null : trees.get(key);
+        if (tree == null) return;
+        IntervalTree without = tree.without(i.id(), millis(i.startTime()));
+        if (without.isEmpty()) {
+            trees.remove(key);
+        } else {
+            trees.put(key, without);
+        }
+    }
+
+    private static long millis(OffsetDateTime time) {
+        return time.toInstant().toEpochMilli();
+    }
+
+    /** Bieżąca wersja indeksu: drzewa sal i instruktorów oraz chwila, od której obejmują wszystkie wystąpienia. */
+    record Trees(OffsetDateTime horizon, Map<Long, IntervalTree> byRoom, Map<Long, IntervalTree> byInstructor) {
+    }
+}
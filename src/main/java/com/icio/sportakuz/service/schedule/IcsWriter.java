@@ -0,0 +1,102 @@
+package com.icio.sportakuz.service.schedule;
+
+import com.icio.sportakuz.repo.CalendarFeedRow;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Zapis kalendarza w formacie iCalendar (RFC 5545) wydarzenie po wydarzeniu, prosto do strumienia odpowiedzi.
+ * Czasy w UTC, linie zakończone CRLF i zawijane po 75 bajtach UTF-8.
+ */
+final class IcsWriter {
+
+    private static final DateTimeFormatter UTC = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+    private static final int MAX_LINE_OCTETS = 75;
+
+    private final Writer out;
+    private final String stamp;
+
+    IcsWriter(Writer out, Instant now) {
+        this.out = out;
+        this.stamp = UTC.format(now);
+    }
+
+    /** Nagłówek kalendarza; klienci odświeżają subskrypcję co {@code refresh} (np. PT1H). */
+    void begin(String name, String refresh) {
+        line("BEGIN:VCALENDAR");
+        line("VERSION:2.0");
+        line("PRODID:-//SportakUZ//Grafik zajec//PL");
+        line("CALSCALE:GREGORIAN");
+        line("METHOD:PUBLISH");
+        line("X-WR-CALNAME:" + text(name));
+        line("REFRESH-INTERVAL;VALUE=DURATION:" + refresh);
+        line("X-PUBLISHED-TTL:" + refresh);
+    }
+
+    void event(CalendarFeedRow row) {
+        String instructor = row.instructorLastName() != null
+                ? row.instructorFirstName() + " " + row.instructorLastName()
+                : null;
+        String summary = row.typeName() != null ? row.typeName() : "Zajęcia";
+        line("BEGIN:VEVENT");
+        line("UID:activity-" + row.activityId() + "@sportakuz");
+        line("DTSTAMP:" + stamp);
+        line("DTSTART:" + utc(row.startTime()));
+        line("DTEND:" + utc(row.endTime()));
+        line("SUMMARY:" + text(row.waitlisted() ? summary + " (lista oczekujących)" : summary));
+        if (row.roomName() != null) line("LOCATION:" + text(row.roomName()));
+        if (instructor != null) line("DESCRIPTION:" + text("Instruktor: " + instructor));
+        line("STATUS:" + (row.waitlisted() ? "TENTATIVE" : "CONFIRMED"));
+        line("END:VEVENT");
+    }
+
+    void end() {
+        line("END:VCALENDAR");
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String utc(OffsetDateTime time) {
+        return UTC.format(time);
+    }
+
+    /** Znaki specjalne wartości tekstowych: \ ; , i nowa linia. */
+    static String text(String value) {
+        return value.replace("\\", "\\\\")
+                .replace(";", "\\;")
+                .replace(",", "\\,")
+                .replace("\r\n", "\\n")
+                .replace("\n", "\\n");
+    }
+
+    /** Linia zawijana po 75 bajtach (kontynuacja zaczyna się spacją), bez dzielenia znaków wielobajtowych. */
+    private void line(String content) {
+        try {
+            StringBuilder folded = new StringBuilder(content.length() + 8);
+            int octets = 0;
+            for (int i = 0; i < content.length(); ) {
+                int codePoint = content.codePointAt(i);
+                int size = codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4; // bajty UTF-8
+                if (octets + size > MAX_LINE_OCTETS) {
+                    folded.append("\r\n ");
+                    octets = 1;
+                }
+                folded.appendCodePoint(codePoint);
+                octets += size;
+                i += Character.charCount(codePoint);
+            }
+            out.write(folded.append("\r\n").toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.icio.sportakuz.service.schedule;
+
+import com.icio.sportakuz.entity.Activity;
+import com.icio.sportakuz.entity.User;
+import com.icio.sportakuz.repo.ActivityRepository;
+import com.icio.sportakuz.repo.InstructorInterval;
+import org.springframework.stereotype.Service;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dostępność instruktorów dla listy wystąpień (menu zmiany instruktora w panelu).
+ * Zajęte przedziały wszystkich aktywnych instruktorów z łącznego zakresu czasu strony pobierane są jednym zapytaniem,
+ * a kolizje wyliczane w pamięci przeglądaniem (sweep-line) osobno dla każdego instruktora
+ * – koszt to jedno zapytanie niezależnie od liczby instruktorów i wystąpień na stronie.
+ */
+@Service
+public class InstructorAvailabilityService {
+
+    private final ActivityRepository activityRepository;
+
+    public InstructorAvailabilityService(ActivityRepository activityRepository) {
+        this.activityRepository = activityRepository;
+    }
+
+    /**
+     * Dla każdego wystąpienia: aktywni instruktorzy (w kolejności z {@code instructors}), którzy w czasie zajęć
+     * nie prowadzą innych nieanulowanych zajęć; obecny instruktor wystąpienia jest zawsze dostępny.
+     * @return ID wystąpienia → dostępni instruktorzy
+     */
+    public Map<Long, List<User>> availableInstructors(List<Activity> activities, List<User> instructors) {
+        List<User> active = instructors.stream().filter(User::isActive).toList();
+        if (activities.isEmpty() || active.isEmpty()) {
+            return available(activities, active, List.of());
+        }
+        OffsetDateTime from = activities.stream().map(Activity::getStartTime).min(Comparator.naturalOrder()).orElseThrow();
+        OffsetDateTime to = activities.stream().map(Activity::getEndTime).max(Comparator.naturalOrder()).orElseThrow();
+        List<InstructorInterval> busy = activityRepository.findInstructorIntervals(
+                active.stream().map(User::getId).toList(), from, to);
+        return available(activities, active, busy);
+    }
+
+    /**
+     * Wylicza dostępność z gotowych zajętych przedziałów. Dla każdego instruktora: wystąpienia posortowane wg końca,
+     * jego przedziały wg początku – przesuwając się po obu listach, pamiętamy największy koniec przedziału
+     * zaczynającego się przed końcem bieżącego wystąpienia; kolizja jest wtedy, gdy ten koniec wypada po jego początku.
+     */
+    static Map<Long, List<User>> available(List<Activity> activities, List<User> activeInstructors,
+                                           List<InstructorInterval> busy) {
+        Map<Long, List<InstructorInterval>> byInstructor = new HashMap<>();
+        for (InstructorInterval interval : busy) {
+            byInstructor.computeIfAbsent(interval.instructorId(), id -> new ArrayList<>()).add(interval);
+        }
+        byInstructor.values().forEach(list -> list.sort(Comparator.comparing(InstructorInterval::startTime)));
+        List<Activity> byEnd = activities.stream().sorted(Comparator.comparing(Activity::getEndTime)).toList();
+
+        Map<Long, List<User>> result = new LinkedHashMap<>();
+        activities.forEach(a -> result.put(a.getId(), new ArrayList<>()));
+        for (User instructor : activeInstructors) {
+            List<InstructorInterval> intervals = byInstructor.getOrDefault(instructor.getId(), List.of());
+            int next = 0;
+            OffsetDateTime maxEnd = null;
+            for (Activity activity : byEnd) {
+                while (next < intervals.size() && intervals.get(next).startTime().isBefore(activity.getEndTime())) {
+                    OffsetDateTime end = intervals.get(next).endTime();
+                    if (maxEnd == null || end.isAfter(maxEnd)) maxEnd = end;
+                    next++;
+                }
+                boolean current = activity.getInstructor() != null && instructor.getId().equals(activity.getInstructor().getId());
+                if (current || maxEnd == null || !maxEnd.isAfter(activity.getStartTime())) {
+                    result.get(activity.getId()).add(instructor);
+                }
+            }
+        }
+        return result;
+    }
+}
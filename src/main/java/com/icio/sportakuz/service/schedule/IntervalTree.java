@@ -0,0 +1,110 @@
+package com.icio.sportakuz.service.schedule;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Niemutowalne drzewo przedziałów półotwartych [start, end) z ID wystąpienia (czasy w ms).
+ * Drzewiec (treap) uporządkowany po (start, id); każdy węzeł pamięta największy koniec przedziału w swoim poddrzewie,
+ * więc wyszukiwanie kolizji pomija poddrzewa kończące się przed zapytaniem – O(log n + k).
+ * Wstawienie i usunięcie kopiują tylko ścieżkę od korzenia (O(log n)), a poprzednia wersja drzewa pozostaje aktualna
+ * dla czytających ją wątków.
+ */
+final class IntervalTree {
+
+    static final IntervalTree EMPTY = new IntervalTree(null);
+
+    private final Node root;
+
+    private IntervalTree(Node root) {
+        this.root = root;
+    }
+
+    boolean isEmpty() {
+        return root == null;
+    }
+
+    /** Drzewo z dodanym przedziałem (wcześniej nieobecnym – zmianę przedziału robi się przez {@link #without}). */
+    IntervalTree with(long id, long start, long end) {
+        Node[] parts = split(root, start, id);
+        Node node = new Node(start, end, id, priority(id), null, null);
+        return new IntervalTree(merge(merge(parts[0], node), parts[1]));
+    }
+
+    /** Drzewo bez przedziału o podanym początku i ID (bez zmian, gdy go nie ma). */
+    IntervalTree without(long id, long start) {
+        Node[] lower = split(root, start, id);
+        Node[] upper = split(lower[1], start, id + 1);
+        return upper[0] == null ? this : new IntervalTree(merge(lower[0], upper[1]));
+    }
+
+    /** ID przedziałów nachodzących na [start, end), w kolejności początku; przedziały stykające się nie kolidują. */
+    List<Long> overlapping(long start, long end) {
+        List<Long> result = new ArrayList<>();
+        collect(root, start, end, result);
+        return result;
+    }
+
+    private static void collect(Node node, long start, long end, List<Long> result) {
+        if (node == null || node.maxEnd <= start) {
+            return; // całe poddrzewo kończy się przed zapytaniem
+        }
+        collect(node.left, start, end, result);
+        if (node.start >= end) {
+            return; // ten węzeł i prawe poddrzewo zaczynają się po zapytaniu
+        }
+        if (node.end > start) {
+            result.add(node.id);
+        }
+        collect(node.right, start, end, result);
+    }
+
+    /** Dzieli drzewo na węzły mniejsze od (start, id) i pozostałe. */
+    private static Node[] split(Node node, long start, long id) {
+        if (node == null) {
+            return new Node[]{null, null};
+        }
+        if (node.start < start || (node.start == start && node.id < id)) {
+            Node[] parts = split(node.right, start, id);
+            return new Node[]{node.withChildren(node.left, parts[0]), parts[1]};
+        }
+        Node[] parts = split(node.left, start, id);
+        return new Node[]{parts[0], node.withChildren(parts[1], node.right)};
+    }
+
+    /** Łączy drzewa, gdy wszystkie węzły {@code left} są mniejsze od węzłów {@code right}. */
+    private static Node merge(Node left, Node right) {
+        if (left == null) return right;
+        if (right == null) return left;
+        if (left.priority >= right.priority) {
+            return left.withChildren(left.left, merge(left.right, right));
+        }
+        return right.withChildren(merge(left, right.left), right.right);
+    }
+
+    /** Deterministyczny, dobrze rozrzucony priorytet z ID (mieszanie SplitMix64). */
+    private static long priority(long id) {
+        long z = id + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private record Node(long start, long end, long id, long priority, Node left, Node right, long maxEnd) {
+
+        Node(long start, long end, long id, long priority, Node left, Node right) {
+            this(start, end, id, priority, left, right, maxEnd(end, left, right));
+        }
+
+        Node withChildren(Node left, Node right) {
+            return left == this.left && right == this.right ? this : new Node(start, end, id, priority, left, right);
+        }
+
+        private static long maxEnd(long end, Node left, Node right) {
+            long max = end;
+            if (left != null) max = Math.max(max, left.maxEnd);
+            if (right != null) max = Math.max(max, right.maxEnd);
+            return max;
+        }
+    }
+}
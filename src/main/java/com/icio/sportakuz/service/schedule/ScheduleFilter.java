@@ -0,0 +1,74 @@
+package com.icio.sportakuz.service.schedule;
+
+import com.icio.sportakuz.repo.ActivityFacets;
+import com.icio.sportakuz.repo.DifficultyLevel;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Kryteria wyszukiwania w indeksie harmonogramu ({@link ScheduleIndex}). W obrębie jednej cechy wartości łączone są
+ * przez "lub", pomiędzy cechami – przez "i"; pusty zbiór / null oznacza brak ograniczenia.
+ * @param text początek nazwy typu, imienia lub nazwiska instruktora (bez rozróżniania wielkości liter)
+ * @param from początek przedziału czasu rozpoczęcia (włącznie)
+ * @param to koniec przedziału czasu rozpoczęcia (wyłącznie)
+ */
+public record ScheduleFilter(Set<Long> typeIds,
+                             Set<Long> roomIds,
+                             Set<Long> instructorIds,
+                             Set<DifficultyLevel> levels,
+                             String text,
+                             OffsetDateTime from,
+                             OffsetDateTime to) {
+
+    public ScheduleFilter {
+        typeIds = copy(typeIds);
+        roomIds = copy(roomIds);
+        instructorIds = copy(instructorIds);
+        levels = copy(levels);
+        text = (text == null || text.isBlank()) ? null : normalize(text.trim());
+    }
+
+    /** Bez ograniczeń – wszystkie bieżące wystąpienia. */
+    public static ScheduleFilter all() {
+        return new ScheduleFilter(null, null, null, null, null, null, null);
+    }
+
+    /** Tylko wyszukiwanie tekstowe (prefiks nazwy typu lub instruktora). */
+    public static ScheduleFilter text(String text) {
+        return new ScheduleFilter(null, null, null, null, text, null, null);
+    }
+
+    /** Czy filtr zawęża cokolwiek poza przedziałem czasu. */
+    public boolean hasFacets() {
+        return !typeIds.isEmpty() || !roomIds.isEmpty() || !instructorIds.isEmpty() || !levels.isEmpty() || text != null;
+    }
+
+    /** Sprawdzenie pojedynczego wystąpienia – dla zmian jeszcze niewłączonych do bitmap indeksu. */
+    boolean matches(ActivityFacets a) {
+        return (from == null || !a.startTime().isBefore(from))
+                && (to == null || a.startTime().isBefore(to))
+                && (typeIds.isEmpty() || (a.typeId() != null && typeIds.contains(a.typeId().longValue())))
+                && (roomIds.isEmpty() || roomIds.contains(a.roomId()))
+                && (instructorIds.isEmpty() || instructorIds.contains(a.instructorId()))
+                && (levels.isEmpty() || levels.contains(a.difficulty()))
+                && (text == null || startsWith(a.typeName()) || startsWith(a.instructorFirstName()) || startsWith(a.instructorLastName()));
+    }
+
+    /** Postać nazw w indeksie tekstowym. */
+    static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    private boolean startsWith(String name) {
+        return name != null && normalize(name).startsWith(text);
+    }
+
+    private static <T> Set<T> copy(Collection<T> values) {
+        return values == null ? Set.of() : values.stream().filter(Objects::nonNull).collect(Collectors.toUnmodifiableSet());
+    }
+}
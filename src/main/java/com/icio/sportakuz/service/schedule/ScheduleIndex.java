@@ -0,0 +1,181 @@
+package com.icio.sportakuz.service.schedule;
+
+import com.icio.sportakuz.repo.ActivityFacets;
+import com.icio.sportakuz.repo.DifficultyLevel;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Niemutowalny indeks bieżących wystąpień zajęć do filtrowania po typie, sali, instruktorze, poziomie trudności,
+ * początku nazwy i przedziale czasu. Wystąpienia leżą w tablicy posortowanej po czasie rozpoczęcia (pozycja = numer bitu),
+ * każda wartość cechy ma bitmapę pozycji, a zapytanie to kilka operacji OR/AND na bitmapach i wycinek tablicy
+ * wyznaczony wyszukiwaniem binarnym.
+ * Zmiany nie przebudowują bitmap: stara pozycja jest wygaszana w bitmapie {@code live}, a nowa wersja trafia
+ * na krótką, posortowaną listę zmian sprawdzaną bezpośrednio. Gdy lista urośnie ponad {@link #MAX_CHANGES},
+ * indeks jest budowany od nowa z tych samych danych (bez bazy).
+ */
+public final class ScheduleIndex {
+
+    /** Porządek wyników: czas rozpoczęcia, potem ID. */
+    static final Comparator<ActivityFacets> ORDER =
+            Comparator.comparing(ActivityFacets::startTime).thenComparing(ActivityFacets::id);
+    /** Maksymalna liczba zmian trzymanych poza bitmapami. */
+    static final int MAX_CHANGES = 512;
+
+    private final ActivityFacets[] entries;
+    /** Czas rozpoczęcia entries[i] w ms – do wyszukiwania binarnego. */
+    private final long[] starts;
+    private final Map<Long, Integer> positionOf;
+    private final Map<Long, BitSet> byType;
+    private final Map<Long, BitSet> byRoom;
+    private final Map<Long, BitSet> byInstructor;
+    private final Map<DifficultyLevel, BitSet> byLevel;
+    /** Nazwy (typ, imię, nazwisko instruktora) małymi literami – wyszukiwanie po początku nazwy to podmapa. */
+    private final NavigableMap<String, BitSet> byName;
+    /** Pozycje wciąż aktualne (niezastąpione zmianą). */
+    private final BitSet live;
+    /** Wystąpienia zmienione po zbudowaniu bitmap, posortowane wg {@link #ORDER}. */
+    private final List<ActivityFacets> changes;
+
+    ScheduleIndex(Collection<ActivityFacets> activities) {
+        this.entries = activities.toArray(ActivityFacets[]::new);
+        Arrays.sort(entries, ORDER);
+        this.starts = new long[entries.length];
+        this.positionOf = new HashMap<>();
+        this.byType = new HashMap<>();
+        this.byRoom = new HashMap<>();
+        this.byInstructor = new HashMap<>();
+        this.byLevel = new EnumMap<>(DifficultyLevel.class);
+        this.byName = new TreeMap<>();
+        for (int i = 0; i < entries.length; i++) {
+            ActivityFacets a = entries[i];
+            starts[i] = a.startTime().toInstant().toEpochMilli();
+            positionOf.put(a.id(), i);
+            if (a.typeId() != null) mark(byType, a.typeId().longValue(), i);
+            mark(byRoom, a.roomId(), i);
+            mark(byInstructor, a.instructorId(), i);
+            mark(byLevel, a.difficulty(), i);
+            for (String name : new String[]{a.typeName(), a.instructorFirstName(), a.instructorLastName()}) {
+                if (name != null && !name.isBlank()) mark(byName, ScheduleFilter.normalize(name), i);
+            }
+        }
+        this.live = new BitSet(entries.length);
+        live.set(0, entries.length);
+        this.changes = List.of();
+    }
+
+    private ScheduleIndex(ScheduleIndex base, BitSet live, List<ActivityFacets> changes) {
+        this.entries = base.entries;
+        this.starts = base.starts;
+        this.positionOf = base.positionOf;
+        this.byType = base.byType;
+        this.byRoom = base.byRoom;
+        this.byInstructor = base.byInstructor;
+        this.byLevel = base.byLevel;
+        this.byName = base.byName;
+        this.live = live;
+        this.changes = changes;
+    }
+
+    /** Wystąpienia spełniające filtr, w kolejności rozpoczęcia. */
+    public List<ActivityFacets> query(ScheduleFilter filter) {
+        int from = filter.from() == null ? 0 : lowerBound(filter.from());
+        int to = filter.to() == null ? entries.length : lowerBound(filter.to());
+        BitSet hits = new BitSet(entries.length);
+        if (from < to) {
+            hits.set(from, to);
+            hits.and(live);
+            restrict(hits, byType, filter.typeIds());
+            restrict(hits, byRoom, filter.roomIds());
+            restrict(hits, byInstructor, filter.instructorIds());
+            restrict(hits, byLevel, filter.levels());
+            if (filter.text() != null) {
+                hits.and(union(byName.subMap(filter.text(), true, filter.text() + Character.MAX_VALUE, false).values()));
+            }
+        }
+        List<ActivityFacets> result = new ArrayList<>(hits.cardinality());
+        for (int i = hits.nextSetBit(0); i >= 0; i = hits.nextSetBit(i + 1)) {
+            result.add(entries[i]);
+        }
+        int indexed = result.size();
+        for (ActivityFacets a : changes) {
+            if (filter.matches(a)) result.add(a);
+        }
+        if (result.size() > indexed) {
+            result.sort(ORDER); // dwie posortowane serie – scalenie w czasie liniowym
+        }
+        return result;
+    }
+
+    /** Liczba wystąpień w indeksie. */
+    public int size() {
+        return live.cardinality() + changes.size();
+    }
+
+    /**
+     * Nowy indeks po zmianie wystąpień {@code activityIds}; {@code current} to ich aktualne cechy
+     * (wystąpienia usunięte, anulowane lub zakończone po prostu w nim nie występują).
+     */
+    ScheduleIndex withChanges(Set<Long> activityIds, List<ActivityFacets> current) {
+        BitSet stillLive = (BitSet) live.clone();
+        for (Long id : activityIds) {
+            Integer position = positionOf.get(id);
+            if (position != null) stillLive.clear(position);
+        }
+        List<ActivityFacets> merged = new ArrayList<>(changes.size() + current.size());
+        for (ActivityFacets a : changes) {
+            if (!activityIds.contains(a.id())) merged.add(a);
+        }
+        merged.addAll(current);
+        if (merged.size() > MAX_CHANGES) {
+            for (int i = stillLive.nextSetBit(0); i >= 0; i = stillLive.nextSetBit(i + 1)) {
+                merged.add(entries[i]);
+            }
+            return new ScheduleIndex(merged);
+        }
+        merged.sort(ORDER);
+        return new ScheduleIndex(this, stillLive, List.copyOf(merged));
+    }
+
+    /** Pierwsza pozycja z rozpoczęciem nie wcześniejszym niż {@code time}. */
+    private int lowerBound(OffsetDateTime time) {
+        long millis = time.toInstant().toEpochMilli();
+        int lo = 0, hi = starts.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (starts[mid] < millis) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private static <K> void restrict(BitSet hits, Map<K, BitSet> facet, Set<K> values) {
+        if (!values.isEmpty()) {
+            hits.and(union(values.stream().map(facet::get).toList()));
+        }
+    }
+
+    private static BitSet union(Collection<BitSet> sets) {
+        BitSet union = new BitSet();
+        for (BitSet s : sets) {
+            if (s != null) union.or(s);
+        }
+        return union;
+    }
+
+    private static <K> void mark(Map<K, BitSet> facet, K value, int position) {
+        if (value != null) facet.computeIfAbsent(value, k -> new BitSet()).set(position);
+    }
+}
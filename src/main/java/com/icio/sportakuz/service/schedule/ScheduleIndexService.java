@@ -0,0 +1,62 @@
+package com.icio.sportakuz.service.schedule;
+
+import com.icio.sportakuz.repo.ActivityFacets;
+import com.icio.sportakuz.repo.ActivityRepository;
+import com.icio.sportakuz.service.outbox.ChangeEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Indeks bieżących wystąpień zajęć ({@link ScheduleIndex}) dla filtrów kalendarza i wyszukiwarki w panelu.
+ * Zapytania czytają bieżący indeks bez blokad i bez bazy. Przy zmianach zajęć doczytywane są cechy tylko zmienionych
+ * wystąpień (rezerwacje są pomijane); zmiana sali, typu lub instruktora buduje indeks od nowa, podobnie jak pełne
+ * odświeżenie co 10 minut – zob. {@link ActivityIndexService}.
+ */
+@Service
+public class ScheduleIndexService extends ActivityIndexService<ScheduleIndex> {
+
+    private static final Logger log = LoggerFactory.getLogger(ScheduleIndexService.class);
+
+    private final ActivityRepository activityRepository;
+
+    public ScheduleIndexService(ActivityRepository activityRepository) {
+        this.activityRepository = activityRepository;
+    }
+
+    /** Wystąpienia spełniające filtr, w kolejności rozpoczęcia. */
+    public List<ActivityFacets> search(ScheduleFilter filter) {
+        return current().query(filter);
+    }
+
+    /** ID wystąpień spełniających filtr. */
+    public Set<Long> ids(ScheduleFilter filter) {
+        return search(filter).stream().map(ActivityFacets::id).collect(Collectors.toSet());
+    }
+
+    @Override
+    public String name() {
+        return "schedule-index";
+    }
+
+    @Override
+    protected boolean requiresRebuild(List<ChangeEvent> events) {
+        return events.stream().anyMatch(e -> ScheduleSnapshotService.REFERENCE_CHANGES.contains(e.type()));
+    }
+
+    @Override
+    protected ScheduleIndex build() {
+        return new ScheduleIndex(activityRepository.findActivityFacets());
+    }
+
+    @Override
+    protected ScheduleIndex withChanges(ScheduleIndex index, Set<Long> activityIds) {
+        ScheduleIndex changed = index.withChanges(activityIds, activityRepository.findActivityFacets(activityIds));
+        log.debug("[SCHEDULE] Indeks: zaktualizowano {} wystąpień", activityIds.size());
+        return changed;
+    }
+}
@@ -0,0 +1,96 @@
+package com.icio.sportakuz.service.schedule;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * Niemutowalna migawka harmonogramu: widoczne zajęcia z dni [from, to) pogrupowane po dniu (strefa Europe/Warsaw)
+ * z numerem wersji rosnącym przy każdej zmianie. Zmiana tworzy nową migawkę, w której przebudowane dni są nowe,
+ * a pozostałe współdzielone z poprzednią – odczyt nie wymaga żadnych blokad.
+ */
+public final class ScheduleSnapshot {
+
+    private final long version;
+    private final LocalDate from;
+    private final LocalDate to;
+    private final NavigableMap<LocalDate, List<ScheduledClass>> days;
+    /** Dzień, w którym dane zajęcia są w migawce – do wyznaczenia dni do przebudowania. */
+    private final Map<Long, LocalDate> dayOf;
+
+    ScheduleSnapshot(long version, LocalDate from, LocalDate to, Map<LocalDate, List<ScheduledClass>> days) {
+        this.version = version;
+        this.from = from;
+        this.to = to;
+        NavigableMap<LocalDate, List<ScheduledClass>> copy = new TreeMap<>();
+        Map<Long, LocalDate> index = new HashMap<>();
+        days.forEach((day, classes) -> {
+            copy.put(day, List.copyOf(classes));
+            classes.forEach(c -> index.put(c.id(), day));
+        });
+        this.days = Collections.unmodifiableNavigableMap(copy);
+        this.dayOf = Collections.unmodifiableMap(index);
+    }
+
+    /** Numer wersji – rośnie przy każdej zmianie harmonogramu. */
+    public long version() {
+        return version;
+    }
+
+    /** Pierwszy dzień horyzontu migawki. */
+    public LocalDate from() {
+        return from;
+    }
+
+    /** Dzień tuż po horyzoncie migawki (wyłącznie). */
+    public LocalDate to() {
+        return to;
+    }
+
+    /** Czy dni [from, to) w całości mieszczą się w horyzoncie migawki. */
+    public boolean covers(LocalDate from, LocalDate to) {
+        return !from.isBefore(this.from) && !to.isAfter(this.to);
+    }
+
+    /** Zajęcia z dni [from, to) niezakończone przed {@code now}, w kolejności rozpoczęcia. */
+    public List<ScheduledClass> between(LocalDate from, LocalDate to, OffsetDateTime now) {
+        List<ScheduledClass> result = new ArrayList<>();
+        for (List<ScheduledClass> day : days.subMap(from, true, to, false).values()) {
+            for (ScheduledClass c : day) {
+                if (!c.endTime().isBefore(now)) result.add(c);
+            }
+        }
+        return result;
+    }
+
+    /** Najbliższe (maks. {@code limit}) niezakończone zajęcia spełniające warunek. */
+    public List<ScheduledClass> next(OffsetDateTime now, Predicate<ScheduledClass> filter, int limit) {
+        List<ScheduledClass> result = new ArrayList<>();
+        for (List<ScheduledClass> day : days.values()) {
+            for (ScheduledClass c : day) {
+                if (result.size() == limit) return result;
+                if (!c.endTime().isBefore(now) && filter.test(c)) result.add(c);
+            }
+        }
+        return result;
+    }
+
+    /** Dzień, w którym zajęcia są w migawce (null, jeśli ich nie ma). */
+    LocalDate dayOf(Long activityId) {
+        return dayOf.get(activityId);
+    }
+
+    /** Nowa wersja migawki z podmienionymi dniami (pozostałe dni bez zmian). */
+    ScheduleSnapshot withDays(Map<LocalDate, List<ScheduledClass>> rebuilt) {
+        Map<LocalDate, List<ScheduledClass>> merged = new TreeMap<>(days);
+        merged.putAll(rebuilt);
+        return new ScheduleSnapshot(version + 1, from, to, merged);
+    }
+}
@@ -0,0 +1,156 @@
+package com.icio.sportakuz.service.schedule;
+
+import com.icio.sportakuz.dto.booking.CalendarClassDto;
+import com.icio.sportakuz.repo.ActivityRepository;
+import com.icio.sportakuz.repo.OutboxEventType;
+import com.icio.sportakuz.service.outbox.ChangeEvent;
+import com.icio.sportakuz.service.outbox.OutboxConsumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Migawka najbliższego harmonogramu ({@link ScheduleSnapshot}) współdzielona przez kalendarz i pulpity.
+ * Odczyty czytają bieżącą migawkę bez blokad i bez zapytań do bazy. Zmiany zajęć i rezerwacji przychodzą z outboxu
+ * (ulotny konsument – każdy kontekst ma własną migawkę): przebudowywane są tylko dni zmienionych zajęć, a wersja rośnie.
+ * Zmiana sali, typu zajęć lub instruktora przebudowuje całą migawkę. Pełna przebudowa co 10 minut przesuwa horyzont.
+ */
+@Service
+public class ScheduleSnapshotService implements OutboxConsumer {
+
+    private static final Logger log = LoggerFactory.getLogger(ScheduleSnapshotService.class);
+
+    /** Liczba dni (od dziś) trzymanych w migawce. */
+    private static final int HORIZON_DAYS = 28;
+    /** Zdarzenia zmieniające wiele zajęć naraz (nazwa sali, typu, instruktora) – przebudowa całej migawki. */
+    static final Set<OutboxEventType> REFERENCE_CHANGES = EnumSet.of(
+            OutboxEventType.ROOM_UPDATED, OutboxEventType.ACTIVITY_TYPE_UPDATED, OutboxEventType.INSTRUCTOR_UPDATED);
+
+    private final CalendarService calendarService;
+    private final ActivityRepository activityRepository;
+    private volatile ScheduleSnapshot snapshot;
+
+    public ScheduleSnapshotService(CalendarService calendarService, ActivityRepository activityRepository) {
+        this.calendarService = calendarService;
+        this.activityRepository = activityRepository;
+    }
+
+    /** Bieżąca migawka (przy pierwszym odczycie budowana z bazy). */
+    public ScheduleSnapshot current() {
+        ScheduleSnapshot current = snapshot;
+        return current != null ? current : initialize();
+    }
+
+    /**
+     * Zajęcia kalendarza z dni [from, to) – z podanej migawki (tej samej, z której wersji powstał ETag odpowiedzi),
+     * a poza jej horyzontem z bazy.
+     */
+    public List<CalendarClassDto> calendar(ScheduleSnapshot snapshot, LocalDate from, LocalDate to) {
+        OffsetDateTime now = OffsetDateTime.now();
+        List<ScheduledClass> classes = snapshot.covers(from, to)
+                ? snapshot.between(from, to, now)
+                : calendarService.load(from, to, now);
+        return classes.stream().map(ScheduledClass::calendar).toList();
+    }
+
+    /**
+     * Najbliższe (maks. {@code limit}) widoczne zajęcia, opcjonalnie tylko danego instruktora ({@code instructorEmail} = null – wszystkie).
+     * Gdy w horyzoncie migawki jest ich mniej, reszta jest dobierana z bazy.
+     */
+    public List<ScheduledClass> upcoming(int limit, String instructorEmail) {
+        ScheduleSnapshot current = current();
+        OffsetDateTime now = OffsetDateTime.now();
+        List<ScheduledClass> result = current.next(now,
+                c -> instructorEmail == null || instructorEmail.equals(c.instructorEmail()), limit);
+        if (result.size() < limit) {
+            result = new ArrayList<>(result);
+            result.addAll(calendarService.next(current.to().atStartOfDay(CalendarService.ZONE).toOffsetDateTime(),
+                    now, instructorEmail, limit - result.size()));
+        }
+        return result;
+    }
+
+    /** Co 10 minut pełna przebudowa (pierwsza tuż po ustawieniu pozycji konsumenta w outboxie). */
+    @Scheduled(fixedDelay = 10 * 60 * 1000, initialDelay = 15 * 1000)
+    public void refresh() {
+        rebuildAll();
+    }
+
+    @Override
+    public String name() {
+        return "schedule-snapshot";
+    }
+
+    @Override
+    public boolean durable() {
+        return false;
+    }
+
+    @Override
+    public void accept(List<ChangeEvent> events) {
+        if (snapshot == null) {
+            return; // migawka zostanie zbudowana przy pierwszym odczycie – już ze zmianami
+        }
+        if (events.stream().anyMatch(e -> REFERENCE_CHANGES.contains(e.type()))) {
+            rebuildAll();
+            return;
+        }
+        Set<Long> activityIds = events.stream()
+                .map(ChangeEvent::activityId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        if (!activityIds.isEmpty()) {
+            rebuildActivities(activityIds);
+        }
+    }
+
+    private synchronized ScheduleSnapshot initialize() {
+        return snapshot != null ? snapshot : rebuildAll();
+    }
+
+    private synchronized ScheduleSnapshot rebuildAll() {
+        LocalDate from = LocalDate.now(CalendarService.ZONE);
+        LocalDate to = from.plusDays(HORIZON_DAYS);
+        Map<LocalDate, List<ScheduledClass>> days = new HashMap<>();
+        for (ScheduledClass c : calendarService.load(from, to, OffsetDateTime.now())) {
+            days.computeIfAbsent(c.startTime().atZoneSameInstant(CalendarService.ZONE).toLocalDate(), d -> new ArrayList<>()).add(c);
+        }
+        long version = snapshot == null ? 1 : snapshot.version() + 1;
+        snapshot = new ScheduleSnapshot(version, from, to, days);
+        return snapshot;
+    }
+
+    /** Przebudowuje dni, w których zmienione zajęcia były lub są teraz (zajęcia mogły zostać przeniesione). */
+    private synchronized void rebuildActivities(Set<Long> activityIds) {
+        ScheduleSnapshot current = snapshot;
+        Set<LocalDate> days = new TreeSet<>();
+        for (Long id : activityIds) {
+            LocalDate day = current.dayOf(id);
+            if (day != null) days.add(day);
+        }
+        for (OffsetDateTime start : activityRepository.findStartTimes(activityIds)) {
+            LocalDate day = start.atZoneSameInstant(CalendarService.ZONE).toLocalDate();
+            if (current.covers(day, day.plusDays(1))) days.add(day);
+        }
+        OffsetDateTime now = OffsetDateTime.now();
+        Map<LocalDate, List<ScheduledClass>> rebuilt = new HashMap<>();
+        for (LocalDate day : days) {
+            rebuilt.put(day, calendarService.load(day, day.plusDays(1), now));
+        }
+        snapshot = current.withDays(rebuilt);
+        log.debug("[SCHEDULE] Migawka v{}: przebudowano dni {}", snapshot.version(), days);
+    }
+}
@@ -0,0 +1,97 @@
+package com.icio.sportakuz.service.schedule;
+
+import com.icio.sportakuz.repo.OutboxEventRepository;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Principal;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.stream.Collectors;
+
+/**
+ * Wersja harmonogramu i rezerwacji dla warunkowych GET-ów (ETag / If-None-Match → 304).
+ * Wersją jest pozycja zmian w outboxie ({@link OutboxEventRepository#findChangePosition()}) – każda zmiana zajęć,
+ * rezerwacji czy danych słownikowych zapisuje tam zdarzenie w tej samej transakcji. Sprawdzenie kosztuje jedno
+ * zapytanie po indeksie, wykonywane zanim kontroler załaduje jakiekolwiek encje.
+ */
+@Component
+public class ScheduleVersion {
+
+    /** Przeglądarka może trzymać stronę, ale przy każdym wyświetleniu musi ją zwalidować. */
+    private static final String CACHE_CONTROL = "private, no-cache";
+
+    private final OutboxEventRepository eventRepository;
+    /** Chwila startu – po wdrożeniu (nowe szablony, skrypty) wszystkie ETagi się zmieniają. */
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    public ScheduleVersion(OutboxEventRepository eventRepository) {
+        this.eventRepository = eventRepository;
+    }
+
+    /**
+     * ETag widoku z danymi harmonogramu lub rezerwacji: wersja zmian, bieżąca minuta (zakończone zajęcia znikają z widoków
+     * bez żadnego zdarzenia) i zakres widoku (np. użytkownik, język).
+     */
+    public String scheduleETag(Object... scope) {
+        return etag(eventRepository.findChangePosition() + "@" + Instant.now().getEpochSecond() / 60, scope);
+    }
+
+    /**
+     * ETag widoku renderowanego z migawki harmonogramu: jej wersja i bieżąca minuta. Migawka jest odświeżana z outboxu
+     * z opóźnieniem, więc pozycja zmian w bazie ({@link #scheduleETag}) mogłaby już wskazywać zmianę, której treść
+     * jeszcze nie zawiera – i przeglądarka zapamiętałaby starą treść pod nowym ETagiem.
+     */
+    public String snapshotETag(ScheduleSnapshot snapshot, Object... scope) {
+        return etag("snapshot:" + snapshot.version() + "@" + Instant.now().getEpochSecond() / 60, scope);
+    }
+
+    /** ETag widoku bez danych z bazy – zależy tylko od wdrożenia i zakresu widoku. */
+    public String pageETag(Object... scope) {
+        return etag("page", scope);
+    }
+
+    /**
+     * Ustawia Cache-Control i sprawdza If-None-Match. Gdy zwraca true, odpowiedź 304 jest gotowa
+     * – kontroler powinien od razu zwrócić null (bez ładowania danych i renderowania widoku).
+     */
+    public boolean checkNotModified(ServletWebRequest request, String etag) {
+        if (request.getResponse() != null) {
+            request.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        }
+        return request.checkNotModified(etag);
+    }
+
+    /** Zakres widoku zależny od zalogowanego użytkownika: login i role (menu w nagłówku strony). */
+    public static String viewer(Principal principal) {
+        if (principal == null) {
+            return "anonymous";
+        }
+        if (principal instanceof Authentication auth) {
+            return auth.getName() + auth.getAuthorities().stream()
+                    .map(GrantedAuthority::getAuthority)
+                    .sorted()
+                    .collect(Collectors.joining(",", "[", "]"));
+        }
+        return principal.getName();
+    }
+
+    private String etag(String version, Object[] scope) {
+        StringBuilder key = new StringBuilder(epoch).append('|').append(version);
+        for (Object part : scope) {
+            key.append('|').append(part);
+        }
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(key.toString().getBytes(StandardCharsets.UTF_8));
+            return "\"" + HexFormat.of().formatHex(hash, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.icio.sportakuz.service.schedule;
+
+import com.icio.sportakuz.dto.booking.CalendarClassDto;
+import com.icio.sportakuz.repo.ClassStatus;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Pozycja harmonogramu: gotowe DTO kalendarza oraz pola potrzebne pulpitom (czas, status, e-mail prowadzącego).
+ * Pozycje w {@link ScheduleSnapshot} są współdzielone przez wszystkie żądania – DTO nie wolno modyfikować.
+ */
+public record ScheduledClass(CalendarClassDto calendar,
+                             OffsetDateTime startTime,
+                             OffsetDateTime endTime,
+                             ClassStatus status,
+                             String instructorEmail) {
+
+    public Long id() {
+        return calendar.getId();
+    }
+}
@@ -0,0 +1,213 @@
+package com.icio.sportakuz.service.schedule;
+
+import com.icio.sportakuz.repo.ActivityRepository;
+import com.icio.sportakuz.repo.SeatAvailability;
+import com.icio.sportakuz.service.outbox.ChangeEvent;
+import com.icio.sportakuz.service.outbox.OutboxConsumer;
+import jakarta.annotation.PreDestroy;
+import jakarta.json.Json;
+import jakarta.json.stream.JsonGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Strumień SSE zmian dostępności miejsc (GET /api/calendar/stream). Zmiany przychodzą z outboxu (ulotny konsument),
+ * są zbierane per zajęcia i co sekundę wysyłane jedną partią {activityId, reserved, waitlisted, capacity}
+ * – jedno zapytanie i jeden JSON na partię, niezależnie od liczby subskrybentów.
+ * Bezczynny subskrybent to tylko otwarte żądanie asynchroniczne (bez wątku); wysyłką zajmują się wątki wirtualne,
+ * osobno dla każdego subskrybenta i po kolei, więc wolny klient nie blokuje pozostałych.
+ */
+@Component
+public class SeatAvailabilityStream implements OutboxConsumer {
+
+    private static final Logger log = LoggerFactory.getLogger(SeatAvailabilityStream.class);
+
+    /** Maksymalna liczba jednoczesnych subskrybentów. */
+    private static final int MAX_SUBSCRIBERS = 50_000;
+    /** Po tym czasie połączenie jest zamykane – EventSource sam połączy się ponownie. */
+    private static final long STREAM_TIMEOUT_MS = 30 * 60 * 1000;
+    /** Po ilu milisekundach przeglądarka ma się połączyć ponownie po zerwaniu. */
+    private static final long RECONNECT_MS = 5000;
+    /** Tyle niewysłanych komunikatów może czekać na subskrybenta – wolniejszy klient jest rozłączany. */
+    private static final int MAX_QUEUED = 64;
+    private static final Message PING = new Message(null, null);
+
+    private final ActivityRepository activityRepository;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    /** Zajęcia ze zmianami od ostatniej wysyłki. */
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+
+    public SeatAvailabilityStream(ActivityRepository activityRepository) {
+        this.activityRepository = activityRepository;
+    }
+
+    /** Nowy subskrybent albo null, gdy osiągnięto limit połączeń. */
+    public SseEmitter subscribe() {
+        if (subscribers.size() >= MAX_SUBSCRIBERS) {
+            return null;
+        }
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MS);
+        Subscriber subscriber = new Subscriber(emitter);
+        subscribers.add(subscriber);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscriber.offer(PING); // od razu wysyła nagłówki i czas ponownego połączenia
+        return emitter;
+    }
+
+    @Override
+    public String name() {
+        return "seat-availability-stream";
+    }
+
+    @Override
+    public boolean durable() {
+        return false;
+    }
+
+    @Override
+    public void accept(List<ChangeEvent> events) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        for (ChangeEvent e : events) {
+            if (e.activityId() != null) {
+                pending.add(e.activityId());
+            }
+        }
+    }
+
+    /** Co sekundę wysyła zebrane zmiany (wiele zmian tych samych zajęć = jedna pozycja). */
+    @Scheduled(fixedDelay = 1000, initialDelay = 10 * 1000)
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Set<Long> activityIds = new HashSet<>();
+        for (Long id : pending) {
+            if (pending.remove(id)) activityIds.add(id);
+        }
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        String json = toJson(activityRepository.findSeatAvailability(activityIds));
+        broadcast(new Message("seats", json));
+    }
+
+    /** Komentarz co 25 s – utrzymuje połączenia przez proxy i wykrywa rozłączonych klientów. */
+    @Scheduled(fixedDelay = 25 * 1000, initialDelay = 25 * 1000)
+    public void heartbeat() {
+        broadcast(PING);
+    }
+
+    /** Liczba aktywnych subskrybentów. */
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        subscribers.forEach(Subscriber::close);
+        senders.shutdownNow();
+    }
+
+    private void broadcast(Message message) {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(message);
+        }
+    }
+
+    private static String toJson(List<SeatAvailability> seats) {
+        StringWriter out = new StringWriter();
+        try (JsonGenerator json = Json.createGenerator(out)) {
+            json.writeStartArray();
+            for (SeatAvailability s : seats) {
+                json.writeStartObject()
+                        .write("activityId", s.activityId())
+                        .write("reserved", s.reserved())
+                        .write("waitlisted", s.waitlisted())
+                        .write("capacity", s.capacity())
+                        .writeEnd();
+            }
+            json.writeEnd();
+        }
+        return out.toString();
+    }
+
+    /** Komunikat do wysłania: zdarzenie z danymi albo (name = null) komentarz podtrzymujący połączenie. */
+    private record Message(String name, String data) {
+        SseEmitter.SseEventBuilder toEvent() {
+            return name == null
+                    ? SseEmitter.event().comment("ping").reconnectTime(RECONNECT_MS)
+                    : SseEmitter.event().name(name).data(data);
+        }
+    }
+
+    /** Subskrybent z własną kolejką – komunikaty wysyłane po kolei, co najwyżej jeden wątek naraz. */
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final Queue<Message> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicBoolean sending = new AtomicBoolean();
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void offer(Message message) {
+            if (queued.incrementAndGet() > MAX_QUEUED) {
+                close();
+                return;
+            }
+            queue.add(message);
+            if (sending.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            do {
+                Message message;
+                while ((message = queue.poll()) != null) {
+                    queued.decrementAndGet();
+                    try {
+                        emitter.send(message.toEvent());
+                    } catch (IOException | IllegalStateException e) {
+                        // klient się rozłączył – przestajemy do niego pisać
+                        subscribers.remove(this);
+                        return;
+                    }
+                }
+                sending.set(false);
+            } while (!queue.isEmpty() && sending.compareAndSet(false, true));
+        }
+
+        void close() {
+            if (subscribers.remove(this)) {
+                try {
+                    emitter.complete();
+                } catch (RuntimeException e) {
+                    log.debug("[SSE] Zamknięcie strumienia nie powiodło się: {}", e.getMessage());
+                }
+            }
+        }
+    }
+}
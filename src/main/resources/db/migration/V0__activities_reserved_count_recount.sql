@@ -0,0 +1,8 @@
+-- Kolumna reserved_count dodana przez hbm2ddl (update) ma wartość 0 dla istniejących zajęć – przeliczenie
+-- z tabeli bookings, zanim pierwsza rezerwacja przejdzie przez warunkowe UPDATE ... WHERE reserved_count < capacity.
+UPDATE activities a SET reserved_count = c.active
+FROM (SELECT a2.id, count(b.id) AS active
+      FROM activities a2
+      LEFT JOIN bookings b ON b.class_id = a2.id AND b.status IN ('REQUESTED', 'CONFIRMED', 'PAID')
+      GROUP BY a2.id) c
+WHERE a.id = c.id AND a.reserved_count <> c.active;
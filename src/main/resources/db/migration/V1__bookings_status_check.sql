@@ -0,0 +1,4 @@
+-- hbm2ddl (update) nie odświeża ograniczenia CHECK dla kolumny enum utworzonego przed dodaniem statusu WAITLISTED.
+ALTER TABLE bookings DROP CONSTRAINT IF EXISTS bookings_status_check;
+ALTER TABLE bookings ADD CONSTRAINT bookings_status_check
+    CHECK (status IN ('REQUESTED', 'CONFIRMED', 'PAID', 'CANCELLED', 'WAITLISTED'));
@@ -0,0 +1,20 @@
+-- Co najwyżej jedna "żywa" rezerwacja (zajmująca miejsce lub oczekująca) użytkownika na dane zajęcia.
+-- Istniejące duplikaty (poza najstarszym) są anulowane, a liczniki reserved_count przeliczane.
+WITH ranked AS (
+    SELECT id, row_number() OVER (PARTITION BY class_id, user_name ORDER BY id) AS rn
+    FROM bookings
+    WHERE status IN ('REQUESTED', 'CONFIRMED', 'PAID', 'WAITLISTED')
+)
+UPDATE bookings b SET status = 'CANCELLED', cancelled_at = now()
+FROM ranked r
+WHERE b.id = r.id AND r.rn > 1;
+
+UPDATE activities a SET reserved_count = c.active
+FROM (SELECT a2.id, count(b.id) AS active
+      FROM activities a2
+      LEFT JOIN bookings b ON b.class_id = a2.id AND b.status IN ('REQUESTED', 'CONFIRMED', 'PAID')
+      GROUP BY a2.id) c
+WHERE a.id = c.id AND a.reserved_count <> c.active;
+
+CREATE UNIQUE INDEX IF NOT EXISTS uq_bookings_live_user ON bookings (class_id, user_name)
+    WHERE status IN ('REQUESTED', 'CONFIRMED', 'PAID', 'WAITLISTED');
@@ -0,0 +1,3 @@
+-- Ograniczenie CHECK tworzone przez hbm2ddl dla kolumny enum blokowałoby nowe typy zdarzeń (update go nie odświeża).
+-- Typ zdarzenia kontroluje aplikacja (OutboxEventType), więc ograniczenie jest usuwane.
+ALTER TABLE outbox_events DROP CONSTRAINT IF EXISTS outbox_events_type_check;
@@ -0,0 +1,3 @@
+-- Indeks idx_bookings_archive_user (user_name) zastąpił idx_bookings_archive_user_start (user_name, class_start_time, id)
+-- tworzony przez hbm2ddl – stary jest zbędnym prefiksem nowego, a hbm2ddl (update) go nie usuwa.
+DROP INDEX IF EXISTS idx_bookings_archive_user;
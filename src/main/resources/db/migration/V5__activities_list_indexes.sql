@@ -0,0 +1,15 @@
+-- Lista wystąpień w panelu (ClassOccurrenceController.list) stronicowana w bazie: indeksy częściowe dla bieżących
+-- wystąpień (kolejność wg startu, a w obrębie typu / instruktora – dla sortowania po nazwie) i dla historii.
+-- Predykaty muszą odpowiadać warunkom zapytań ActivityRepository.findUpcomingPage / findHistoryBefore.
+CREATE INDEX IF NOT EXISTS idx_activities_upcoming_start ON activities (start_time, id)
+    WHERE status NOT IN ('CANCELLED', 'FINISHED');
+CREATE INDEX IF NOT EXISTS idx_activities_upcoming_type ON activities (type_id, start_time, id)
+    WHERE status NOT IN ('CANCELLED', 'FINISHED');
+CREATE INDEX IF NOT EXISTS idx_activities_upcoming_instructor ON activities (instructor_id, start_time, id)
+    WHERE status NOT IN ('CANCELLED', 'FINISHED');
+CREATE INDEX IF NOT EXISTS idx_activities_history_start ON activities (start_time, id)
+    WHERE status IN ('CANCELLED', 'FINISHED');
+
+-- Sortowanie wg nazwy typu / nazwiska instruktora bez rozróżniania wielkości liter.
+CREATE INDEX IF NOT EXISTS idx_types_of_activity_name_lower ON types_of_activity (lower(activity_name));
+CREATE INDEX IF NOT EXISTS idx_users_name_lower ON users (lower(last_name), lower(first_name));
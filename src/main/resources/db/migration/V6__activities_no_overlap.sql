@@ -0,0 +1,57 @@
+-- Brak kolizji wystąpień zajęć w bazie: ta sama sala ani ten sam instruktor nie mogą mieć dwóch nieanulowanych
+-- wystąpień o nakładających się przedziałach [start_time, end_time) – dwa równoległe zapisy z panelu nie przejdą
+-- już obu sprawdzeń w aplikacji. Nazwy ograniczeń rozpoznaje ActivityOverlap (komunikaty w formularzach).
+-- btree_gist: równość na room_id / instructor_id w indeksie GiST (rozszerzenie zaufane od PostgreSQL 13).
+CREATE EXTENSION IF NOT EXISTS btree_gist;
+
+-- Kolizje zapisane przed tą migracją (zakończone zajęcia, serie generowane bez sprawdzania kolizji) nie blokują startu:
+-- z każdej kolidującej pary późniejsze wystąpienie (wyższe ID) dostaje overlap_legacy = true i ograniczenia go
+-- nie obejmują. Kolumny nie mapuje encja – nowe wystąpienia mają false. Przyszłe wystąpienia z listy trzeba przenieść
+-- lub odwołać ręcznie (formularz i tak zgłosi kolizję przy edycji); ich ID trafiają do logu jako ostrzeżenie.
+-- Zmiana czasu, sali, instruktora albo przywrócenie odwołanego wystąpienia zdejmuje flagę (wyzwalacz niżej) – od tej
+-- chwili wystąpienie podlega ograniczeniom jak każde inne, więc nie da się go przenieść na zajęty termin.
+ALTER TABLE activities ADD COLUMN IF NOT EXISTS overlap_legacy boolean NOT NULL DEFAULT false;
+
+UPDATE activities SET overlap_legacy = true
+WHERE id IN (SELECT b.id
+             FROM activities a
+             JOIN activities b ON a.id < b.id
+                 AND (a.room_id = b.room_id OR a.instructor_id = b.instructor_id)
+                 AND a.start_time < b.end_time AND b.start_time < a.end_time
+             WHERE a.status <> 'CANCELLED' AND b.status <> 'CANCELLED');
+
+DO $$
+DECLARE
+    upcoming text;
+BEGIN
+    SELECT string_agg(id::text, ', ' ORDER BY id) INTO upcoming
+    FROM activities
+    WHERE overlap_legacy AND status <> 'CANCELLED' AND end_time > now();
+    IF upcoming IS NOT NULL THEN
+        RAISE WARNING 'Przyszłe wystąpienia zajęć kolidujące z innymi (sala lub instruktor) – do przeniesienia lub odwołania, ID: %', upcoming;
+    END IF;
+END $$;
+
+ALTER TABLE activities ADD CONSTRAINT ex_activities_room_overlap
+    EXCLUDE USING gist (room_id WITH =, tstzrange(start_time, end_time) WITH &&)
+    WHERE (status <> 'CANCELLED' AND NOT overlap_legacy);
+ALTER TABLE activities ADD CONSTRAINT ex_activities_instructor_overlap
+    EXCLUDE USING gist (instructor_id WITH =, tstzrange(start_time, end_time) WITH &&)
+    WHERE (status <> 'CANCELLED' AND NOT overlap_legacy);
+
+CREATE OR REPLACE FUNCTION activities_clear_overlap_legacy() RETURNS trigger AS $$
+BEGIN
+    NEW.overlap_legacy := false;
+    RETURN NEW;
+END $$ LANGUAGE plpgsql;
+
+-- Hibernate zapisuje wszystkie kolumny – porównanie wartości zamiast UPDATE OF kolumny
+CREATE TRIGGER trg_activities_clear_overlap_legacy
+    BEFORE UPDATE ON activities
+    FOR EACH ROW
+    WHEN (OLD.overlap_legacy AND (OLD.start_time IS DISTINCT FROM NEW.start_time
+                                  OR OLD.end_time IS DISTINCT FROM NEW.end_time
+                                  OR OLD.room_id IS DISTINCT FROM NEW.room_id
+                                  OR OLD.instructor_id IS DISTINCT FROM NEW.instructor_id
+                                  OR (OLD.status = 'CANCELLED' AND NEW.status <> 'CANCELLED')))
+    EXECUTE FUNCTION activities_clear_overlap_legacy();
@@ -7,6 +7,7 @@
             spots: "Miejsca:",
             limit: "Osiągnięto limit 999 rezerwacji. Usuń niektóre rezerwacje.",
             success: "Rezerwacja została potwierdzona!",
+            waitlisted: "Brak wolnych miejsc – jesteś na liście oczekujących (pozycja {0}).",
             error: "Wystąpił błąd. Spróbuj ponownie.",
             connError: "Wystąpił błąd połączenia."
         },
@@ -15,6 +16,7 @@
             spots: "Spots:",
             limit: "Reservation limit (999) reached. Please cancel some bookings.",
             success: "Reservation confirmed!",
+            waitlisted: "No spots left – you are on the waitlist (position {0}).",
             error: "An error occurred. Please try again.",
             connError: "Connection error."
         }
@@ -42,10 +44,11 @@
     let selectedClass = null;
     let userReservations = [];
 
-    const classes = window.__activities;
-    if(window.__activities == null){
-        console.log("Brak danych activities");
-    }
+    // Zajęcia bieżącego tygodnia; tygodnie pobierane z /api/calendar na żądanie i trzymane w pamięci
+    // (klucz: data poniedziałku + wybrane filtry, wartość: Promise z listą zajęć) – sąsiednie tygodnie są pobierane z wyprzedzeniem
+    let classes = [];
+    const weeks = new Map();
+    const calendarApi = window.__calendarApi || '/SportakUZ_war_exploded/api/calendar';
 
     const dataHandler = {
         onDataChanged(data) { userReservations = data; }
@@ -80,8 +83,97 @@
                 ])
             });
         }
+        showWeek();
+        loadFacets();
+        subscribeSeats();
+    }
+
+    function isoDate(date){
+        return date.getFullYear() + '-' + String(date.getMonth()+1).padStart(2,'0') + '-' + String(date.getDate()).padStart(2,'0');
+    }
+
+    function shiftDays(date, days){
+        const shifted = new Date(date); shifted.setDate(shifted.getDate() + days);
+        return shifted;
+    }
+
+    // Filtry (typ, sala, instruktor, poziom) – wartości z /api/calendar/facets, wybrane dopisywane do zapytań tygodni
+    function filterQuery(){
+        return Array.from(document.querySelectorAll('.calendar-filters select'))
+            .filter(s => s.value)
+            .map(s => `&${s.dataset.param}=${encodeURIComponent(s.value)}`)
+            .join('');
+    }
+
+    function loadFacets(){
+        fetch(calendarApi + '/facets', { headers: { 'Accept': 'application/json' } })
+            .then(r => r.ok ? r.json() : Promise.reject(new Error('HTTP ' + r.status)))
+            .then(facets => {
+                [['filter-type', facets.types], ['filter-room', facets.rooms],
+                 ['filter-instructor', facets.instructors], ['filter-level', facets.levels]].forEach(([id, options]) => {
+                    const select = document.getElementById(id);
+                    if(!select) return;
+                    options.forEach(o => select.add(new Option(o.name, o.id)));
+                });
+            })
+            .catch(e => console.error('Calendar filters load error', e));
+    }
+
+    function loadWeek(weekStart){
+        const key = isoDate(weekStart) + filterQuery();
+        if(!weeks.has(key)){
+            const url = `${calendarApi}?from=${isoDate(weekStart)}&to=${isoDate(shiftDays(weekStart, 7))}${filterQuery()}`;
+            const request = fetch(url, { headers: { 'Accept': 'application/json' } })
+                .then(r => r.ok ? r.json() : Promise.reject(new Error('HTTP ' + r.status)))
+                .catch(e => { weeks.delete(key); throw e; });
+            weeks.set(key, request);
+        }
+        return weeks.get(key);
+    }
+
+    function showWeek(){
+        const weekStart = new Date(currentWeekStart);
+        const key = isoDate(weekStart) + filterQuery();
+        classes = [];
         renderCalendar();
         updateWeekDisplay();
+        loadWeek(weekStart)
+            .then(list => {
+                if(isoDate(currentWeekStart) + filterQuery() !== key) return; // użytkownik zmienił już tydzień lub filtry
+                classes = list;
+                renderCalendar();
+            })
+            .catch(e => console.error('Calendar load error', e))
+            .finally(() => {
+                loadWeek(shiftDays(weekStart, 7)).catch(() => {});
+                loadWeek(shiftDays(weekStart, -7)).catch(() => {});
+            });
+    }
+
+    // Na żywo: strumień SSE ze zmianami wolnych miejsc – aktualizuje bieżący tydzień i tygodnie w pamięci
+    function subscribeSeats(){
+        if(!window.EventSource) return;
+        const source = new EventSource(calendarApi + '/stream');
+        let connected = false;
+        source.addEventListener('open', () => {
+            // po ponownym połączeniu mogły nas ominąć zmiany – tygodnie w pamięci są nieaktualne
+            if(connected){ weeks.clear(); showWeek(); }
+            connected = true;
+        });
+        source.addEventListener('seats', (e) => {
+            const changes = new Map();
+            JSON.parse(e.data).forEach(s => changes.set(s.activityId,
+                `${s.reserved}/${s.capacity}` + (s.waitlisted > 0 ? ` (+${s.waitlisted})` : '')));
+            const apply = list => list.forEach(c => { if(changes.has(c.id)) c.spots = changes.get(c.id); });
+            apply(classes);
+            weeks.forEach(request => request.then(apply).catch(() => {}));
+            renderCalendar();
+            const modal = document.getElementById('modal');
+            if(selectedClass && changes.has(selectedClass.id) && modal && modal.classList.contains('active')){
+                selectedClass.spots = changes.get(selectedClass.id);
+                const el = document.getElementById('modal-spots'); if(el) el.textContent = selectedClass.spots;
+            }
+        });
     }
 
     function colorCap(config, prop){
@@ -141,9 +233,8 @@
         calendarBody.innerHTML = '';
 
         for(let day=0; day<7; day++){
-            const date = new Date(currentWeekStart);
-            date.setDate(date.getDate() + day);
-            const iso = date.getFullYear() + '-' + String(date.getMonth()+1).padStart(2,'0') + '-' + String(date.getDate()).padStart(2,'0');
+            const date = shiftDays(currentWeekStart, day);
+            const iso = isoDate(date);
 
             let dayName = date.toLocaleDateString(lang, { weekday: 'long' });
             dayName = dayName.charAt(0).toUpperCase() + dayName.slice(1);
@@ -227,12 +318,15 @@ ${substitutionLine}
 
         fetch('/SportakUZ_war_exploded/api/bookings/create', {
             method: 'POST',
-            headers: { 'Content-Type': 'application/json' },
+            headers: { 'Content-Type': 'application/json', 'Idempotency-Key': crypto.randomUUID() },
             body: JSON.stringify({ classId: selectedClass.id})
         }).then(r => r.json().then(body => ({ ok: r.ok, body })))
+            .then(result => (result.ok && result.body && result.body.ticket) ? pollTicket(result.body.ticket, 500) : result)
             .then(result => {
                 confirmBtn.disabled = false; confirmBtn.textContent = originalText;
-                if(result.ok){
+                if(result.ok && result.body && result.body.position){
+                    showMessage(messageEl, t.waitlisted.replace('{0}', result.body.position), '#f59e0b');
+                } else if(result.ok){
                     showMessage(messageEl, t.success ,'#10b981');
                     const nameInput = document.getElementById('user-name'); if(nameInput) nameInput.value='';
                     if(result.body && result.body.spots){
@@ -254,14 +348,25 @@ ${substitutionLine}
         });
     }
 
+    // Tryb rush: rezerwacja dostała bilet – odpytujemy jego status (z rosnącym odstępem) aż do przydziału miejsca
+    function pollTicket(ticket, delay){
+        return new Promise(resolve => setTimeout(resolve, delay))
+            .then(() => fetch('/SportakUZ_war_exploded/api/bookings/tickets/' + encodeURIComponent(ticket)))
+            .then(r => r.json().then(body => ({ ok: r.ok, body })))
+            .then(result => (result.ok && result.body && result.body.ticket)
+                ? pollTicket(ticket, Math.min(delay * 2, 4000))
+                : result);
+    }
+
     function showMessage(el, text, bg){ if(!el) return; el.textContent = text; el.style.background = bg; el.style.display='block'; }
 
     function wireEvents(){
-        const prev = document.getElementById('prev-week'); if(prev) prev.addEventListener('click', () => { currentWeekStart.setDate(currentWeekStart.getDate() - 7); renderCalendar(); updateWeekDisplay(); });
-        const next = document.getElementById('next-week'); if(next) next.addEventListener('click', () => { currentWeekStart.setDate(currentWeekStart.getDate() + 7); renderCalendar(); updateWeekDisplay(); });
+        const prev = document.getElementById('prev-week'); if(prev) prev.addEventListener('click', () => { currentWeekStart.setDate(currentWeekStart.getDate() - 7); showWeek(); });
+        const next = document.getElementById('next-week'); if(next) next.addEventListener('click', () => { currentWeekStart.setDate(currentWeekStart.getDate() + 7); showWeek(); });
         const close = document.getElementById('close-modal'); if(close) close.addEventListener('click', () => { const modal = document.getElementById('modal'); if(modal) modal.classList.remove('active'); });
         const modalRoot = document.getElementById('modal'); if(modalRoot) modalRoot.addEventListener('click', (e) => { if(e.target.id === 'modal'){ modalRoot.classList.remove('active'); } });
         const confirmBtn = document.getElementById('confirm-booking'); if(confirmBtn) confirmBtn.addEventListener('click', handleBooking);
+        document.querySelectorAll('.calendar-filters select').forEach(s => s.addEventListener('change', showWeek));
     }
 
     document.addEventListener('DOMContentLoaded', () => { wireEvents(); initializeApp(); });
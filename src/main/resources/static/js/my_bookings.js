@@ -62,7 +62,7 @@
             currentReservationCard.style.transform = 'scale(0.96)';
             fetch('/SportakUZ_war_exploded/api/bookings/cancel', {
                 method: 'POST',
-                headers: { 'Content-Type': 'application/json' },
+                headers: { 'Content-Type': 'application/json', 'Idempotency-Key': crypto.randomUUID() },
                 body: JSON.stringify({ bookingId })
             }).then(r => r.json().then(body => ({ok:r.ok, body})))
                 .then(result => {
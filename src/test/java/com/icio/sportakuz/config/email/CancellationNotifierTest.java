@@ -0,0 +1,90 @@
+package com.icio.sportakuz.config.email;
+
+import com.icio.sportakuz.repo.ActivityRepository;
+import com.icio.sportakuz.repo.OutboxEventType;
+import com.icio.sportakuz.service.outbox.ChangeEvent;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+
+import java.time.OffsetDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class CancellationNotifierTest {
+
+    private final JavaMailSender mailSender = mock(JavaMailSender.class);
+    private final CancellationNotifier notifier = new CancellationNotifier(mailSender, mock(ActivityRepository.class));
+
+    private static ChangeEvent cancelled(long id, String userName) {
+        return new ChangeEvent(id, OutboxEventType.BOOKING_CANCELLED_BY_ACTIVITY, 7L, id, userName,
+                "2026-10-20 18:00", OffsetDateTime.now());
+    }
+
+    private static SimpleMailMessage to(String address) {
+        return argThat(m -> m != null && m.getTo() != null && m.getTo()[0].equals(address));
+    }
+
+    @Test
+    @DisplayName("Should skip rejected recipients and resend only transiently failed messages")
+    void shouldSkipPermanentFailuresAndRetryTransientOnes() {
+        // given
+        Map<Object, Exception> failed = new LinkedHashMap<>();
+        doAnswer(invocation -> {
+            Object[] batch = invocation.getArguments();
+            failed.put(batch[1], new SendFailedException("550 no such user"));
+            failed.put(batch[2], new MessagingException("421 try again later"));
+            throw new MailSendException(failed);
+        }).when(mailSender).send(any(SimpleMailMessage[].class));
+
+        // when
+        notifier.accept(List.of(cancelled(1, "anna@uz.pl"), cancelled(2, "nobody@uz.pl"), cancelled(3, "piotr@uz.pl")));
+
+        // then
+        verify(mailSender).send(to("piotr@uz.pl"));
+        verify(mailSender, never()).send(to("nobody@uz.pl"));
+        verify(mailSender, never()).send(to("anna@uz.pl"));
+    }
+
+    @Test
+    @DisplayName("Should rethrow when nothing was sent so the relay retries the batch")
+    void shouldRethrowWhenNothingWasSent() {
+        // given
+        doAnswer(invocation -> {
+            Map<Object, Exception> failed = new LinkedHashMap<>();
+            for (Object message : invocation.getArguments()) {
+                failed.put(message, new MessagingException("Connection refused"));
+            }
+            throw new MailSendException(failed);
+        }).when(mailSender).send(any(SimpleMailMessage[].class));
+
+        // when / then
+        assertThatThrownBy(() -> notifier.accept(List.of(cancelled(1, "anna@uz.pl"), cancelled(2, "piotr@uz.pl"))))
+                .isInstanceOf(MailSendException.class);
+        verify(mailSender, never()).send(any(SimpleMailMessage.class));
+    }
+
+    @Test
+    @DisplayName("Should not rethrow when the only failure is a rejected recipient")
+    void shouldNotRethrowPermanentFailure() {
+        // given
+        doThrow(new MailSendException(Map.of(new SimpleMailMessage(), new SendFailedException("550 no such user"))))
+                .when(mailSender).send(any(SimpleMailMessage[].class));
+
+        // when
+        notifier.accept(List.of(cancelled(1, "nobody@uz.pl")));
+
+        // then
+        assertThat(mockingDetails(mailSender).getInvocations()).hasSize(1);
+    }
+}
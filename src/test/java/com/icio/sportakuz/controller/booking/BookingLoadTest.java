@@ -0,0 +1,321 @@
+package com.icio.sportakuz.controller.booking;
+
+import com.icio.sportakuz.config.BookingConfig;
+import com.icio.sportakuz.config.PersistenceConfig;
+import com.icio.sportakuz.config.SchemaMigrator;
+import com.icio.sportakuz.entity.Activity;
+import com.icio.sportakuz.entity.ActivityType;
+import com.icio.sportakuz.entity.Room;
+import com.icio.sportakuz.entity.User;
+import com.icio.sportakuz.entity.UserRole;
+import com.icio.sportakuz.repo.ActivityRepository;
+import com.icio.sportakuz.repo.ActivityTypeRepository;
+import com.icio.sportakuz.repo.ClassStatus;
+import com.icio.sportakuz.repo.OutboxEventType;
+import com.icio.sportakuz.repo.RoomRepository;
+import com.icio.sportakuz.repo.UserRepository;
+import com.icio.sportakuz.service.booking.SeatLedger;
+import com.icio.sportakuz.service.outbox.ChangeEvent;
+import com.icio.sportakuz.service.outbox.InMemoryOutboxConsumer;
+import com.icio.sportakuz.service.outbox.OutboxRelay;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.security.Principal;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test obciążeniowy ścieżki rezerwacji: BookingApiController (create/delete/cancel) na wbudowanym PostgreSQL,
+ * tysiące równoległych wywołań z wątków wirtualnych. Raportuje p50/p99 i przepustowość oraz sprawdza,
+ * że żadne zajęcia nie przekroczyły pojemności (również w trakcie testu), nikt nie ma dwóch aktywnych rezerwacji,
+ * podwójne anulowanie tej samej rezerwacji zwalnia miejsce raz,
+ * a outbox zawiera zdarzenie dla każdej zatwierdzonej zmiany rezerwacji.
+ * Uruchamiany tylko w profilu: {@code mvn test -Pload-test} (wbudowany PostgreSQL nie działa jako root).
+ */
+@Tag("load")
+class BookingLoadTest {
+
+    private static final int ACTIVITIES = 20;
+    private static final int CAPACITY = 25;
+    private static final int USERS = 200;
+    private static final int OPERATIONS = 5_000;
+    /** Udział operacji delete (reszta to create). */
+    private static final double DELETE_RATIO = 0.25;
+    /**
+     * Maksymalna liczba równoległych wywołań – odpowiednik puli wątków / połączeń serwera
+     * (DataSource wbudowanej bazy nie ma puli, każde wywołanie otwiera własne połączenie).
+     */
+    private static final int MAX_IN_FLIGHT = 64;
+    /** Liczba rezerwacji anulowanych po teście dwoma równoległymi wywołaniami /cancel. */
+    private static final int DOUBLE_CANCELS = 100;
+
+    private static final String LIVE_STATUSES = "('REQUESTED','CONFIRMED','PAID')";
+
+    private static EmbeddedPostgres postgres;
+
+    @BeforeAll
+    static void startDatabase() throws Exception {
+        postgres = EmbeddedPostgres.builder().setServerConfig("max_connections", "200").start();
+        LoadTestPersistenceConfig.dataSource = postgres.getPostgresDatabase();
+    }
+
+    @AfterAll
+    static void stopDatabase() throws Exception {
+        if (postgres != null) {
+            postgres.close();
+        }
+    }
+
+    @ParameterizedTest(name = "booking mode: {0}")
+    @ValueSource(strings = {"direct", "sharded"})
+    @DisplayName("Should never exceed capacity nor double-book a user under concurrent create/delete/cancel")
+    void shouldHoldInvariantsUnderLoad(String mode) throws Exception {
+        // given
+        System.setProperty("sportakuz.booking.mode", mode);
+        try (AnnotationConfigApplicationContext ctx = new AnnotationConfigApplicationContext(LoadTestConfig.class)) {
+            String marker = "loadtest-" + mode;
+            List<Long> activityIds = seed(ctx, marker);
+            BookingApiController controller = ctx.getBean(BookingApiController.class);
+            JdbcTemplate jdbc = new JdbcTemplate(ctx.getBean(DataSource.class));
+
+            long[] latencies = new long[OPERATIONS];
+            Map<Integer, AtomicInteger> statuses = new ConcurrentHashMap<>();
+            Map<String, AtomicInteger> errors = new ConcurrentHashMap<>();
+            AtomicLong overbookedSamples = new AtomicLong();
+            AtomicBoolean running = new AtomicBoolean(true);
+            Thread sampler = Thread.ofPlatform().start(() -> {
+                while (running.get()) {
+                    overbookedSamples.addAndGet(overbooked(jdbc, marker));
+                    try {
+                        Thread.sleep(5);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+
+            // when
+            Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+            long start = System.nanoTime();
+            try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < OPERATIONS; i++) {
+                    int op = i;
+                    pool.submit(() -> {
+                        ThreadLocalRandom random = ThreadLocalRandom.current();
+                        String userName = "member" + random.nextInt(USERS) + "@" + marker;
+                        Principal principal = () -> userName;
+                        Long classId = activityIds.get(random.nextInt(activityIds.size()));
+                        ResponseEntity<?> response;
+                        inFlight.acquireUninterruptibly();
+                        long t0 = System.nanoTime();
+                        try {
+                            response = random.nextDouble() < DELETE_RATIO
+                                    ? controller.delete(new BookingApiController.DeleteBookingRequest(classId, null), principal)
+                                    : controller.create(new BookingApiController.CreateBookingRequest(classId, null), principal);
+                            statuses.computeIfAbsent(response.getStatusCode().value(), k -> new AtomicInteger()).incrementAndGet();
+                        } catch (RuntimeException e) {
+                            statuses.computeIfAbsent(500, k -> new AtomicInteger()).incrementAndGet();
+                            errors.computeIfAbsent(rootCause(e), k -> new AtomicInteger()).incrementAndGet();
+                        } finally {
+                            latencies[op] = System.nanoTime() - t0;
+                            inFlight.release();
+                        }
+                    });
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+
+            // równoległe anulowania tej samej rezerwacji – skutek (zwolnienie miejsca / awans) ma tylko jedno z nich
+            List<Long> live = jdbc.queryForList("select b.id from bookings b join activities a on a.id = b.class_id"
+                    + " where a.note = ? and b.status in ('REQUESTED','CONFIRMED','PAID','WAITLISTED') order by b.id limit ?",
+                    Long.class, marker, DOUBLE_CANCELS);
+            AtomicInteger cancelled = new AtomicInteger();
+            try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (Long bookingId : live) {
+                    for (int copy = 0; copy < 2; copy++) {
+                        pool.submit(() -> {
+                            inFlight.acquireUninterruptibly();
+                            try {
+                                ResponseEntity<?> response = controller.cancel(new BookingApiController.CancelBookingRequest(bookingId));
+                                if (response.getStatusCode().value() == 200) {
+                                    cancelled.incrementAndGet();
+                                }
+                            } catch (RuntimeException e) {
+                                statuses.computeIfAbsent(500, k -> new AtomicInteger()).incrementAndGet();
+                                errors.computeIfAbsent(rootCause(e), k -> new AtomicInteger()).incrementAndGet();
+                            } finally {
+                                inFlight.release();
+                            }
+                        });
+                    }
+                }
+            }
+            running.set(false);
+            sampler.join();
+
+            // then
+            report(mode, latencies, elapsed, statuses);
+            errors.forEach((error, count) -> System.out.printf("[LOAD] mode=%s %dx %s%n", mode, count.get(), error));
+            assertThat(overbookedSamples.get()).as("activities over capacity seen during the run").isZero();
+            assertThat(overbooked(jdbc, marker)).as("activities over capacity").isZero();
+            assertThat(jdbc.queryForObject("""
+                    select count(*) from (
+                        select b.class_id, b.user_name from bookings b join activities a on a.id = b.class_id
+                        where a.note = ? and b.status in ('REQUESTED','CONFIRMED','PAID','WAITLISTED')
+                        group by b.class_id, b.user_name having count(*) > 1) d
+                    """, Long.class, marker)).as("users holding two active bookings").isZero();
+            assertThat(jdbc.queryForObject("select count(*) from activities a where a.note = ? and a.reserved_count <> ("
+                    + "select count(*) from bookings b where b.class_id = a.id and b.status in " + LIVE_STATUSES + ")",
+                    Long.class, marker)).as("activities with reserved_count drift").isZero();
+            assertThat(statuses.getOrDefault(500, new AtomicInteger()).get()).as("server errors").isZero();
+            assertThat(cancelled.get()).as("successful cancels of the same booking").isEqualTo(live.size());
+
+            // każda zatwierdzona zmiana rezerwacji ma dokładnie jedno zdarzenie w outboxie
+            List<ChangeEvent> events = drainOutbox(ctx).eventsFor(activityIds);
+            assertThat(events.stream().filter(e -> e.type() == OutboxEventType.BOOKING_CREATED
+                    || e.type() == OutboxEventType.BOOKING_WAITLISTED).count())
+                    .as("booking created events").isEqualTo(countBookings(jdbc, marker, null));
+            assertThat(events.stream().filter(e -> e.type() == OutboxEventType.BOOKING_CANCELLED).count())
+                    .as("booking cancelled events").isEqualTo(countBookings(jdbc, marker, "CANCELLED"));
+        } finally {
+            System.clearProperty("sportakuz.booking.mode");
+        }
+    }
+
+    /** Dostarcza wszystkie zaległe zdarzenia outboxu do konsumenta testowego. */
+    private static InMemoryOutboxConsumer drainOutbox(AnnotationConfigApplicationContext ctx) {
+        OutboxRelay relay = ctx.getBean(OutboxRelay.class);
+        InMemoryOutboxConsumer consumer = ctx.getBean(InMemoryOutboxConsumer.class);
+        int delivered;
+        do {
+            delivered = consumer.deliveries();
+            relay.relay();
+        } while (consumer.deliveries() != delivered);
+        return consumer;
+    }
+
+    /** Liczba rezerwacji (opcjonalnie w danym statusie) na zajęcia z testu. */
+    private static long countBookings(JdbcTemplate jdbc, String marker, String status) {
+        return jdbc.queryForObject("select count(*) from bookings b join activities a on a.id = b.class_id"
+                + " where a.note = ? and (cast(? as varchar) is null or b.status = ?)", Long.class, marker, status, status);
+    }
+
+    /** Liczba zajęć, na które aktywnych rezerwacji jest więcej niż miejsc. */
+    private static long overbooked(JdbcTemplate jdbc, String marker) {
+        return jdbc.queryForObject("select count(*) from activities a where a.note = ? and ("
+                + "select count(*) from bookings b where b.class_id = a.id and b.status in " + LIVE_STATUSES
+                + ") > a.capacity", Long.class, marker);
+    }
+
+    private static List<Long> seed(AnnotationConfigApplicationContext ctx, String marker) {
+        User instructor = new User();
+        instructor.setEmail("instructor@" + marker);
+        instructor.setPassword("x");
+        instructor.setRole(UserRole.ROLE_INSTRUCTOR);
+        ctx.getBean(UserRepository.class).save(instructor);
+        List<User> members = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            User u = new User();
+            u.setEmail("member" + i + "@" + marker);
+            u.setPassword("x");
+            u.setRole(UserRole.ROLE_USER);
+            members.add(u);
+        }
+        ctx.getBean(UserRepository.class).saveAll(members);
+
+        Room room = new Room();
+        room.setName("Sala " + marker);
+        room.setCapacity(CAPACITY);
+        ctx.getBean(RoomRepository.class).save(room);
+        ActivityType type = new ActivityType();
+        type.setActivityName("Load " + marker);
+        type.setDuration(60);
+        ctx.getBean(ActivityTypeRepository.class).save(type);
+
+        List<Activity> activities = new ArrayList<>();
+        OffsetDateTime start = OffsetDateTime.now().plusDays(7);
+        for (int i = 0; i < ACTIVITIES; i++) {
+            Activity a = new Activity();
+            a.setType(type);
+            a.setInstructor(instructor);
+            a.setRoom(room);
+            a.setStartTime(start.plusHours(i));
+            a.setDurationMinutes(60);
+            a.setCapacity(CAPACITY);
+            a.setStatus(ClassStatus.OPEN);
+            a.setNote(marker);
+            activities.add(a);
+        }
+        return ctx.getBean(ActivityRepository.class).saveAll(activities).stream().map(Activity::getId).toList();
+    }
+
+    private static void report(String mode, long[] latencies, long elapsedNanos, Map<Integer, AtomicInteger> statuses) {
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        System.out.printf("[LOAD] mode=%s ops=%d time=%.2fs throughput=%.0f ops/s p50=%.2fms p99=%.2fms max=%.2fms statuses=%s%n",
+                mode, OPERATIONS, elapsedNanos / 1e9, OPERATIONS / (elapsedNanos / 1e9),
+                percentile(sorted, 50) / 1e6, percentile(sorted, 99) / 1e6, sorted[sorted.length - 1] / 1e6, statuses);
+    }
+
+    private static String rootCause(Throwable e) {
+        Throwable cause = e;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        return cause.getClass().getSimpleName() + ": " + cause.getMessage();
+    }
+
+    private static long percentile(long[] sorted, int p) {
+        int index = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(index, 0)];
+    }
+
+    /** Prawdziwa konfiguracja JPA z DataSource wbudowanego PostgreSQL zamiast JNDI. */
+    @Configuration
+    static class LoadTestPersistenceConfig extends PersistenceConfig {
+        static DataSource dataSource;
+
+        @Override
+        @Bean
+        public DataSource dataSource() {
+            return dataSource;
+        }
+    }
+
+    @Configuration
+    @ComponentScan(basePackageClasses = {SeatLedger.class, OutboxRelay.class})
+    @Import({LoadTestPersistenceConfig.class, SchemaMigrator.class, BookingConfig.class, BookingApiController.class})
+    static class LoadTestConfig {
+        @Bean
+        InMemoryOutboxConsumer outboxConsumer() {
+            return new InMemoryOutboxConsumer("load-test", true);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.icio.sportakuz.service.booking;
+
+import com.icio.sportakuz.dto.booking.BookingHistoryDto;
+import com.icio.sportakuz.repo.BookingArchiveRepository;
+import com.icio.sportakuz.repo.BookingHistoryRow;
+import com.icio.sportakuz.repo.BookingRepository;
+import com.icio.sportakuz.repo.BookingStatus;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Pageable;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BookingHistoryServiceTest {
+
+    private static final OffsetDateTime DAY = OffsetDateTime.parse("2025-03-01T00:00:00+01:00");
+
+    private final BookingRepository bookingRepository = mock(BookingRepository.class);
+    private final BookingArchiveRepository archiveRepository = mock(BookingArchiveRepository.class);
+    private final BookingHistoryService service = new BookingHistoryService(bookingRepository, archiveRepository);
+
+    private static BookingHistoryRow row(long id, int hour) {
+        OffsetDateTime start = DAY.plusHours(hour);
+        return new BookingHistoryRow(id, BookingStatus.CONFIRMED, start, start.plusHours(1), "Joga", "Sala A", "Anna", "Nowak");
+    }
+
+    private void givenRows(List<BookingHistoryRow> live, List<BookingHistoryRow> archived) {
+        when(bookingRepository.findHistoryBefore(eq("anna@uz.pl"), any(), any(), anyLong(), any())).thenReturn(live);
+        when(archiveRepository.findHistoryBefore(eq("anna@uz.pl"), any(), any(), anyLong(), any())).thenReturn(archived);
+    }
+
+    @Test
+    @DisplayName("Should merge live and archived rows newest first, skip duplicates and point the cursor at the last item")
+    void shouldMergeAndDeduplicateRows() {
+        // given – rezerwacja 3 przeniesiona do archiwum między zapytaniami jest w obu wynikach
+        givenRows(List.of(row(5, 10), row(3, 8)), List.of(row(3, 8), row(4, 9), row(1, 6)));
+
+        // when
+        BookingHistoryService.Page page = service.page("anna@uz.pl", null, 3);
+
+        // then
+        assertThat(page.items()).extracting(BookingHistoryDto::id).containsExactly(5L, 4L, 3L);
+        BookingHistoryService.Cursor next = BookingHistoryService.Cursor.decode(page.next());
+        assertThat(next.startTime().toInstant()).isEqualTo(DAY.plusHours(8).toInstant());
+        assertThat(next.id()).isEqualTo(3L);
+    }
+
+    @Test
+    @DisplayName("Should not offer a next page when the duplicate was the only extra row")
+    void shouldNotCountDuplicateAsNextPage() {
+        // given
+        givenRows(List.of(row(5, 10), row(3, 8)), List.of(row(3, 8)));
+
+        // when
+        BookingHistoryService.Page page = service.page("anna@uz.pl", null, 2);
+
+        // then
+        assertThat(page.items()).extracting(BookingHistoryDto::id).containsExactly(5L, 3L);
+        assertThat(page.next()).isNull();
+    }
+
+    @Test
+    @DisplayName("Should query both tables from the cursor with one extra row and the same current time")
+    void shouldQueryBothTablesFromCursor() {
+        // given
+        givenRows(List.of(), List.of());
+        BookingHistoryService.Cursor cursor = BookingHistoryService.Cursor.of(row(7, 12));
+
+        // when
+        service.page("anna@uz.pl", cursor.encode(), 20);
+
+        // then
+        ArgumentCaptor<OffsetDateTime> endedBefore = ArgumentCaptor.forClass(OffsetDateTime.class);
+        ArgumentCaptor<OffsetDateTime> startedBefore = ArgumentCaptor.forClass(OffsetDateTime.class);
+        ArgumentCaptor<OffsetDateTime> liveStart = ArgumentCaptor.forClass(OffsetDateTime.class);
+        verify(bookingRepository).findHistoryBefore(eq("anna@uz.pl"), endedBefore.capture(), liveStart.capture(),
+                eq(7L), eq(Pageable.ofSize(21)));
+        verify(archiveRepository).findHistoryBefore(eq("anna@uz.pl"), startedBefore.capture(), eq(liveStart.getValue()),
+                eq(7L), eq(Pageable.ofSize(21)));
+        assertThat(startedBefore.getValue()).isEqualTo(endedBefore.getValue());
+        assertThat(liveStart.getValue().toInstant()).isEqualTo(DAY.plusHours(12).toInstant());
+    }
+
+    @Test
+    @DisplayName("Should round-trip the cursor without losing sub-second precision")
+    void shouldRoundTripCursor() {
+        // given
+        OffsetDateTime start = OffsetDateTime.parse("2025-03-01T18:30:00.123456+01:00");
+        BookingHistoryService.Cursor cursor = new BookingHistoryService.Cursor(start, 12345L);
+
+        // when
+        BookingHistoryService.Cursor decoded = BookingHistoryService.Cursor.decode(cursor.encode());
+
+        // then
+        assertThat(decoded.startTime().toInstant()).isEqualTo(start.toInstant());
+        assertThat(decoded.id()).isEqualTo(12345L);
+    }
+
+    @Test
+    @DisplayName("Should reject malformed cursors")
+    void shouldRejectMalformedCursor() {
+        assertThatThrownBy(() -> BookingHistoryService.Cursor.decode("abc"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> BookingHistoryService.Cursor.decode("1.x!.3"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,130 @@
+package com.icio.sportakuz.service.booking;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IdempotencyStoreTest {
+
+    private final IdempotencyStore.StoredResponse ok =
+            new IdempotencyStore.StoredResponse(200, "application/json", "{}".getBytes());
+
+    @Test
+    @DisplayName("Should replay stored response for repeated key")
+    void shouldReplayStoredResponse() throws Exception {
+        // given
+        IdempotencyStore store = new IdempotencyStore();
+
+        // when
+        IdempotencyStore.Claim first = store.begin("k1");
+        store.complete(first, ok);
+        IdempotencyStore.Claim replay = store.begin("k1");
+
+        // then
+        assertThat(first.owner()).isTrue();
+        assertThat(replay.owner()).isFalse();
+        assertThat(replay.response().get().status()).isEqualTo(200);
+    }
+
+    @Test
+    @DisplayName("Should let a retry take over the key after abandon or expiry")
+    void shouldReleaseAbandonedAndExpiredKeys() {
+        // given
+        MutableClock clock = new MutableClock();
+        IdempotencyStore store = new IdempotencyStore(10, Duration.ofMinutes(5), clock);
+
+        // when
+        store.abandon(store.begin("abandoned"));
+        store.complete(store.begin("expired"), ok);
+        clock.advance(Duration.ofMinutes(6));
+
+        // then
+        assertThat(store.begin("abandoned").owner()).isTrue();
+        assertThat(store.begin("expired").owner()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should keep at most maxEntries keys")
+    void shouldEvictEldestKeys() {
+        // given
+        IdempotencyStore store = new IdempotencyStore(2, Duration.ofMinutes(5), new MutableClock());
+
+        // when
+        store.complete(store.begin("a"), ok);
+        store.complete(store.begin("b"), ok);
+        store.complete(store.begin("c"), ok);
+
+        // then
+        assertThat(store.size()).isEqualTo(2);
+        assertThat(store.begin("a").owner()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should not evict a key whose request is still in flight")
+    void shouldKeepInFlightKeysOnEviction() throws Exception {
+        // given
+        IdempotencyStore store = new IdempotencyStore(2, Duration.ofMinutes(5), new MutableClock());
+        IdempotencyStore.Claim inFlight = store.begin("a");
+        store.complete(store.begin("b"), ok);
+
+        // when
+        store.complete(store.begin("c"), ok);
+        IdempotencyStore.Claim replay = store.begin("a");
+        store.complete(inFlight, ok);
+
+        // then
+        assertThat(replay.owner()).isFalse();
+        assertThat(replay.response().get(1, TimeUnit.SECONDS).status()).isEqualTo(200);
+        assertThat(store.size()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should not let an expired owner complete or release the key of the request that took it over")
+    void shouldIsolateExpiredOwnerFromNewOwner() {
+        // given
+        MutableClock clock = new MutableClock();
+        IdempotencyStore store = new IdempotencyStore(10, Duration.ofMinutes(5), clock);
+        IdempotencyStore.Claim stale = store.begin("k");
+        clock.advance(Duration.ofMinutes(6));
+        IdempotencyStore.Claim current = store.begin("k");
+
+        // when
+        store.complete(stale, ok);
+        store.abandon(stale);
+
+        // then
+        assertThat(current.owner()).isTrue();
+        assertThat(current.response()).isNotDone();
+        assertThat(store.begin("k").owner()).isFalse();
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now = Instant.parse("2025-01-01T00:00:00Z");
+
+        void advance(Duration d) {
+            now = now.plus(d);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.icio.sportakuz.service.booking;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class RushAdmissionQueueTest {
+
+    @Test
+    @DisplayName("Should allocate tickets in issue order and resolve them")
+    @SuppressWarnings("unchecked")
+    void shouldAllocateInTicketOrder() {
+        // given
+        BookingBatchWriter writer = mock(BookingBatchWriter.class);
+        when(writer.admit(any())).thenReturn(List.of(
+                BookingResult.booked(1L, "1/1"),
+                BookingResult.waitlisted(2L, 1, "1/1")));
+        RushAdmissionQueue queue = new RushAdmissionQueue(writer, mock(BookingExecutor.class));
+        queue.open(7L);
+
+        // when
+        RushAdmissionQueue.Ticket first = queue.issue(7L, "anna");
+        RushAdmissionQueue.Ticket second = queue.issue(7L, "piotr");
+        long aheadOfSecond = queue.ahead(second);
+        queue.allocate();
+
+        // then
+        ArgumentCaptor<List<BookingBatchWriter.BookingRequest>> batch = ArgumentCaptor.forClass(List.class);
+        verify(writer).admit(batch.capture());
+        assertThat(batch.getValue()).extracting(BookingBatchWriter.BookingRequest::userName).containsExactly("anna", "piotr");
+        assertThat(aheadOfSecond).isEqualTo(1);
+        assertThat(first.result().outcome()).isEqualTo(BookingResult.Outcome.BOOKED);
+        assertThat(second.result().outcome()).isEqualTo(BookingResult.Outcome.WAITLISTED);
+        assertThat(queue.isRush(7L)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should return the same pending ticket for a repeated request")
+    void shouldReusePendingTicket() {
+        // given
+        RushAdmissionQueue queue = new RushAdmissionQueue(mock(BookingBatchWriter.class), mock(BookingExecutor.class));
+
+        // when
+        RushAdmissionQueue.Ticket first = queue.issue(7L, "anna");
+        RushAdmissionQueue.Ticket repeated = queue.issue(7L, "anna");
+
+        // then
+        assertThat(repeated).isSameAs(first);
+        assertThat(queue.ticket(first.id())).isSameAs(first);
+        assertThat(first.isResolved()).isFalse();
+    }
+}
@@ -0,0 +1,168 @@
+package com.icio.sportakuz.service.booking;
+
+import com.icio.sportakuz.entity.Activity;
+import com.icio.sportakuz.repo.ActivityRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class SeatLedgerTest {
+
+    private final Activity activity = new Activity();
+
+    private SeatLedger ledgerFor(int capacity, int alreadyReserved) {
+        ActivityRepository activityRepository = mock(ActivityRepository.class);
+        activity.setId(1L);
+        activity.setCapacity(capacity);
+        activity.setReservedCount(alreadyReserved);
+        when(activityRepository.findById(1L)).thenReturn(Optional.of(activity));
+        return new SeatLedger(activityRepository);
+    }
+
+    /** Kończy ręcznie zainicjowaną "transakcję" – wywołuje synchronizacje tak jak menedżer transakcji. */
+    private static void complete(boolean commit) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        if (commit) {
+            synchronizations.forEach(s -> s.beforeCommit(false));
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+        }
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(s -> s.afterCompletion(commit
+                ? TransactionSynchronization.STATUS_COMMITTED : TransactionSynchronization.STATUS_ROLLED_BACK));
+    }
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("Should reject reservation when capacity is reached")
+    void shouldRejectWhenFull() {
+        // given
+        SeatLedger ledger = ledgerFor(2, 1);
+        SeatLedger.Seats seats = ledger.seats(1L);
+
+        // when
+        int first = ledger.tryReserve(seats);
+        int second = ledger.tryReserve(seats);
+
+        // then
+        assertThat(first).isEqualTo(2);
+        assertThat(second).isEqualTo(-1);
+        assertThat(seats.spots()).isEqualTo("2/2");
+    }
+
+    @Test
+    @DisplayName("Should never admit more than capacity under contention")
+    void shouldHoldCapacityUnderContention() throws Exception {
+        // given
+        SeatLedger ledger = ledgerFor(50, 0);
+        SeatLedger.Seats seats = ledger.seats(1L);
+        AtomicInteger admitted = new AtomicInteger();
+
+        // when
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 1_000; i++) {
+                pool.submit(() -> {
+                    if (ledger.tryReserve(seats) > 0) admitted.incrementAndGet();
+                });
+            }
+        }
+
+        // then
+        assertThat(admitted.get()).isEqualTo(50);
+        assertThat(seats.reserved()).isEqualTo(50);
+    }
+
+    @Test
+    @DisplayName("Should load counters once and reload them after eviction")
+    void shouldReloadAfterEvict() {
+        // given
+        SeatLedger ledger = ledgerFor(10, 3);
+
+        // when
+        SeatLedger.Seats first = ledger.seats(1L);
+        ledger.release(1L);
+        ledger.evict(1L);
+        SeatLedger.Seats reloaded = ledger.seats(1L);
+
+        // then
+        assertThat(first.reserved()).isEqualTo(2);
+        assertThat(reloaded).isNotSameAs(first);
+        assertThat(reloaded.reserved()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Should count in-flight reservations when counters are reloaded, but not after commit")
+    void shouldReconcileInFlightReservationsOnReload() {
+        // given
+        SeatLedger ledger = ledgerFor(10, 3);
+        TransactionSynchronizationManager.initSynchronization();
+        ledger.tryReserve(ledger.seats(1L));
+
+        // when
+        ledger.evict(1L);
+        SeatLedger.Seats reloadedInFlight = ledger.seats(1L);
+        complete(true);
+        activity.setReservedCount(4); // zatwierdzony UPDATE reserved_count
+        ledger.evict(1L);
+        SeatLedger.Seats reloadedAfterCommit = ledger.seats(1L);
+
+        // then
+        assertThat(reloadedInFlight.reserved()).isEqualTo(4);
+        assertThat(reloadedAfterCommit.reserved()).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("Should return a rolled back seat to counters reloaded during the transaction")
+    void shouldReleaseRolledBackSeatInReloadedCounters() {
+        // given
+        SeatLedger ledger = ledgerFor(10, 3);
+        TransactionSynchronizationManager.initSynchronization();
+        SeatLedger.Seats first = ledger.seats(1L);
+        ledger.tryReserve(first);
+        ledger.evict(1L);
+        SeatLedger.Seats reloaded = ledger.seats(1L);
+
+        // when
+        complete(false);
+
+        // then
+        assertThat(first.reserved()).isEqualTo(3);
+        assertThat(reloaded.reserved()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Should not count a seat rejected by the database as in flight")
+    void shouldNotCountRejectedSeat() {
+        // given
+        SeatLedger ledger = ledgerFor(10, 3);
+        TransactionSynchronizationManager.initSynchronization();
+        SeatLedger.Seats first = ledger.seats(1L);
+        ledger.tryReserve(first);
+
+        // when
+        ledger.reject(first);
+        ledger.evict(1L);
+        SeatLedger.Seats reloaded = ledger.seats(1L);
+        complete(true);
+
+        // then
+        assertThat(first.reserved()).isEqualTo(3);
+        assertThat(reloaded.reserved()).isEqualTo(3);
+    }
+}
@@ -0,0 +1,64 @@
+package com.icio.sportakuz.service.booking;
+
+import com.icio.sportakuz.entity.Booking;
+import com.icio.sportakuz.repo.ActivityRepository;
+import com.icio.sportakuz.repo.BookingRepository;
+import com.icio.sportakuz.repo.BookingStatus;
+import com.icio.sportakuz.service.outbox.OutboxPublisher;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class WaitlistPromoterTest {
+
+    private final BookingRepository bookingRepository = mock(BookingRepository.class);
+    private final ActivityRepository activityRepository = mock(ActivityRepository.class);
+    private final OutboxPublisher outbox = mock(OutboxPublisher.class);
+    private final WaitlistPromoter promoter = new WaitlistPromoter(
+            bookingRepository, activityRepository, new SeatLedger(activityRepository), outbox);
+
+    private static Booking waitlisted(long id) {
+        Booking booking = new Booking();
+        booking.setId(id);
+        booking.setUserName("user" + id + "@uz.pl");
+        booking.setStatus(BookingStatus.WAITLISTED);
+        return booking;
+    }
+
+    @Test
+    @DisplayName("Should promote waitlist heads in order while the database has free seats")
+    void shouldPromoteWhileSeatsAreFree() {
+        // given – dwa wolne miejsca, trzy osoby na liście
+        Booking first = waitlisted(1), second = waitlisted(2), third = waitlisted(3);
+        when(bookingRepository.findWaitlistHeadForUpdate(7L)).thenReturn(first, second, third);
+        when(activityRepository.tryReserveSeat(7L)).thenReturn(1, 1, 0);
+
+        // when
+        int promoted = promoter.promote(7L);
+
+        // then
+        assertThat(promoted).isEqualTo(2);
+        assertThat(first.getStatus()).isEqualTo(BookingStatus.REQUESTED);
+        assertThat(second.getStatus()).isEqualTo(BookingStatus.REQUESTED);
+        assertThat(third.getStatus()).isEqualTo(BookingStatus.WAITLISTED);
+        verify(outbox, times(2)).publish(any());
+    }
+
+    @Test
+    @DisplayName("Should not take a seat when nobody is waiting")
+    void shouldNotReserveWithEmptyWaitlist() {
+        // given
+        when(bookingRepository.findWaitlistHeadForUpdate(7L)).thenReturn(null);
+
+        // when
+        int promoted = promoter.promote(7L);
+
+        // then
+        assertThat(promoted).isZero();
+        verify(activityRepository, never()).tryReserveSeat(any());
+        verifyNoInteractions(outbox);
+    }
+}
@@ -0,0 +1,56 @@
+package com.icio.sportakuz.service.outbox;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Konsument outboxu do testów: zbiera dostarczone zdarzenia w pamięci (powtórzenia po ID są pomijane).
+ */
+public class InMemoryOutboxConsumer implements OutboxConsumer {
+
+    private final String name;
+    private final boolean durable;
+    private final Map<Long, ChangeEvent> received = new LinkedHashMap<>();
+    private int deliveries;
+
+    public InMemoryOutboxConsumer(String name, boolean durable) {
+        this.name = name;
+        this.durable = durable;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public boolean durable() {
+        return durable;
+    }
+
+    @Override
+    public synchronized void accept(List<ChangeEvent> events) {
+        deliveries += events.size();
+        for (ChangeEvent e : events) {
+            received.putIfAbsent(e.id(), e);
+        }
+    }
+
+    /** Odebrane zdarzenia (bez powtórzeń) w kolejności dostarczenia. */
+    public synchronized List<ChangeEvent> events() {
+        return new ArrayList<>(received.values());
+    }
+
+    /** Liczba dostarczonych zdarzeń łącznie z powtórzeniami. */
+    public synchronized int deliveries() {
+        return deliveries;
+    }
+
+    /** Odebrane zdarzenia dotyczące podanych zajęć. */
+    public synchronized List<ChangeEvent> eventsFor(Collection<Long> activityIds) {
+        return received.values().stream().filter(e -> activityIds.contains(e.activityId())).toList();
+    }
+}
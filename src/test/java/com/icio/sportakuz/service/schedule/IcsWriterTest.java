@@ -0,0 +1,58 @@
+package com.icio.sportakuz.service.schedule;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IcsWriterTest {
+
+    @Test
+    @DisplayName("Should fold lines at 75 octets without splitting Polish characters")
+    void shouldFoldMultiByteCharacters() {
+        // given – "X-WR-CALNAME:" (13 bajtów) + 61 × "a" = 74 bajty, następne "ż" ma 2 bajty i nie mieści się w linii
+        String name = "a".repeat(61) + "żółć gęślą jaźń ".repeat(6);
+        StringWriter out = new StringWriter();
+
+        // when
+        new IcsWriter(out, Instant.EPOCH).begin(name, "PT1H");
+
+        // then
+        List<String> lines = Arrays.asList(out.toString().split("\r\n"));
+        int first = lines.indexOf("X-WR-CALNAME:" + "a".repeat(61));
+        assertThat(first).isNotNegative();
+        assertThat(lines.get(first + 1)).startsWith(" żółć");
+        int last = first + 1;
+        while (lines.get(last + 1).startsWith(" ")) {
+            last++;
+        }
+        assertThat(last).isGreaterThan(first + 1);
+        StringBuilder unfolded = new StringBuilder(lines.get(first));
+        for (int i = first; i <= last; i++) {
+            assertThat(lines.get(i).getBytes(StandardCharsets.UTF_8).length).isLessThanOrEqualTo(75);
+            if (i > first) {
+                unfolded.append(lines.get(i).substring(1)); // kontynuacja bez wiodącej spacji
+            }
+        }
+        assertThat(unfolded.toString()).isEqualTo("X-WR-CALNAME:" + name);
+    }
+
+    @Test
+    @DisplayName("Should escape backslashes, semicolons, commas and newlines in text values")
+    void shouldEscapeText() {
+        // given
+        String value = "Joga; sala 1, piętro \\ A\nwejście B\r\nparter";
+
+        // when
+        String escaped = IcsWriter.text(value);
+
+        // then
+        assertThat(escaped).isEqualTo("Joga\\; sala 1\\, piętro \\\\ A\\nwejście B\\nparter");
+    }
+}
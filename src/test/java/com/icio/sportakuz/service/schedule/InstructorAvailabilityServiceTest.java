@@ -0,0 +1,64 @@
+package com.icio.sportakuz.service.schedule;
+
+import com.icio.sportakuz.entity.Activity;
+import com.icio.sportakuz.entity.User;
+import com.icio.sportakuz.repo.InstructorInterval;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InstructorAvailabilityServiceTest {
+
+    private static final OffsetDateTime MONDAY = OffsetDateTime.of(2025, 1, 6, 0, 0, 0, 0, ZoneOffset.UTC);
+
+    @Test
+    @DisplayName("Should mark instructors busy only when their classes overlap")
+    void shouldComputeAvailabilityFromIntervals() {
+        // given – Anna prowadzi 1 (10–11), Jan ma zajęcia 10:30–12 i 14–15 (zajęcia poza stroną)
+        User anna = instructor(1L);
+        User jan = instructor(2L);
+        Activity first = activity(1L, anna, 10, 11);
+        Activity second = activity(2L, anna, 12, 13);
+        Activity third = activity(3L, anna, 14, 15);
+        List<InstructorInterval> busy = List.of(
+                new InstructorInterval(1L, 1L, at(10), at(11)),
+                new InstructorInterval(2L, 1L, at(12), at(13)),
+                new InstructorInterval(3L, 1L, at(14), at(15)),
+                new InstructorInterval(10L, 2L, at(14), at(15)),
+                new InstructorInterval(11L, 2L, MONDAY.plusHours(10).plusMinutes(30), at(12)));
+
+        // when
+        Map<Long, List<User>> available = InstructorAvailabilityService.available(
+                List.of(third, first, second), List.of(anna, jan), busy);
+
+        // then – zajęcia stykające się końcem z początkiem nie kolidują
+        assertThat(available.get(1L)).containsExactly(anna);
+        assertThat(available.get(2L)).containsExactly(anna, jan);
+        assertThat(available.get(3L)).containsExactly(anna);
+    }
+
+    private static OffsetDateTime at(int hour) {
+        return MONDAY.plusHours(hour);
+    }
+
+    private static User instructor(Long id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+
+    private static Activity activity(Long id, User instructor, int fromHour, int toHour) {
+        Activity activity = new Activity();
+        activity.setId(id);
+        activity.setInstructor(instructor);
+        activity.setStartTime(at(fromHour));
+        activity.setEndTime(at(toHour));
+        return activity;
+    }
+}
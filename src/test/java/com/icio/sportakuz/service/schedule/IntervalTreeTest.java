@@ -0,0 +1,63 @@
+package com.icio.sportakuz.service.schedule;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IntervalTreeTest {
+
+    @Test
+    @DisplayName("Should find overlapping intervals and keep previous versions intact")
+    void shouldFindOverlaps() {
+        // given – 1: 10–11, 2: 12–13, 3: 10:30–12
+        IntervalTree tree = IntervalTree.EMPTY.with(1L, 600, 660).with(2L, 720, 780).with(3L, 630, 720);
+
+        // when
+        IntervalTree withoutThird = tree.without(3L, 630);
+
+        // then – przedziały stykające się końcem z początkiem nie kolidują
+        assertThat(tree.overlapping(650, 730)).containsExactly(1L, 3L, 2L);
+        assertThat(tree.overlapping(660, 720)).containsExactly(3L);
+        assertThat(withoutThird.overlapping(660, 720)).isEmpty();
+        assertThat(tree.overlapping(660, 720)).containsExactly(3L);
+        assertThat(withoutThird.without(3L, 630)).isSameAs(withoutThird);
+    }
+
+    @Test
+    @DisplayName("Should match a linear scan after random inserts and removals")
+    void shouldMatchLinearScan() {
+        // given
+        Random random = new Random(42);
+        IntervalTree tree = IntervalTree.EMPTY;
+        List<long[]> intervals = new ArrayList<>();
+        for (long id = 1; id <= 500; id++) {
+            long start = random.nextInt(10_000);
+            long[] interval = {id, start, start + 1 + random.nextInt(300)};
+            intervals.add(interval);
+            tree = tree.with(id, interval[1], interval[2]);
+        }
+        for (int i = 0; i < 200; i++) {
+            long[] removed = intervals.remove(random.nextInt(intervals.size()));
+            tree = tree.without(removed[0], removed[1]);
+        }
+
+        for (int i = 0; i < 200; i++) {
+            // when
+            long start = random.nextInt(10_000);
+            long end = start + 1 + random.nextInt(500);
+            List<Long> found = tree.overlapping(start, end);
+
+            // then
+            List<Long> expected = intervals.stream()
+                    .filter(interval -> interval[1] < end && interval[2] > start)
+                    .map(interval -> interval[0])
+                    .toList();
+            assertThat(found).containsExactlyInAnyOrderElementsOf(expected);
+        }
+    }
+}
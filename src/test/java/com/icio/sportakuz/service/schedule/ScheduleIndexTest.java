@@ -0,0 +1,65 @@
+package com.icio.sportakuz.service.schedule;
+
+import com.icio.sportakuz.repo.ActivityFacets;
+import com.icio.sportakuz.repo.DifficultyLevel;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ScheduleIndexTest {
+
+    private static final OffsetDateTime MONDAY = OffsetDateTime.of(2025, 1, 6, 0, 0, 0, 0, ZoneOffset.UTC);
+
+    @Test
+    @DisplayName("Should combine facets, name prefix and time range")
+    void shouldCombineFacets() {
+        // given
+        ScheduleIndex index = new ScheduleIndex(List.of(
+                facets(1L, 10, 1, 1L, DifficultyLevel.BEGINNER, "Joga", "Anna"),
+                facets(2L, 8, 1, 2L, DifficultyLevel.ADVANCED, "Joga", "Jan"),
+                facets(3L, 12, 2, 1L, DifficultyLevel.BEGINNER, "Pilates", "Anna"),
+                facets(4L, 30, 1, 1L, DifficultyLevel.BEGINNER, "Joga", "Anna")));
+
+        // when
+        List<ActivityFacets> yogaForBeginners = index.query(new ScheduleFilter(Set.of(1L), null, null,
+                Set.of(DifficultyLevel.BEGINNER, DifficultyLevel.INTERMEDIATE), null, MONDAY, MONDAY.plusDays(1)));
+        List<ActivityFacets> byPrefix = index.query(ScheduleFilter.text("ANN"));
+
+        // then
+        assertThat(yogaForBeginners).extracting(ActivityFacets::id).containsExactly(1L);
+        assertThat(byPrefix).extracting(ActivityFacets::id).containsExactly(1L, 3L, 4L);
+        assertThat(index.query(ScheduleFilter.all())).extracting(ActivityFacets::id).containsExactly(2L, 1L, 3L, 4L);
+    }
+
+    @Test
+    @DisplayName("Should apply changes without rebuilding and keep start order")
+    void shouldApplyChangesIncrementally() {
+        // given
+        ScheduleIndex index = new ScheduleIndex(List.of(
+                facets(1L, 10, 1, 1L, DifficultyLevel.BEGINNER, "Joga", "Anna"),
+                facets(2L, 12, 1, 1L, DifficultyLevel.BEGINNER, "Joga", "Anna")));
+
+        // when – zajęcia 1 przeniesione na później, 2 odwołane, 3 dodane
+        ScheduleIndex next = index.withChanges(Set.of(1L, 2L, 3L), List.of(
+                facets(1L, 14, 1, 1L, DifficultyLevel.BEGINNER, "Joga", "Anna"),
+                facets(3L, 9, 1, 1L, DifficultyLevel.BEGINNER, "Joga", "Anna")));
+
+        // then
+        assertThat(next.query(new ScheduleFilter(Set.of(1L), null, null, null, "jog", null, null)))
+                .extracting(ActivityFacets::id).containsExactly(3L, 1L);
+        assertThat(next.size()).isEqualTo(2);
+        assertThat(index.query(ScheduleFilter.all())).extracting(ActivityFacets::id).containsExactly(1L, 2L);
+    }
+
+    private static ActivityFacets facets(Long id, int hour, int typeId, Long instructorId, DifficultyLevel level,
+                                         String typeName, String instructorFirstName) {
+        return new ActivityFacets(id, MONDAY.plusHours(hour), typeId, 1L, instructorId, level,
+                typeName, instructorFirstName, "Kowalska");
+    }
+}
@@ -0,0 +1,65 @@
+package com.icio.sportakuz.service.schedule;
+
+import com.icio.sportakuz.dto.booking.CalendarClassDto;
+import com.icio.sportakuz.repo.ClassStatus;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ScheduleSnapshotTest {
+
+    private static final LocalDate MONDAY = LocalDate.of(2025, 1, 6);
+
+    @Test
+    @DisplayName("Should replace only rebuilt days and bump the version")
+    void shouldReplaceOnlyRebuiltDays() {
+        // given
+        ScheduleSnapshot snapshot = new ScheduleSnapshot(1, MONDAY, MONDAY.plusDays(7), Map.of(
+                MONDAY, List.of(scheduled(1L, MONDAY, 10)),
+                MONDAY.plusDays(1), List.of(scheduled(2L, MONDAY.plusDays(1), 10))));
+
+        // when
+        ScheduleSnapshot next = snapshot.withDays(Map.of(MONDAY, List.of()));
+
+        // then
+        assertThat(next.version()).isEqualTo(2);
+        assertThat(next.between(MONDAY, MONDAY.plusDays(7), at(MONDAY, 0))).extracting(ScheduledClass::id).containsExactly(2L);
+        assertThat(next.between(MONDAY.plusDays(1), MONDAY.plusDays(2), at(MONDAY, 0)).get(0))
+                .isSameAs(snapshot.between(MONDAY.plusDays(1), MONDAY.plusDays(2), at(MONDAY, 0)).get(0));
+        assertThat(snapshot.between(MONDAY, MONDAY.plusDays(1), at(MONDAY, 0))).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("Should skip finished classes and honour the limit when reading upcoming")
+    void shouldSkipFinishedClasses() {
+        // given
+        ScheduleSnapshot snapshot = new ScheduleSnapshot(1, MONDAY, MONDAY.plusDays(7), Map.of(
+                MONDAY, List.of(scheduled(1L, MONDAY, 8), scheduled(2L, MONDAY, 12), scheduled(3L, MONDAY, 16)),
+                MONDAY.plusDays(2), List.of(scheduled(4L, MONDAY.plusDays(2), 8))));
+
+        // when
+        List<ScheduledClass> upcoming = snapshot.next(at(MONDAY, 10), c -> true, 3);
+
+        // then
+        assertThat(upcoming).extracting(ScheduledClass::id).containsExactly(2L, 3L, 4L);
+        assertThat(snapshot.covers(MONDAY, MONDAY.plusDays(7))).isTrue();
+        assertThat(snapshot.covers(MONDAY, MONDAY.plusDays(8))).isFalse();
+    }
+
+    private static ScheduledClass scheduled(Long id, LocalDate day, int hour) {
+        CalendarClassDto dto = new CalendarClassDto(id, "Joga", 0, day.toString(), hour + ":00", 60,
+                "Sala", "Jan Kowalski", "0/10", "", null, false);
+        return new ScheduledClass(dto, at(day, hour), at(day, hour + 1), ClassStatus.OPEN, "jan@example.com");
+    }
+
+    private static OffsetDateTime at(LocalDate day, int hour) {
+        return day.atTime(hour, 0).atOffset(ZoneOffset.UTC);
+    }
+}